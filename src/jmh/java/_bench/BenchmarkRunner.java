@@ -0,0 +1,61 @@
+/*
+ * Copyright 2026 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package _bench;
+
+import java.io.File;
+import java.util.Arrays;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs all benchmarks at 1, 8 and 64 threads with the GC profiler and writes
+ * one JSON result file per thread count in <code>target/jmh</code>.
+ * <p>
+ * Usage: <code>mvn -Pbenchmark test-compile exec:exec
+ * -Djmh.runner.args="[include-regex] [threads...]"</code>
+ *
+ * @author Philippe Charles
+ */
+public final class BenchmarkRunner {
+
+    private static final int[] DEFAULT_THREADS = {1, 8, 64};
+
+    public static void main(String[] args) throws RunnerException {
+        String include = args.length > 0 ? args[0] : ".*Benchmark.*";
+        int[] threads = args.length > 1
+                ? Arrays.stream(args, 1, args.length).mapToInt(Integer::parseInt).toArray()
+                : DEFAULT_THREADS;
+
+        File outputDir = new File("target", "jmh");
+        outputDir.mkdirs();
+
+        for (int t : threads) {
+            Options options = new OptionsBuilder()
+                    .include(include)
+                    .threads(t)
+                    .addProfiler(GCProfiler.class)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(new File(outputDir, "result-t" + t + ".json").getPath())
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
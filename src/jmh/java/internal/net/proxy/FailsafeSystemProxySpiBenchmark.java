@@ -0,0 +1,90 @@
+/*
+ * Copyright 2026 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package internal.net.proxy;
+
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ *
+ * @author Philippe Charles
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FailsafeSystemProxySpiBenchmark {
+
+    private static final Proxy PROXY = new Proxy(Proxy.Type.HTTP, new InetSocketAddress("proxy", 8080));
+
+    private final URI uri = URI.create("https://www.nbb.be");
+    private FailsafeSystemProxySpi pass;
+    private FailsafeSystemProxySpi fail;
+    private FailsafeSystemProxySpi open;
+
+    @Setup
+    public void setup() {
+        pass = new FailsafeSystemProxySpi(o -> PROXY, FailsafeSystemProxySpiBenchmark::ignoreError);
+        // errors are not logged here: the logging cost would hide the wrapper cost
+        // and the circuit never opens so that the delegate is always called
+        fail = new FailsafeSystemProxySpi(o -> {
+            throw new IllegalStateException("boom");
+        }, FailsafeSystemProxySpiBenchmark::ignoreError, FailsafeSystemProxySpiBenchmark::ignoreStateChange, CircuitBreaker.builder().failureThreshold(Integer.MAX_VALUE).build());
+        open = new FailsafeSystemProxySpi(o -> {
+            throw new IllegalStateException("boom");
+        }, FailsafeSystemProxySpiBenchmark::ignoreError, FailsafeSystemProxySpiBenchmark::ignoreStateChange, CircuitBreaker.of());
+        for (int i = 0; i < 10; i++) {
+            open.getProxyOrNull(uri);
+        }
+    }
+
+    @Benchmark
+    public Proxy getProxyOrNullPass() {
+        return pass.getProxyOrNull(uri);
+    }
+
+    @Benchmark
+    public Proxy getProxyOrNullFail() {
+        return fail.getProxyOrNull(uri);
+    }
+
+    @Benchmark
+    public Proxy getProxyOrNullOpen() {
+        return open.getProxyOrNull(uri);
+    }
+
+    private static void ignoreError(String msg, RuntimeException ex) {
+    }
+
+    private static void ignoreStateChange(Level level, String msg) {
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2026 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package internal.net.proxy.x;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the three paths of {@link TtlCache#get(Object, Function)} with a
+ * frozen clock so that each path is taken on every call.
+ *
+ * @author Philippe Charles
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TtlCacheBenchmark {
+
+    private String[] keys;
+    private TtlCache<String, String> hit;
+    private TtlCache<String, String> miss;
+    private TtlCache<String, String> expired;
+    private final Function<String, String> loader = o -> o;
+
+    @Setup
+    public void setup() {
+        keys = IntStream.range(0, 256)
+                .mapToObj(i -> "host" + i + ".example.com")
+                .toArray(String[]::new);
+
+        ConcurrentMap<String, TtlCache.Entry<String>> hitStorage = new ConcurrentHashMap<>();
+        for (String key : keys) {
+            hitStorage.put(key, new TtlCache.Entry<>(Long.MAX_VALUE, key));
+        }
+        hit = newCache(hitStorage, 0, Long.MAX_VALUE);
+
+        // ttl of zero is below minTtl: never stored
+        miss = newCache(new ConcurrentHashMap<>(), 1, Long.MAX_VALUE);
+
+        // ttl of zero is stored but expires immediately
+        expired = newCache(new ConcurrentHashMap<>(), 0, 0);
+        for (String key : keys) {
+            expired.get(key, loader);
+        }
+    }
+
+    private static TtlCache<String, String> newCache(ConcurrentMap<String, TtlCache.Entry<String>> storage, long minTtl, long maxTtl) {
+        return TtlCache
+                .<String, String>builder()
+                .minTtlInMillis(minTtl)
+                .maxTtlInMillis(maxTtl)
+                .ttlFactor(1)
+                .storage(storage)
+                .clock(() -> 0)
+                .onEvent((k, e) -> {
+                })
+                .build();
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private int index;
+
+        String next(String[] keys) {
+            return keys[index++ & (keys.length - 1)];
+        }
+    }
+
+    @Benchmark
+    public String getHit(Cursor cursor) {
+        return hit.get(cursor.next(keys), loader);
+    }
+
+    @Benchmark
+    public String getMiss(Cursor cursor) {
+        return miss.get(cursor.next(keys), loader);
+    }
+
+    @Benchmark
+    public String getExpired(Cursor cursor) {
+        return expired.get(cursor.next(keys), loader);
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2026 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package internal.net.proxy.x;
+
+import internal.net.proxy.Metrics;
+import java.net.Proxy;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Drives {@link WinPowerShellProxySelector} with a fake PowerShell command
+ * whose cost is simulated by {@link Blackhole#consumeCPU(long)}.
+ *
+ * @author Philippe Charles
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WinPowerShellProxySelectorBenchmark {
+
+    @Param({"0", "100000"})
+    public long commandTokens;
+
+    @Param({"false", "true"})
+    public boolean fetchConfig;
+
+    private URI[] uris;
+    private WinPowerShellProxySelector selector;
+
+    @Setup
+    public void setup() {
+        uris = IntStream.range(0, 256)
+                .mapToObj(i -> URI.create("https://host" + i + ".example.com"))
+                .toArray(URI[]::new);
+        selector = new WinPowerShellProxySelector(
+                TtlCache.of()
+                        .toBuilder()
+                        .onEvent((k, e) -> {
+                        })
+                        .build(),
+                this::fakeCommand,
+                fetchConfig ? this::fakeConfig : null,
+                null,
+                Runnable::run,
+                o -> "os.name".equals(o) ? "Windows 10" : null,
+                () -> {
+                },
+                new Metrics()
+        );
+    }
+
+    private Map<String, Map<String, String>> fakeCommand(List<URI> list) {
+        Blackhole.consumeCPU(commandTokens);
+        Map<String, Map<String, String>> result = new HashMap<>();
+        for (URI uri : list) {
+            Map<String, String> block = new HashMap<>();
+            block.put("Host", "proxy.example.com");
+            block.put("Port", "8080");
+            block.put("IsDefaultPort", "False");
+            result.put(uri.toString(), block);
+        }
+        return result;
+    }
+
+    private WinProxyConfig fakeConfig() {
+        Blackhole.consumeCPU(commandTokens);
+        Map<String, String> result = new HashMap<>();
+        result.put("ProxyEnable", "1");
+        result.put("ProxyServer", "proxy.example.com:8080");
+        result.put("ProxyOverride", "*.internal.example.com;<local>");
+        return WinProxyConfig.parse(result);
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private int index;
+
+        URI next(URI[] uris) {
+            return uris[index++ & (uris.length - 1)];
+        }
+    }
+
+    @Benchmark
+    public Proxy getProxyOrNull(Cursor cursor) {
+        return selector.getProxyOrNull(cursor.next(uris));
+    }
+}
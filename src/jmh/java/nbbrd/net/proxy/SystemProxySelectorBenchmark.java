@@ -0,0 +1,146 @@
+/*
+ * Copyright 2026 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package nbbrd.net.proxy;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.ProxySelector;
+import java.net.SocketAddress;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ *
+ * @author Philippe Charles
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SystemProxySelectorBenchmark {
+
+    private static final Proxy PROXY = new Proxy(Proxy.Type.HTTP, new InetSocketAddress("proxy", 8080));
+
+    private URI[] uris;
+    private SystemProxySelector provided;
+    private SystemProxySelector cached;
+    private SystemProxySelector fallback;
+    private SystemProxySelector staticProperties;
+    private SystemProxySelector staticProxy;
+
+    @Setup
+    public void setup() {
+        uris = IntStream.range(0, 256)
+                .mapToObj(i -> URI.create("https://host" + i + ".example.com"))
+                .toArray(URI[]::new);
+        ProxySelector noProxy = new NoProxySelector();
+        provided = SystemProxySelector
+                .builder()
+                .provider(o -> PROXY)
+                .systemProperties(o -> null)
+                .fallback(noProxy)
+                .build();
+        cached = provided
+                .toBuilder()
+                .cacheTtl(Duration.ofMinutes(1))
+                .build();
+        fallback = SystemProxySelector
+                .builder()
+                .provider(o -> null)
+                .systemProperties(o -> null)
+                .fallback(noProxy)
+                .build();
+        staticProperties = SystemProxySelector
+                .builder()
+                .provider(o -> PROXY)
+                .systemProperties(o -> "http.nonProxyHosts".equals(o) ? "localhost" : null)
+                .fallback(noProxy)
+                .build();
+        staticProxy = SystemProxySelector
+                .builder()
+                .provider(o -> PROXY)
+                .systemProperties(o -> "https.proxyHost".equals(o) ? "proxy.example.com" : "http.nonProxyHosts".equals(o) ? "localhost|*.internal.example.com|10.*" : null)
+                .fallback(noProxy)
+                .build();
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private int index;
+
+        URI next(URI[] uris) {
+            return uris[index++ & (uris.length - 1)];
+        }
+    }
+
+    @Benchmark
+    public List<Proxy> selectFromProvider(Cursor cursor) {
+        return provided.select(cursor.next(uris));
+    }
+
+    @Benchmark
+    public List<Proxy> selectFromCache(Cursor cursor) {
+        return cached.select(cursor.next(uris));
+    }
+
+    @Benchmark
+    public List<Proxy> selectFromFallback(Cursor cursor) {
+        return fallback.select(cursor.next(uris));
+    }
+
+    @Benchmark
+    public List<Proxy> selectWithStaticProperties(Cursor cursor) {
+        return staticProperties.select(cursor.next(uris));
+    }
+
+    @Benchmark
+    public List<Proxy> selectWithStaticProxy(Cursor cursor) {
+        return staticProxy.select(cursor.next(uris));
+    }
+
+    private static final class NoProxySelector extends ProxySelector {
+
+        private final List<Proxy> result = Collections.singletonList(Proxy.NO_PROXY);
+
+        @Override
+        public List<Proxy> select(URI uri) {
+            return result;
+        }
+
+        @Override
+        public void connectFailed(URI uri, SocketAddress sa, IOException ioe) {
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2026 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package internal.net.proxy;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import nbbrd.design.ThreadSafe;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+/**
+ * A circuit breaker that opens after <code>failureThreshold</code>
+ * consecutive failures, calls slower than <code>slowCallThresholdInNanos</code>
+ * counting as failures. An open circuit rejects calls for
+ * <code>coolDownInNanos</code> and then lets a single probe call through: the
+ * circuit closes if it succeeds and opens again otherwise. Outcomes of other
+ * calls that end while the circuit is open are ignored.
+ *
+ * @author Philippe Charles
+ */
+@ThreadSafe
+@lombok.Builder(toBuilder = true)
+public final class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    /**
+     * Permission given to a call.
+     */
+    public enum Permit {
+        DENIED, CALL, PROBE
+    }
+
+    /**
+     * Outcome of a call that changes the state of the circuit.
+     */
+    public enum Transition {
+        NONE, OPENED, REOPENED, CLOSED
+    }
+
+    @NonNull
+    public static CircuitBreaker of() {
+        return builder().build();
+    }
+
+    private static final long NOT_OPEN = Long.MIN_VALUE;
+
+    @lombok.Builder.Default
+    private final int failureThreshold = 5;
+
+    @lombok.Builder.Default
+    private final long slowCallThresholdInNanos = TimeUnit.SECONDS.toNanos(10);
+
+    @lombok.Builder.Default
+    private final long coolDownInNanos = TimeUnit.MINUTES.toNanos(1);
+
+    @lombok.NonNull
+    @lombok.Getter
+    @lombok.Builder.Default
+    private final LongSupplier clock = System::nanoTime;
+
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+    private final AtomicLong openedAt = new AtomicLong(NOT_OPEN);
+
+    private final AtomicBoolean probing = new AtomicBoolean();
+
+    @NonNull
+    public State getState() {
+        long opened = openedAt.get();
+        if (opened == NOT_OPEN) {
+            return State.CLOSED;
+        }
+        return clock.getAsLong() - opened < coolDownInNanos ? State.OPEN : State.HALF_OPEN;
+    }
+
+    public int getConsecutiveFailures() {
+        return consecutiveFailures.get();
+    }
+
+    /**
+     * Checks if a call is permitted. Once the cool-down is over, only one
+     * caller gets the permission to probe the resource; it must then report
+     * the outcome of its call and release its permit, even if the call ends
+     * abruptly.
+     *
+     * @return a non-null permit
+     */
+    @NonNull
+    public Permit tryAcquire() {
+        long opened = openedAt.get();
+        if (opened == NOT_OPEN) {
+            return Permit.CALL;
+        }
+        return clock.getAsLong() - opened >= coolDownInNanos && probing.compareAndSet(false, true) ? Permit.PROBE : Permit.DENIED;
+    }
+
+    /**
+     * Releases a permit, which lets another caller probe the resource if the
+     * outcome of this probe was not reported.
+     *
+     * @param permit a non-null permit
+     */
+    public void release(@NonNull Permit permit) {
+        if (permit == Permit.PROBE) {
+            probing.set(false);
+        }
+    }
+
+    @NonNull
+    public Transition onSuccess(@NonNull Permit permit, long durationInNanos) {
+        if (durationInNanos >= slowCallThresholdInNanos) {
+            return onFailure(permit);
+        }
+        if (permit == Permit.PROBE) {
+            consecutiveFailures.set(0);
+            openedAt.set(NOT_OPEN);
+            return Transition.CLOSED;
+        }
+        if (openedAt.get() == NOT_OPEN && consecutiveFailures.get() != 0) {
+            consecutiveFailures.set(0);
+        }
+        return Transition.NONE;
+    }
+
+    @NonNull
+    public Transition onFailure(@NonNull Permit permit) {
+        if (permit == Permit.PROBE) {
+            consecutiveFailures.incrementAndGet();
+            openedAt.set(clock.getAsLong());
+            return Transition.REOPENED;
+        }
+        if (openedAt.get() != NOT_OPEN) {
+            return Transition.NONE;
+        }
+        int failures = consecutiveFailures.incrementAndGet();
+        if (failures >= failureThreshold && openedAt.compareAndSet(NOT_OPEN, clock.getAsLong())) {
+            return Transition.OPENED;
+        }
+        return Transition.NONE;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2026 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package internal.net.proxy;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+/**
+ * Default executor of asynchronous selections: one virtual thread per task
+ * on Java 21+ and a cached pool of daemon threads otherwise.
+ *
+ * @author Philippe Charles
+ */
+@lombok.extern.java.Log
+public final class DefaultExecutor {
+
+    private DefaultExecutor() {
+        // static class
+    }
+
+    @NonNull
+    public static Executor get() {
+        return Holder.INSTANCE;
+    }
+
+    static Executor create() {
+        try {
+            return (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException ex) {
+            return Executors.newCachedThreadPool(DefaultExecutor::newDaemonThread);
+        } catch (IllegalAccessException | InvocationTargetException | RuntimeException ex) {
+            if (log.isLoggable(Level.WARNING)) {
+                log.log(Level.WARNING, "Failed to create virtual thread executor", ex);
+            }
+            return Executors.newCachedThreadPool(DefaultExecutor::newDaemonThread);
+        }
+    }
+
+    private static Thread newDaemonThread(Runnable task) {
+        Thread result = new Thread(task, "SystemProxySelector-async");
+        result.setDaemon(true);
+        return result;
+    }
+
+    private static final class Holder {
+
+        private static final Executor INSTANCE = create();
+    }
+}
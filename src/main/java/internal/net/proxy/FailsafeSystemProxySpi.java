@@ -18,12 +18,34 @@ package internal.net.proxy;
 
 import java.net.Proxy;
 import java.net.URI;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.BiConsumer;
 import java.util.logging.Level;
+import nbbrd.net.proxy.CacheStats;
+import nbbrd.net.proxy.MetricsListener;
 import nbbrd.net.proxy.SystemProxySelector;
 
 /**
+ * A provider wrapper that turns unexpected errors into empty results.
+ * <p>
+ * A circuit breaker skips the delegate after several consecutive failures or
+ * slow calls, a batch being slow if its average call is slow, and errors are
+ * reported at most once per <code>REPORT_INTERVAL_NANOS</code> while the
+ * circuit is closed. The opening and closing of the circuit are given to
+ * <code>onStateChange</code> with their log level.
+ * <p>
+ * Asynchronous calls never probe a half-open circuit since nothing bounds
+ * the completion of their future; they are skipped until a synchronous call
+ * closes the circuit.
  *
  * @author Philippe Charles
  */
@@ -31,30 +53,206 @@ import nbbrd.net.proxy.SystemProxySelector;
 @lombok.AllArgsConstructor
 public final class FailsafeSystemProxySpi implements SystemProxySelector.Spi {
 
+    private static final long REPORT_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final long NEVER = Long.MIN_VALUE;
+
     public static SystemProxySelector.Spi wrap(SystemProxySelector.Spi delegate) {
         return new FailsafeSystemProxySpi(delegate, FailsafeSystemProxySpi::logUnexpectedError);
     }
 
+    /**
+     * Gets the name of a provider, ignoring this wrapper.
+     */
+    public static String getName(SystemProxySelector.Spi provider) {
+        SystemProxySelector.Spi target = provider instanceof FailsafeSystemProxySpi ? ((FailsafeSystemProxySpi) provider).delegate : provider;
+        return target.getClass().getSimpleName();
+    }
+
     @lombok.NonNull
     private final SystemProxySelector.Spi delegate;
 
     @lombok.NonNull
     private final BiConsumer<? super String, ? super RuntimeException> onUnexpectedError;
 
+    @lombok.NonNull
+    private final BiConsumer<? super Level, ? super String> onStateChange;
+
+    @lombok.NonNull
+    private final CircuitBreaker breaker;
+
+    private final AtomicLong lastReport = new AtomicLong(NEVER);
+
+    private final AtomicInteger suppressedReports = new AtomicInteger();
+
+    public FailsafeSystemProxySpi(SystemProxySelector.Spi delegate, BiConsumer<? super String, ? super RuntimeException> onUnexpectedError) {
+        this(delegate, onUnexpectedError, FailsafeSystemProxySpi::logStateChange, CircuitBreaker.of());
+    }
+
     @Override
     public Proxy getProxyOrNull(URI uri) {
         Objects.requireNonNull(uri);
+        CircuitBreaker.Permit permit = breaker.tryAcquire();
+        if (permit == CircuitBreaker.Permit.DENIED) {
+            return null;
+        }
+        long start = breaker.getClock().getAsLong();
         try {
-            return delegate.getProxyOrNull(uri);
+            Proxy result = delegate.getProxyOrNull(uri);
+            onSuccess(permit, start, 1);
+            return result;
         } catch (RuntimeException ex) {
-            onUnexpectedError.accept("While calling 'getProxyOrNull' on '" + delegate + "'", ex);
+            onFailure(permit, "While calling 'getProxyOrNull' on '" + delegate + "'", ex);
             return null;
+        } finally {
+            breaker.release(permit);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Proxy> getProxyOrNullAsync(URI uri, Executor executor) {
+        Objects.requireNonNull(uri);
+        Objects.requireNonNull(executor);
+        CircuitBreaker.Permit permit = breaker.tryAcquire();
+        if (permit != CircuitBreaker.Permit.CALL) {
+            breaker.release(permit);
+            return CompletableFuture.completedFuture(null);
+        }
+        long start = breaker.getClock().getAsLong();
+        boolean handled = false;
+        try {
+            CompletableFuture<Proxy> result = delegate.getProxyOrNullAsync(uri, executor)
+                    .handle((proxy, ex) -> {
+                        try {
+                            if (ex != null) {
+                                onFailure(permit, "While calling 'getProxyOrNullAsync' on '" + delegate + "'", asRuntimeException(ex));
+                                return null;
+                            }
+                            onSuccess(permit, start, 1);
+                            return proxy;
+                        } finally {
+                            breaker.release(permit);
+                        }
+                    });
+            handled = true;
+            return result;
+        } catch (RuntimeException ex) {
+            onFailure(permit, "While calling 'getProxyOrNullAsync' on '" + delegate + "'", ex);
+            return CompletableFuture.completedFuture(null);
+        } finally {
+            if (!handled) {
+                breaker.release(permit);
+            }
+        }
+    }
+
+    @Override
+    public Map<URI, Proxy> getProxies(List<URI> uris) {
+        Objects.requireNonNull(uris);
+        CircuitBreaker.Permit permit = breaker.tryAcquire();
+        if (permit == CircuitBreaker.Permit.DENIED) {
+            return Collections.emptyMap();
+        }
+        long start = breaker.getClock().getAsLong();
+        try {
+            Map<URI, Proxy> result = delegate.getProxies(uris);
+            onSuccess(permit, start, uris.size());
+            return result;
+        } catch (RuntimeException ex) {
+            onFailure(permit, "While calling 'getProxies' on '" + delegate + "'", ex);
+            return Collections.emptyMap();
+        } finally {
+            breaker.release(permit);
+        }
+    }
+
+    @Override
+    public void warmUp() {
+        try {
+            delegate.warmUp();
+        } catch (RuntimeException ex) {
+            onUnexpectedError.accept("While calling 'warmUp' on '" + delegate + "'", ex);
         }
     }
 
+    @Override
+    public Map<String, CacheStats> getCacheStats() {
+        try {
+            return delegate.getCacheStats();
+        } catch (RuntimeException ex) {
+            onUnexpectedError.accept("While calling 'getCacheStats' on '" + delegate + "'", ex);
+            return Collections.emptyMap();
+        }
+    }
+
+    @Override
+    public int getPriority() {
+        try {
+            return delegate.getPriority();
+        } catch (RuntimeException ex) {
+            onUnexpectedError.accept("While calling 'getPriority' on '" + delegate + "'", ex);
+            return 0;
+        }
+    }
+
+    @Override
+    public void addListener(MetricsListener listener) {
+        Objects.requireNonNull(listener);
+        try {
+            delegate.addListener(listener);
+        } catch (RuntimeException ex) {
+            onUnexpectedError.accept("While calling 'addListener' on '" + delegate + "'", ex);
+        }
+    }
+
+    private void onSuccess(CircuitBreaker.Permit permit, long start, int calls) {
+        onTransition(breaker.onSuccess(permit, (breaker.getClock().getAsLong() - start) / Math.max(1, calls)));
+    }
+
+    private void onFailure(CircuitBreaker.Permit permit, String msg, RuntimeException ex) {
+        if (breaker.getState() == CircuitBreaker.State.CLOSED) {
+            report(msg, ex);
+        }
+        onTransition(breaker.onFailure(permit));
+    }
+
+    private void onTransition(CircuitBreaker.Transition transition) {
+        switch (transition) {
+            case OPENED:
+                onStateChange.accept(Level.WARNING, "Skipping calls on '" + delegate + "' after " + breaker.getConsecutiveFailures() + " consecutive failures or slow calls");
+                break;
+            case CLOSED:
+                onStateChange.accept(Level.INFO, "Resuming calls on '" + delegate + "'");
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void report(String msg, RuntimeException ex) {
+        long now = breaker.getClock().getAsLong();
+        long last = lastReport.get();
+        if ((last == NEVER || now - last >= REPORT_INTERVAL_NANOS) && lastReport.compareAndSet(last, now)) {
+            int suppressed = suppressedReports.getAndSet(0);
+            onUnexpectedError.accept(suppressed > 0 ? msg + " (" + suppressed + " similar errors suppressed)" : msg, ex);
+        } else {
+            suppressedReports.incrementAndGet();
+        }
+    }
+
+    private static RuntimeException asRuntimeException(Throwable ex) {
+        Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+        return cause instanceof RuntimeException ? (RuntimeException) cause : new CompletionException(cause);
+    }
+
     static void logUnexpectedError(String msg, RuntimeException ex) {
         if (log.isLoggable(Level.WARNING)) {
             log.log(Level.WARNING, msg, ex);
         }
     }
+
+    static void logStateChange(Level level, String msg) {
+        if (log.isLoggable(level)) {
+            log.log(level, msg);
+        }
+    }
 }
@@ -0,0 +1,415 @@
+/*
+ * Copyright 2026 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package internal.net.proxy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import nbbrd.design.ThreadSafe;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+/**
+ * An immutable matcher of host names and IP addresses compiled from bypass
+ * lists such as <code>no_proxy</code> or <code>http.nonProxyHosts</code>.
+ * <p>
+ * Domain rules are stored in a trie of reversed labels so that a lookup
+ * costs one hash probe per label, IP rules are stored as CIDR ranges and
+ * the remaining wildcard patterns are matched one by one.
+ *
+ * @author Philippe Charles
+ */
+@ThreadSafe
+@lombok.AllArgsConstructor(access = lombok.AccessLevel.PRIVATE)
+public final class HostMatcher {
+
+    public static final HostMatcher NONE = builder().build();
+
+    @NonNull
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private final boolean any;
+    private final Node root;
+    private final List<Range> ranges;
+    private final List<String> wildcards;
+    private final boolean empty;
+
+    public boolean isEmpty() {
+        return empty;
+    }
+
+    public boolean matches(@NonNull String host) {
+        if (any) {
+            return true;
+        }
+        String name = normalize(host);
+        if (matchesDomain(name)) {
+            return true;
+        }
+        if (!ranges.isEmpty()) {
+            byte[] address = parseIpLiteral(name);
+            if (address != null) {
+                for (Range range : ranges) {
+                    if (range.contains(address)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        for (String wildcard : wildcards) {
+            if (matchesWildcard(wildcard, name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean matchesDomain(String name) {
+        Node node = root;
+        int end = name.length();
+        while (end >= 0) {
+            if (node.subdomains && end > 0) {
+                return true;
+            }
+            int start = name.lastIndexOf('.', end - 1);
+            node = node.children.get(name.substring(start + 1, end));
+            if (node == null) {
+                return false;
+            }
+            end = start;
+        }
+        return node.exact;
+    }
+
+    /**
+     * Parses an IPv4 or IPv6 literal without any name resolution.
+     *
+     * @param host a host that may be enclosed in brackets
+     * @return the address bytes or null if the host is not an IP literal
+     */
+    static byte[] parseIpLiteral(String host) {
+        String text = host.startsWith("[") && host.endsWith("]") ? host.substring(1, host.length() - 1) : host;
+        return text.indexOf(':') != -1 ? parseIpv6(text) : parseIpv4(text);
+    }
+
+    private static byte[] parseIpv4(String text) {
+        byte[] result = new byte[4];
+        return parseIpv4(text, 0, text.length(), result, 0) ? result : null;
+    }
+
+    /**
+     * Parses four decimal octets into the result at the given offset.
+     */
+    private static boolean parseIpv4(String text, int from, int to, byte[] result, int offset) {
+        int count = 0;
+        int digits = 0;
+        int value = 0;
+        for (int i = from; i <= to; i++) {
+            if (i == to || text.charAt(i) == '.') {
+                if (digits == 0 || count == 4) {
+                    return false;
+                }
+                result[offset + count++] = (byte) value;
+                digits = 0;
+                value = 0;
+            } else {
+                char c = text.charAt(i);
+                if (c < '0' || c > '9' || ++digits > 3) {
+                    return false;
+                }
+                value = value * 10 + (c - '0');
+                if (value > 255) {
+                    return false;
+                }
+            }
+        }
+        return count == 4;
+    }
+
+    /**
+     * Parses up to eight groups of hexadecimal digits, with at most one
+     * <code>::</code> gap, an optional IPv4 tail and an ignored zone index.
+     */
+    private static byte[] parseIpv6(String input) {
+        int zone = input.indexOf('%');
+        String text = zone != -1 ? input.substring(0, zone) : input;
+        int length = text.length();
+        byte[] result = new byte[16];
+        int pos = 0;
+        int gap = -1;
+        int i = 0;
+        if (text.startsWith("::")) {
+            gap = 0;
+            i = 2;
+        } else if (text.startsWith(":")) {
+            return null;
+        }
+        while (i < length) {
+            int end = text.indexOf(':', i);
+            if (end == -1) {
+                end = length;
+            }
+            if (end == i || pos == 16) {
+                return null;
+            }
+            if (end == length && text.indexOf('.', i) != -1) {
+                if (pos > 12 || !parseIpv4(text, i, end, result, pos)) {
+                    return null;
+                }
+                pos += 4;
+                break;
+            }
+            if (end - i > 4) {
+                return null;
+            }
+            int value = 0;
+            for (int j = i; j < end; j++) {
+                int digit = Character.digit(text.charAt(j), 16);
+                if (digit == -1) {
+                    return null;
+                }
+                value = value * 16 + digit;
+            }
+            result[pos++] = (byte) (value >> 8);
+            result[pos++] = (byte) value;
+            if (end == length) {
+                break;
+            }
+            i = end + 1;
+            if (i < length && text.charAt(i) == ':') {
+                if (gap != -1) {
+                    return null;
+                }
+                gap = pos;
+                i++;
+            } else if (i == length) {
+                return null;
+            }
+        }
+        if (gap == -1) {
+            return pos == 16 ? result : null;
+        }
+        if (pos == 16) {
+            return null;
+        }
+        int tail = pos - gap;
+        System.arraycopy(result, gap, result, 16 - tail, tail);
+        Arrays.fill(result, gap, 16 - tail, (byte) 0);
+        return result;
+    }
+
+    private static boolean matchesWildcard(String pattern, String text) {
+        int p = 0;
+        int t = 0;
+        int star = -1;
+        int mark = 0;
+        while (t < text.length()) {
+            if (p < pattern.length() && pattern.charAt(p) == text.charAt(t)) {
+                p++;
+                t++;
+            } else if (p < pattern.length() && pattern.charAt(p) == '*') {
+                star = p++;
+                mark = t;
+            } else if (star != -1) {
+                p = star + 1;
+                t = ++mark;
+            } else {
+                return false;
+            }
+        }
+        while (p < pattern.length() && pattern.charAt(p) == '*') {
+            p++;
+        }
+        return p == pattern.length();
+    }
+
+    private static String normalize(String host) {
+        String result = host.toLowerCase(Locale.ROOT);
+        return result.endsWith(".") ? result.substring(0, result.length() - 1) : result;
+    }
+
+    private static final class Node {
+
+        final Map<String, Node> children = new HashMap<>();
+        boolean exact;
+        boolean subdomains;
+
+        Node copy() {
+            Node result = new Node();
+            children.forEach((label, child) -> result.children.put(label, child.copy()));
+            result.exact = exact;
+            result.subdomains = subdomains;
+            return result;
+        }
+    }
+
+    @lombok.AllArgsConstructor
+    private static final class Range {
+
+        final byte[] network;
+        final int prefix;
+
+        boolean contains(byte[] address) {
+            if (address.length != network.length) {
+                return false;
+            }
+            int bytes = prefix / 8;
+            for (int i = 0; i < bytes; i++) {
+                if (address[i] != network[i]) {
+                    return false;
+                }
+            }
+            int bits = prefix % 8;
+            if (bits == 0) {
+                return true;
+            }
+            int mask = 0xFF << (8 - bits);
+            return (address[bytes] & mask) == (network[bytes] & mask);
+        }
+    }
+
+    public static final class Builder {
+
+        private boolean any = false;
+        private final Node root = new Node();
+        private final List<Range> ranges = new ArrayList<>();
+        private final List<String> wildcards = new ArrayList<>();
+        private boolean empty = true;
+
+        private Builder() {
+        }
+
+        /**
+         * Matches every host.
+         */
+        @NonNull
+        public Builder any() {
+            any = true;
+            empty = false;
+            return this;
+        }
+
+        /**
+         * Matches a host name or an IP address exactly.
+         */
+        @NonNull
+        public Builder exact(@NonNull String host) {
+            byte[] address = parseIpLiteral(host);
+            if (address != null) {
+                return addRange(address, address.length * 8);
+            }
+            node(host).exact = true;
+            empty = false;
+            return this;
+        }
+
+        /**
+         * Matches the subdomains of a domain but not the domain itself.
+         */
+        @NonNull
+        public Builder subdomains(@NonNull String domain) {
+            node(domain).subdomains = true;
+            empty = false;
+            return this;
+        }
+
+        /**
+         * Matches a domain and all its subdomains, or an IP address exactly.
+         */
+        @NonNull
+        public Builder domain(@NonNull String domain) {
+            return parseIpLiteral(domain) != null ? exact(domain) : exact(domain).subdomains(domain);
+        }
+
+        /**
+         * Matches the IP addresses of a CIDR range such as
+         * <code>10.0.0.0/8</code> or <code>fd00::/8</code>.
+         *
+         * @throws IllegalArgumentException if the range is invalid
+         */
+        @NonNull
+        public Builder range(@NonNull String cidr) throws IllegalArgumentException {
+            int index = cidr.indexOf('/');
+            byte[] address = parseIpLiteral(index == -1 ? cidr : cidr.substring(0, index));
+            if (address == null) {
+                throw new IllegalArgumentException("Invalid address in '" + cidr + "'");
+            }
+            int prefix;
+            try {
+                prefix = index == -1 ? address.length * 8 : Integer.parseInt(cidr.substring(index + 1));
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("Invalid prefix in '" + cidr + "'", ex);
+            }
+            if (prefix < 0 || prefix > address.length * 8) {
+                throw new IllegalArgumentException("Invalid prefix in '" + cidr + "'");
+            }
+            return addRange(address, prefix);
+        }
+
+        /**
+         * Matches a pattern where <code>*</code> stands for any sequence of
+         * characters. Leading <code>*.</code> patterns are stored in the trie.
+         */
+        @NonNull
+        public Builder wildcard(@NonNull String pattern) {
+            String text = normalize(pattern);
+            if (text.equals("*")) {
+                return any();
+            }
+            if (text.indexOf('*') == -1) {
+                return exact(text);
+            }
+            if (text.startsWith("*.") && text.indexOf('*', 1) == -1) {
+                return subdomains(text.substring(2));
+            }
+            wildcards.add(text);
+            empty = false;
+            return this;
+        }
+
+        @NonNull
+        public HostMatcher build() {
+            return new HostMatcher(any, root.copy(), Collections.unmodifiableList(new ArrayList<>(ranges)), Collections.unmodifiableList(new ArrayList<>(wildcards)), empty);
+        }
+
+        private Builder addRange(byte[] address, int prefix) {
+            ranges.add(new Range(address, prefix));
+            empty = false;
+            return this;
+        }
+
+        private Node node(String domain) {
+            String name = normalize(domain);
+            while (name.startsWith(".")) {
+                name = name.substring(1);
+            }
+            Node result = root;
+            int end = name.length();
+            while (end > 0) {
+                int start = name.lastIndexOf('.', end - 1);
+                result = result.children.computeIfAbsent(name.substring(start + 1, end), o -> new Node());
+                end = start;
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright 2026 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package internal.net.proxy;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import nbbrd.design.ThreadSafe;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A custom JDK Flight Recorder event type, created reflectively through
+ * <code>jdk.jfr.EventFactory</code> so that this library still runs on JVMs
+ * without JFR. Events are only created while a recording enables them;
+ * otherwise {@link #begin()} returns {@link Event#NONE}.
+ *
+ * @author Philippe Charles
+ */
+@ThreadSafe
+@lombok.extern.java.Log
+public final class JfrEventType {
+
+    private static final String[] CATEGORY = {"Java Application", "Proxy"};
+
+    private static final MethodHandle DISABLED = MethodHandles.constant(boolean.class, false);
+
+    /**
+     * Creates an event type, or a disabled one if JFR is not available.
+     *
+     * @param name a non-null event name
+     * @param label a non-null human-readable label
+     * @param fields the fields of the event, set by index on the events
+     * @return a non-null event type
+     */
+    @NonNull
+    public static JfrEventType of(@NonNull String name, @NonNull String label, @NonNull Field... fields) {
+        Api api = Api.INSTANCE;
+        if (api != null) {
+            try {
+                Object factory = api.create(name, label, fields);
+                return new JfrEventType(api, factory, api.isEnabled(api.newEvent.invoke(factory)));
+            } catch (ReflectiveOperationException | RuntimeException ex) {
+                log.log(Level.WARNING, "Failed to create JFR event type " + name, ex);
+            }
+        }
+        return new JfrEventType(null, null, DISABLED);
+    }
+
+    @lombok.Value
+    public static class Field {
+
+        @NonNull
+        public static Field of(@NonNull String name, @NonNull Class<?> type) {
+            return new Field(name, type, false);
+        }
+
+        @NonNull
+        public static Field timespan(@NonNull String name) {
+            return new Field(name, long.class, true);
+        }
+
+        @lombok.NonNull
+        String name;
+
+        @lombok.NonNull
+        Class<?> type;
+
+        boolean timespan;
+    }
+
+    private final Api api;
+    private final Object factory;
+    private final MethodHandle enabled;
+
+    private JfrEventType(Api api, Object factory, MethodHandle enabled) {
+        this.api = api;
+        this.factory = factory;
+        this.enabled = enabled;
+    }
+
+    /**
+     * Checks if a recording currently enables this event type. This check
+     * is called on every selection and therefore goes through a method
+     * handle bound to a prototype event instead of a reflective call.
+     */
+    public boolean isEnabled() {
+        try {
+            return (boolean) enabled.invokeExact();
+        } catch (RuntimeException | Error ex) {
+            throw ex;
+        } catch (Throwable ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Begins the timing of a new event if this event type is enabled.
+     *
+     * @return a non-null event
+     */
+    @NonNull
+    public Event begin() {
+        if (!isEnabled()) {
+            return Event.NONE;
+        }
+        try {
+            Object result = api.newEvent.invoke(factory);
+            api.begin.invoke(result);
+            return new Event(api, result);
+        } catch (ReflectiveOperationException ex) {
+            return Event.NONE;
+        }
+    }
+
+    public static final class Event {
+
+        public static final Event NONE = new Event(null, null);
+
+        private final Api api;
+        private final Object delegate;
+
+        private Event(Api api, Object delegate) {
+            this.api = api;
+            this.delegate = delegate;
+        }
+
+        public boolean isEnabled() {
+            return delegate != null;
+        }
+
+        @NonNull
+        public Event set(int index, @Nullable Object value) {
+            if (delegate != null) {
+                try {
+                    api.set.invoke(delegate, index, value);
+                } catch (ReflectiveOperationException ex) {
+                    log.log(Level.FINE, "Failed to set JFR event field", ex);
+                }
+            }
+            return this;
+        }
+
+        public void commit() {
+            if (delegate != null) {
+                try {
+                    api.commit.invoke(delegate);
+                } catch (ReflectiveOperationException ex) {
+                    log.log(Level.FINE, "Failed to commit JFR event", ex);
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static final class Api {
+
+        private static final Api INSTANCE = load();
+
+        private static Api load() {
+            try {
+                return new Api();
+            } catch (ReflectiveOperationException | LinkageError | RuntimeException ex) {
+                log.log(Level.FINE, "JFR not available", ex);
+                return null;
+            }
+        }
+
+        private final Method create;
+        private final Method newEvent;
+        private final Method isEnabled;
+        private final Method begin;
+        private final Method set;
+        private final Method commit;
+        private final Constructor<?> annotationElement;
+        private final Constructor<?> valueDescriptor;
+        private final Class<? extends Annotation> nameType;
+        private final Class<? extends Annotation> labelType;
+        private final Class<? extends Annotation> categoryType;
+        private final Class<? extends Annotation> timespanType;
+
+        private Api() throws ReflectiveOperationException {
+            Class<?> factoryType = Class.forName("jdk.jfr.EventFactory");
+            Class<?> eventType = Class.forName("jdk.jfr.Event");
+            this.create = factoryType.getMethod("create", List.class, List.class);
+            this.newEvent = factoryType.getMethod("newEvent");
+            this.isEnabled = eventType.getMethod("isEnabled");
+            this.begin = eventType.getMethod("begin");
+            this.set = eventType.getMethod("set", int.class, Object.class);
+            this.commit = eventType.getMethod("commit");
+            this.annotationElement = Class.forName("jdk.jfr.AnnotationElement").getConstructor(Class.class, Object.class);
+            this.valueDescriptor = Class.forName("jdk.jfr.ValueDescriptor").getConstructor(Class.class, String.class, List.class);
+            this.nameType = (Class<? extends Annotation>) Class.forName("jdk.jfr.Name");
+            this.labelType = (Class<? extends Annotation>) Class.forName("jdk.jfr.Label");
+            this.categoryType = (Class<? extends Annotation>) Class.forName("jdk.jfr.Category");
+            this.timespanType = (Class<? extends Annotation>) Class.forName("jdk.jfr.Timespan");
+        }
+
+        private Object create(String name, String label, Field[] fields) throws ReflectiveOperationException {
+            List<Object> annotations = Arrays.asList(
+                    annotation(nameType, name),
+                    annotation(labelType, label),
+                    annotation(categoryType, CATEGORY.clone())
+            );
+            List<Object> descriptors = new ArrayList<>();
+            for (Field field : fields) {
+                List<Object> fieldAnnotations = field.isTimespan()
+                        ? Collections.singletonList(annotation(timespanType, "NANOSECONDS"))
+                        : Collections.emptyList();
+                descriptors.add(valueDescriptor.newInstance(field.getType(), field.getName(), fieldAnnotations));
+            }
+            return create.invoke(null, annotations, descriptors);
+        }
+
+        private MethodHandle isEnabled(Object prototype) throws IllegalAccessException {
+            return MethodHandles.publicLookup().unreflect(isEnabled).bindTo(prototype);
+        }
+
+        private Object annotation(Class<? extends Annotation> type, Object value) throws ReflectiveOperationException {
+            return annotationElement.newInstance(type, value);
+        }
+    }
+}
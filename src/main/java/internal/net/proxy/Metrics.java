@@ -0,0 +1,112 @@
+/*
+ * Copyright 2026 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package internal.net.proxy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import nbbrd.design.ThreadSafe;
+import nbbrd.net.proxy.MetricsListener;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+/**
+ * The listeners registered on a component, read on the hot paths without
+ * locking. Callers are expected to compare {@link #get()} with
+ * {@link MetricsListener#NONE} before measuring anything.
+ *
+ * @author Philippe Charles
+ */
+@ThreadSafe
+public final class Metrics {
+
+    private volatile MetricsListener listener = MetricsListener.NONE;
+
+    private final List<MetricsListener> listeners = new ArrayList<>();
+
+    @NonNull
+    public MetricsListener get() {
+        return listener;
+    }
+
+    /**
+     * Adds a listener unless it is already registered.
+     *
+     * @param other a non-null listener
+     */
+    public synchronized void add(@NonNull MetricsListener other) {
+        if (other == MetricsListener.NONE || listeners.contains(other)) {
+            return;
+        }
+        listeners.add(other);
+        listener = listeners.size() == 1 ? other : new Composite(Collections.unmodifiableList(new ArrayList<>(listeners)));
+    }
+
+    @lombok.AllArgsConstructor
+    private static final class Composite implements MetricsListener {
+
+        private final List<MetricsListener> list;
+
+        @Override
+        public void onProviderCall(String provider, long durationInNanos) {
+            for (MetricsListener o : list) {
+                o.onProviderCall(provider, durationInNanos);
+            }
+        }
+
+        @Override
+        public void onFallback() {
+            for (MetricsListener o : list) {
+                o.onFallback();
+            }
+        }
+
+        @Override
+        public void onCacheEvent(String cache, CacheEvent event) {
+            for (MetricsListener o : list) {
+                o.onCacheEvent(cache, event);
+            }
+        }
+
+        @Override
+        public void onLockWait(String resource, long durationInNanos) {
+            for (MetricsListener o : list) {
+                o.onLockWait(resource, durationInNanos);
+            }
+        }
+
+        @Override
+        public void onExecution(String resource, boolean fallback, long durationInNanos) {
+            for (MetricsListener o : list) {
+                o.onExecution(resource, fallback, durationInNanos);
+            }
+        }
+
+        @Override
+        public void onSpawn(String resource) {
+            for (MetricsListener o : list) {
+                o.onSpawn(resource);
+            }
+        }
+
+        @Override
+        public void onRejection(String resource) {
+            for (MetricsListener o : list) {
+                o.onRejection(resource);
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2026 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package internal.net.proxy;
+
+import java.net.URI;
+import java.util.Locale;
+import java.util.Objects;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * The (scheme, host, port) part of an URI that proxy selection depends on.
+ * Well-known schemes are stored as an ordinal, the host is lower-cased, the
+ * port is made explicit and the hash is computed once so that this key is
+ * cheap to build and to look up.
+ *
+ * @author Philippe Charles
+ */
+public final class Origin {
+
+    private static final String[] SCHEMES = {"http", "https", "ws", "wss", "ftp", "socket"};
+    private static final int[] DEFAULT_PORTS = {80, 443, 80, 443, 21, -1};
+    private static final int OTHER_SCHEME = -1;
+
+    @NonNull
+    public static Origin of(@NonNull URI uri) {
+        String scheme = uri.getScheme();
+        String host = uri.getHost();
+        int ordinal = indexOfScheme(scheme);
+        int port = uri.getPort();
+        if (port == -1 && ordinal != OTHER_SCHEME) {
+            port = DEFAULT_PORTS[ordinal];
+        }
+        return new Origin(
+                ordinal,
+                ordinal != OTHER_SCHEME ? SCHEMES[ordinal] : scheme != null ? scheme.toLowerCase(Locale.ROOT) : null,
+                host != null ? host.toLowerCase(Locale.ROOT) : null,
+                port
+        );
+    }
+
+    private final int schemeOrdinal;
+
+    @lombok.Getter
+    @Nullable
+    private final String scheme;
+
+    @lombok.Getter
+    @Nullable
+    private final String host;
+
+    @lombok.Getter
+    private final int port;
+
+    private final int hash;
+
+    private Origin(int schemeOrdinal, String scheme, String host, int port) {
+        this.schemeOrdinal = schemeOrdinal;
+        this.scheme = scheme;
+        this.host = host;
+        this.port = port;
+        this.hash = computeHash(schemeOrdinal, scheme, host, port);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof Origin)) {
+            return false;
+        }
+        Origin that = (Origin) obj;
+        return hash == that.hash
+                && port == that.port
+                && schemeOrdinal == that.schemeOrdinal
+                && Objects.equals(host, that.host)
+                && (schemeOrdinal != OTHER_SCHEME || Objects.equals(scheme, that.scheme));
+    }
+
+    @Override
+    public String toString() {
+        return scheme + "://" + host + ":" + port;
+    }
+
+    private static int indexOfScheme(String scheme) {
+        if (scheme != null) {
+            for (int i = 0; i < SCHEMES.length; i++) {
+                if (SCHEMES[i].equalsIgnoreCase(scheme)) {
+                    return i;
+                }
+            }
+        }
+        return OTHER_SCHEME;
+    }
+
+    private static int computeHash(int schemeOrdinal, String scheme, String host, int port) {
+        int result = schemeOrdinal != OTHER_SCHEME ? schemeOrdinal : Objects.hashCode(scheme);
+        result = 31 * result + Objects.hashCode(host);
+        result = 31 * result + port;
+        return result;
+    }
+}
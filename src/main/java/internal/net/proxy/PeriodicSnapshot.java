@@ -0,0 +1,122 @@
+/*
+ * Copyright 2026 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package internal.net.proxy;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import nbbrd.design.ThreadSafe;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A value that is loaded lazily and reloaded at most once per interval.
+ * <p>
+ * Without refresh executor, an expired value is reloaded by the calling
+ * thread and concurrent reloads are harmless since the loader is expected to
+ * be cheap and idempotent. With a refresh executor, an expired value is still
+ * served while a single background task reloads it.
+ * <p>
+ * The loader returns null if it fails, in which case the previous value is
+ * kept until the next attempt.
+ *
+ * @author Philippe Charles
+ * @param <T>
+ */
+@ThreadSafe
+@lombok.RequiredArgsConstructor
+public final class PeriodicSnapshot<T> {
+
+    @lombok.NonNull
+    private final Supplier<T> loader;
+
+    private final long intervalInNanos;
+
+    @lombok.NonNull
+    private final LongSupplier nanoClock;
+
+    @Nullable
+    private final Executor refreshExecutor;
+
+    private final Object initialLoad = new Object();
+
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+
+    private volatile State<T> state = null;
+
+    public PeriodicSnapshot(@NonNull Supplier<T> loader, long intervalInNanos, @NonNull LongSupplier nanoClock) {
+        this(loader, intervalInNanos, nanoClock, null);
+    }
+
+    /**
+     * Gets the current value.
+     *
+     * @return the last loaded value, null if no load succeeded yet
+     */
+    @Nullable
+    public T get() {
+        State<T> current = state;
+        if (current == null) {
+            synchronized (initialLoad) {
+                current = state;
+                return current != null ? current.getValue() : refresh();
+            }
+        }
+        if (nanoClock.getAsLong() - current.getDeadline() >= 0) {
+            if (refreshExecutor == null) {
+                return refresh();
+            }
+            if (refreshing.compareAndSet(false, true)) {
+                try {
+                    refreshExecutor.execute(this::refreshInBackground);
+                } catch (RejectedExecutionException ex) {
+                    refreshing.set(false);
+                }
+            }
+        }
+        return current.getValue();
+    }
+
+    @Nullable
+    public T refresh() {
+        T value = loader.get();
+        State<T> current = state;
+        if (value == null && current != null) {
+            value = current.getValue();
+        }
+        state = new State<>(value, nanoClock.getAsLong() + intervalInNanos);
+        return value;
+    }
+
+    private void refreshInBackground() {
+        try {
+            refresh();
+        } finally {
+            refreshing.set(false);
+        }
+    }
+
+    @lombok.Value
+    private static class State<T> {
+
+        @Nullable
+        T value;
+        long deadline;
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2026 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package internal.net.proxy;
+
+import java.net.Proxy;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import nbbrd.design.ThreadSafe;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Memoizes proxy selections per {@link Origin} for a fixed time-to-live.
+ * <p>
+ * The number of origins is bounded by <code>maxSize</code>: the storage is
+ * simply cleared when it is full since it is meant for a few hundred origins.
+ *
+ * @author Philippe Charles
+ */
+@ThreadSafe
+@lombok.RequiredArgsConstructor
+public final class SelectionCache {
+
+    private final long ttlInNanos;
+    private final int maxSize;
+
+    @lombok.NonNull
+    private final LongSupplier nanoClock;
+
+    private final ConcurrentMap<Origin, Entry> storage = new ConcurrentHashMap<>();
+
+    @NonNull
+    public List<Proxy> get(@NonNull URI uri, @NonNull Function<URI, List<Proxy>> loader) {
+        List<Proxy> result = getIfPresent(uri);
+        return result != null ? result : put(uri, loader.apply(uri));
+    }
+
+    @Nullable
+    public List<Proxy> getIfPresent(@NonNull URI uri) {
+        Entry entry = storage.get(Origin.of(uri));
+        return entry != null && nanoClock.getAsLong() - entry.getExpiration() < 0 ? entry.getProxies() : null;
+    }
+
+    @NonNull
+    public List<Proxy> put(@NonNull URI uri, @NonNull List<Proxy> proxies) {
+        List<Proxy> result = Collections.unmodifiableList(new ArrayList<>(proxies));
+        if (storage.size() >= maxSize) {
+            storage.clear();
+        }
+        storage.put(Origin.of(uri), new Entry(nanoClock.getAsLong() + ttlInNanos, result));
+        return result;
+    }
+
+    public int size() {
+        return storage.size();
+    }
+
+    @lombok.Value
+    private static class Entry {
+
+        long expiration;
+        List<Proxy> proxies;
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2026 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package internal.net.proxy;
+
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.URI;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import nbbrd.design.ThreadSafe;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Static proxy properties compiled into ready-to-use proxies and a host
+ * matcher, following the rules of the JDK default selector for the http and
+ * https schemes. Other cases are left to the fallback selector.
+ *
+ * @author Philippe Charles
+ */
+@ThreadSafe
+@lombok.AllArgsConstructor(access = lombok.AccessLevel.PRIVATE)
+public final class StaticProxyConfig {
+
+    /**
+     * Value used by the JDK when <code>http.nonProxyHosts</code> is not set.
+     */
+    public static final String DEFAULT_NON_PROXY_HOSTS = "localhost|127.*|[::1]|0.0.0.0|[::0]";
+
+    private static final List<Proxy> NO_PROXY = Collections.singletonList(Proxy.NO_PROXY);
+
+    @NonNull
+    public static StaticProxyConfig compile(@NonNull StaticProxyProperties properties) {
+        String nonProxyHosts = properties.getHttpNonProxyHosts();
+        return new StaticProxyConfig(
+                properties,
+                toProxies(properties.getHttpProxyHost(), properties.getHttpProxyPort(), 80),
+                toProxies(properties.getHttpsProxyHost(), properties.getHttpsProxyPort(), 443),
+                parseNonProxyHosts(nonProxyHosts != null ? nonProxyHosts : DEFAULT_NON_PROXY_HOSTS)
+        );
+    }
+
+    @lombok.Getter
+    @NonNull
+    private final StaticProxyProperties properties;
+
+    @Nullable
+    private final List<Proxy> http;
+
+    @Nullable
+    private final List<Proxy> https;
+
+    @NonNull
+    private final HostMatcher nonProxyHosts;
+
+    /**
+     * Gets a config of some properties, reusing this one if they are unchanged.
+     *
+     * @param properties non-null properties
+     * @return a non-null config
+     */
+    @NonNull
+    public StaticProxyConfig update(@NonNull StaticProxyProperties properties) {
+        return this.properties.equals(properties) ? this : compile(properties);
+    }
+
+    public boolean isEmpty() {
+        return properties.isEmpty();
+    }
+
+    /**
+     * Selects the proxies of an URI.
+     *
+     * @param uri a non-null URI
+     * @return an unmodifiable list of proxies, null if the configuration
+     * doesn't apply to this URI
+     */
+    @Nullable
+    public List<Proxy> select(@NonNull URI uri) {
+        String scheme = uri.getScheme();
+        String host = uri.getHost();
+        if (scheme == null || host == null) {
+            return null;
+        }
+        List<Proxy> result = getProxies(scheme);
+        if (result == null) {
+            return null;
+        }
+        return nonProxyHosts.matches(host) ? NO_PROXY : result;
+    }
+
+    private List<Proxy> getProxies(String scheme) {
+        switch (scheme.toLowerCase(Locale.ROOT)) {
+            case "http":
+                return http;
+            case "https":
+                return https;
+            default:
+                return null;
+        }
+    }
+
+    @NonNull
+    static HostMatcher parseNonProxyHosts(@NonNull String text) {
+        HostMatcher.Builder result = HostMatcher.builder();
+        for (String item : text.split("\\|")) {
+            String pattern = item.trim();
+            if (!pattern.isEmpty()) {
+                result.wildcard(pattern);
+            }
+        }
+        return result.build();
+    }
+
+    private static List<Proxy> toProxies(String host, String port, int defaultPort) {
+        if (host == null || host.isEmpty()) {
+            return null;
+        }
+        return Collections.singletonList(new Proxy(Proxy.Type.HTTP, InetSocketAddress.createUnresolved(host, parsePort(port, defaultPort))));
+    }
+
+    private static int parsePort(String port, int defaultPort) {
+        if (port != null) {
+            try {
+                int result = Integer.parseInt(port.trim());
+                if (result > 0 && result <= 0xFFFF) {
+                    return result;
+                }
+            } catch (NumberFormatException ex) {
+                // fall through
+            }
+        }
+        return defaultPort;
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2026 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package internal.net.proxy;
+
+import java.util.function.UnaryOperator;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Immutable snapshot of the system properties that define a static proxy
+ * configuration.
+ *
+ * @author Philippe Charles
+ */
+@lombok.Value
+public class StaticProxyProperties {
+
+    @NonNull
+    public static StaticProxyProperties load(@NonNull UnaryOperator<String> systemProperties) {
+        return new StaticProxyProperties(
+                systemProperties.apply("http.proxyHost"),
+                systemProperties.apply("http.proxyPort"),
+                systemProperties.apply("https.proxyHost"),
+                systemProperties.apply("https.proxyPort"),
+                systemProperties.apply("http.nonProxyHosts")
+        );
+    }
+
+    @Nullable
+    String httpProxyHost;
+
+    @Nullable
+    String httpProxyPort;
+
+    @Nullable
+    String httpsProxyHost;
+
+    @Nullable
+    String httpsProxyPort;
+
+    @Nullable
+    String httpNonProxyHosts;
+
+    public boolean isEmpty() {
+        return httpProxyHost == null
+                && httpProxyPort == null
+                && httpsProxyHost == null
+                && httpsProxyPort == null
+                && httpNonProxyHosts == null;
+    }
+}
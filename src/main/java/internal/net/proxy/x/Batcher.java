@@ -0,0 +1,171 @@
+/*
+ * Copyright 2026 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package internal.net.proxy.x;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+import nbbrd.design.ThreadSafe;
+
+/**
+ * Coalesces the keys requested within a short window into a single call of
+ * a batch loader.
+ * <p>
+ * The first caller of a batch waits for the window to elapse and then runs
+ * the batch on behalf of every caller, unless the batch gets full before, in
+ * which case the caller that filled it runs it immediately. A caller that
+ * arrives while no batch is running doesn't wait at all: a lone key is loaded
+ * at once and the callers arriving during its load form the next batch.
+ * <p>
+ * If <code>maxWaitInNanos</code> is positive, a caller waits for the batch of
+ * another caller up to that delay before loading its key by itself, so that a
+ * stuck batch doesn't block every caller.
+ *
+ * @author Philippe Charles
+ * @param <K>
+ * @param <V>
+ */
+@ThreadSafe
+@lombok.RequiredArgsConstructor
+final class Batcher<K, V> {
+
+    @lombok.NonNull
+    private final Function<? super List<K>, ? extends Map<K, V>> batchLoader;
+
+    private final long windowInNanos;
+
+    private final int maxBatchSize;
+
+    private final long maxWaitInNanos;
+
+    private final Object lock = new Object();
+
+    // guarded by lock
+    private Map<K, CompletableFuture<V>> current = null;
+
+    // guarded by lock
+    private Thread currentLeader = null;
+
+    // guarded by lock
+    private int running = 0;
+
+    V get(K key) {
+        Map<K, CompletableFuture<V>> batch;
+        CompletableFuture<V> result;
+        boolean leader;
+        boolean full = false;
+        Thread leaderToWake = null;
+        synchronized (lock) {
+            leader = current == null;
+            if (leader) {
+                current = new LinkedHashMap<>();
+                currentLeader = Thread.currentThread();
+            }
+            batch = current;
+            result = batch.computeIfAbsent(key, o -> new CompletableFuture<>());
+            if (batch.size() >= maxBatchSize || running == 0) {
+                full = true;
+                leaderToWake = currentLeader;
+                current = null;
+                currentLeader = null;
+                running++;
+            }
+        }
+        if (full) {
+            run(batch);
+            if (!leader) {
+                LockSupport.unpark(leaderToWake);
+            }
+        } else if (leader) {
+            awaitWindow(result);
+            if (take(batch)) {
+                run(batch);
+            }
+        }
+        return await(key, result);
+    }
+
+    private void awaitWindow(CompletableFuture<V> result) {
+        long deadline = System.nanoTime() + windowInNanos;
+        for (long remaining = windowInNanos;
+                remaining > 0 && !result.isDone() && !Thread.currentThread().isInterrupted();
+                remaining = deadline - System.nanoTime()) {
+            LockSupport.parkNanos(this, remaining);
+        }
+    }
+
+    private boolean take(Map<K, CompletableFuture<V>> batch) {
+        synchronized (lock) {
+            if (current == batch) {
+                running++;
+                current = null;
+                currentLeader = null;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private void run(Map<K, CompletableFuture<V>> batch) {
+        try {
+            Map<K, V> values = batchLoader.apply(new ArrayList<>(batch.keySet()));
+            batch.forEach((key, future) -> future.complete(values.get(key)));
+        } catch (RuntimeException | Error ex) {
+            batch.values().forEach(future -> future.completeExceptionally(ex));
+        } finally {
+            synchronized (lock) {
+                running--;
+            }
+        }
+    }
+
+    private V await(K key, CompletableFuture<V> future) {
+        try {
+            return maxWaitInNanos > 0 ? future.get(maxWaitInNanos, TimeUnit.NANOSECONDS) : future.get();
+        } catch (ExecutionException ex) {
+            throw propagate(ex.getCause());
+        } catch (TimeoutException ex) {
+            return loadAlone(key);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return loadAlone(key);
+        }
+    }
+
+    private V loadAlone(K key) {
+        return batchLoader.apply(Collections.singletonList(key)).get(key);
+    }
+
+    private static RuntimeException propagate(Throwable cause) {
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new CompletionException(cause);
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2026 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package internal.net.proxy.x;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import nbbrd.design.ThreadSafe;
+import nbbrd.net.proxy.CacheStats;
+
+/**
+ * Striped counters behind {@link TtlCache} statistics.
+ *
+ * @author Philippe Charles
+ */
+@ThreadSafe
+final class CacheStatsCounter {
+
+    static final int HISTOGRAM_LENGTH = 18;
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder staleCount = new LongAdder();
+    private final LongAdder expirationCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+    private final LongAdder sharedLoadCount = new LongAdder();
+    private final LongAdder loadCount = new LongAdder();
+    private final LongAdder totalLoadTimeInNanos = new LongAdder();
+    private final LongAdder[] loadTimeHistogram = newAdders(HISTOGRAM_LENGTH);
+
+    void record(TtlCache.Event event) {
+        switch (event) {
+            case HIT:
+                hitCount.increment();
+                break;
+            case STALE:
+                hitCount.increment();
+                staleCount.increment();
+                break;
+            case MISS_SLOW:
+            case MISS_FAST:
+                missCount.increment();
+                break;
+            case EXP_SLOW:
+            case EXP_FAST:
+                missCount.increment();
+                expirationCount.increment();
+                break;
+            case SHARED:
+                missCount.increment();
+                sharedLoadCount.increment();
+                break;
+            case EVICT:
+                evictionCount.increment();
+                break;
+        }
+    }
+
+    void recordLoad(long loadTimeInNanos) {
+        loadCount.increment();
+        totalLoadTimeInNanos.add(loadTimeInNanos);
+        loadTimeHistogram[getBucket(loadTimeInNanos)].increment();
+    }
+
+    CacheStats snapshot(long size) {
+        CacheStats.Builder result = CacheStats
+                .builder()
+                .hitCount(hitCount.sum())
+                .missCount(missCount.sum())
+                .staleCount(staleCount.sum())
+                .expirationCount(expirationCount.sum())
+                .evictionCount(evictionCount.sum())
+                .sharedLoadCount(sharedLoadCount.sum())
+                .loadCount(loadCount.sum())
+                .totalLoadTimeInNanos(totalLoadTimeInNanos.sum())
+                .size(size);
+        for (LongAdder bucket : loadTimeHistogram) {
+            result.loadTimeBucket(bucket.sum());
+        }
+        return result.build();
+    }
+
+    static int getBucket(long loadTimeInNanos) {
+        long millis = TimeUnit.NANOSECONDS.toMillis(Math.max(0, loadTimeInNanos));
+        return Math.min(64 - Long.numberOfLeadingZeros(millis), HISTOGRAM_LENGTH - 1);
+    }
+
+    private static LongAdder[] newAdders(int length) {
+        LongAdder[] result = new LongAdder[length];
+        for (int i = 0; i < length; i++) {
+            result[i] = new LongAdder();
+        }
+        return result;
+    }
+}
@@ -0,0 +1,274 @@
+/*
+ * Copyright 2026 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package internal.net.proxy.x;
+
+import internal.net.proxy.HostMatcher;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.logging.Level;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Manual proxy settings of a Linux desktop, parsed from KDE's
+ * <code>kioslaverc</code> or from GNOME keyfiles exported by
+ * <code>dconf dump /system/proxy/</code>.
+ *
+ * @author Philippe Charles
+ */
+@lombok.extern.java.Log
+@lombok.Value
+class DesktopProxyRules {
+
+    static final DesktopProxyRules EMPTY = new DesktopProxyRules(Collections.emptyMap(), HostMatcher.NONE, false);
+
+    static final String KDE_FILE = "kioslaverc";
+    static final String GNOME_DIR = "proxy.d";
+
+    /**
+     * Proxies by scheme, the <code>socks</code> entry being used for every
+     * scheme without proxy.
+     */
+    @NonNull
+    Map<String, Proxy> proxies;
+
+    @NonNull
+    HostMatcher bypass;
+
+    /**
+     * Whether the bypass list is the list of the only hosts to proxy.
+     */
+    boolean reversed;
+
+    @Nullable
+    Proxy getProxyOrNull(@Nullable String scheme, @Nullable String host) {
+        if (proxies.isEmpty()) {
+            return null;
+        }
+        if (host != null && bypass.matches(host) != reversed) {
+            return Proxy.NO_PROXY;
+        }
+        Proxy result = scheme != null ? proxies.get(scheme.toLowerCase(Locale.ROOT)) : null;
+        return result != null ? result : proxies.get("socks");
+    }
+
+    /**
+     * Loads the rules of KDE if its configuration exists, and of GNOME
+     * otherwise.
+     *
+     * @param configDir the XDG configuration directory such as
+     * <code>~/.config</code>
+     */
+    @NonNull
+    static DesktopProxyRules load(@NonNull Path configDir) {
+        try {
+            Path kde = configDir.resolve(KDE_FILE);
+            if (Files.isRegularFile(kde)) {
+                return parseKde(parseIni(readLines(kde)));
+            }
+            Path gnome = configDir.resolve("dconf").resolve(GNOME_DIR);
+            if (Files.isDirectory(gnome)) {
+                Map<String, Map<String, String>> groups = new LinkedHashMap<>();
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(gnome)) {
+                    for (Path file : files) {
+                        if (Files.isRegularFile(file)) {
+                            parseIni(readLines(file)).forEach((group, entries) -> groups.computeIfAbsent(group, o -> new HashMap<>()).putAll(entries));
+                        }
+                    }
+                }
+                return parseGnome(groups);
+            }
+        } catch (IOException | RuntimeException ex) {
+            if (log.isLoggable(Level.WARNING)) {
+                log.log(Level.WARNING, "Failed to load desktop proxy settings from '" + configDir + "'", ex);
+            }
+        }
+        return EMPTY;
+    }
+
+    @NonNull
+    static DesktopProxyRules parseKde(@NonNull Map<String, Map<String, String>> ini) {
+        Map<String, String> settings = ini.getOrDefault("Proxy Settings", Collections.emptyMap());
+        // 1 is manual; 0 is none, 2 is PAC, 3 is WPAD and 4 is environment
+        if (!"1".equals(settings.get("ProxyType"))) {
+            return EMPTY;
+        }
+        Map<String, Proxy> proxies = new HashMap<>();
+        putProxy(proxies, "http", Proxy.Type.HTTP, parseKdeAddress(settings.get("httpProxy")));
+        putProxy(proxies, "https", Proxy.Type.HTTP, parseKdeAddress(settings.get("httpsProxy")));
+        putProxy(proxies, "ftp", Proxy.Type.HTTP, parseKdeAddress(settings.get("ftpProxy")));
+        putProxy(proxies, "socks", Proxy.Type.SOCKS, parseKdeAddress(settings.get("socksProxy")));
+        HostMatcher.Builder bypass = HostMatcher.builder();
+        for (String item : splitList(settings.get("NoProxyFor"))) {
+            addBypass(bypass, item);
+        }
+        return new DesktopProxyRules(Collections.unmodifiableMap(proxies), bypass.build(), "true".equalsIgnoreCase(settings.get("ReversedException")));
+    }
+
+    @NonNull
+    static DesktopProxyRules parseGnome(@NonNull Map<String, Map<String, String>> ini) {
+        Map<String, Map<String, String>> groups = new HashMap<>();
+        ini.forEach((group, entries) -> groups.put(normalizeGnomeGroup(group), entries));
+        Map<String, String> root = groups.getOrDefault("", Collections.emptyMap());
+        if (!"manual".equals(unquote(root.get("mode")))) {
+            return EMPTY;
+        }
+        Map<String, Proxy> proxies = new HashMap<>();
+        for (String scheme : new String[]{"http", "https", "ftp", "socks"}) {
+            Map<String, String> group = groups.getOrDefault(scheme, Collections.emptyMap());
+            String host = unquote(group.get("host"));
+            String port = unquote(group.get("port"));
+            if (host != null && !host.isEmpty() && port != null) {
+                putProxy(proxies, scheme, "socks".equals(scheme) ? Proxy.Type.SOCKS : Proxy.Type.HTTP, host + ":" + port.replace("uint32", "").trim());
+            }
+        }
+        HostMatcher.Builder bypass = HostMatcher.builder();
+        String hosts = root.get("ignore-hosts");
+        if (hosts != null) {
+            for (String item : splitList(hosts.replace("@as", "").trim().replaceAll("^\\[|\\]$", ""))) {
+                addBypass(bypass, unquote(item));
+            }
+        }
+        return new DesktopProxyRules(Collections.unmodifiableMap(proxies), bypass.build(), false);
+    }
+
+    private static String normalizeGnomeGroup(String group) {
+        String result = group;
+        while (result.startsWith("/")) {
+            result = result.substring(1);
+        }
+        if (result.startsWith("system/proxy")) {
+            result = result.substring("system/proxy".length());
+        }
+        while (result.startsWith("/")) {
+            result = result.substring(1);
+        }
+        return result.endsWith("/") ? result.substring(0, result.length() - 1) : result;
+    }
+
+    private static String parseKdeAddress(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return null;
+        }
+        String result = value.trim();
+        int scheme = result.indexOf("://");
+        if (scheme != -1) {
+            result = result.substring(scheme + 3);
+        }
+        // KDE separates the port with a space
+        return result.replaceFirst("\\s+", ":");
+    }
+
+    private static void putProxy(Map<String, Proxy> proxies, String scheme, Proxy.Type type, String address) {
+        if (address == null) {
+            return;
+        }
+        String text = address.endsWith("/") ? address.substring(0, address.length() - 1) : address;
+        int colon = text.lastIndexOf(':');
+        try {
+            int port = colon != -1 ? Integer.parseInt(text.substring(colon + 1).trim()) : (type == Proxy.Type.SOCKS ? 1080 : 80);
+            String host = colon != -1 ? text.substring(0, colon) : text;
+            proxies.put(scheme, new Proxy(type, InetSocketAddress.createUnresolved(host, port)));
+        } catch (IllegalArgumentException ex) {
+            if (log.isLoggable(Level.WARNING)) {
+                log.log(Level.WARNING, "Invalid proxy address '" + address + "'", ex);
+            }
+        }
+    }
+
+    private static void addBypass(HostMatcher.Builder bypass, String item) {
+        if (item == null || item.isEmpty()) {
+            return;
+        }
+        if (item.indexOf('/') != -1) {
+            try {
+                bypass.range(item);
+            } catch (IllegalArgumentException ex) {
+                if (log.isLoggable(Level.WARNING)) {
+                    log.log(Level.WARNING, "Invalid bypass range '" + item + "'", ex);
+                }
+            }
+        } else if (item.startsWith(".")) {
+            bypass.domain(item.substring(1));
+        } else {
+            bypass.wildcard(item);
+        }
+    }
+
+    private static List<String> splitList(String value) {
+        List<String> result = new ArrayList<>();
+        if (value != null) {
+            for (String item : value.split(",", -1)) {
+                String trimmed = item.trim();
+                if (!trimmed.isEmpty()) {
+                    result.add(trimmed);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static String unquote(String value) {
+        if (value == null) {
+            return null;
+        }
+        String result = value.trim();
+        if (result.length() >= 2 && (result.startsWith("'") && result.endsWith("'") || result.startsWith("\"") && result.endsWith("\""))) {
+            return result.substring(1, result.length() - 1);
+        }
+        return result;
+    }
+
+    @NonNull
+    static Map<String, Map<String, String>> parseIni(@NonNull List<String> lines) {
+        Map<String, Map<String, String>> result = new LinkedHashMap<>();
+        Map<String, String> group = null;
+        for (String line : lines) {
+            String row = line.trim();
+            if (row.isEmpty() || row.startsWith("#") || row.startsWith(";")) {
+                continue;
+            }
+            if (row.startsWith("[") && row.endsWith("]")) {
+                group = result.computeIfAbsent(row.substring(1, row.length() - 1), o -> new LinkedHashMap<>());
+            } else if (group != null) {
+                int index = row.indexOf('=');
+                if (index != -1) {
+                    // KDE adds flags such as [$e] to keys
+                    String key = row.substring(0, index).trim().replaceAll("\\[\\$.*\\]$", "");
+                    group.put(key, row.substring(index + 1).trim());
+                }
+            }
+        }
+        return result;
+    }
+
+    private static List<String> readLines(Path file) throws IOException {
+        return Files.readAllLines(file, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2026 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package internal.net.proxy.x;
+
+import internal.net.proxy.PeriodicSnapshot;
+import java.io.IOException;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.net.Proxy;
+import java.net.URI;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.UnaryOperator;
+import java.util.logging.Level;
+import lombok.AccessLevel;
+import nbbrd.design.ThreadSafe;
+import nbbrd.net.proxy.SystemProxySelector;
+import nbbrd.service.ServiceProvider;
+
+/**
+ * Applies the manual proxy settings of a Linux or Unix desktop found in a
+ * configuration directory that defaults to <code>~/.config</code> and can
+ * be set with the <code>nbbrd.net.proxy.desktop.configDir</code> system
+ * property: KDE's <code>kioslaverc</code> or GNOME keyfiles in
+ * <code>dconf/proxy.d</code>.
+ * <p>
+ * Settings are parsed once and reparsed only when a {@link WatchService}
+ * reports a change, so that a selection costs a few map lookups. The
+ * watcher is checked at most once per second and closed once this selector
+ * is garbage collected.
+ *
+ * @author Philippe Charles
+ */
+@ThreadSafe
+@ServiceProvider(SystemProxySelector.Spi.class)
+@lombok.extern.java.Log
+@lombok.RequiredArgsConstructor(access = AccessLevel.PACKAGE)
+public final class DesktopProxySelector implements SystemProxySelector.Spi {
+
+    private static final String CONFIG_DIR_PROPERTY = "nbbrd.net.proxy.desktop.configDir";
+    static final long CHECK_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    @lombok.NonNull
+    private final Path configDir;
+
+    @lombok.NonNull
+    private final UnaryOperator<String> sys;
+
+    @lombok.NonNull
+    private final LongSupplier nanoClock;
+
+    @lombok.Getter(value = AccessLevel.PRIVATE, lazy = true)
+    private final PeriodicSnapshot<DesktopProxyRules> snapshot = new PeriodicSnapshot<>(this::check, CHECK_INTERVAL_NANOS, nanoClock);
+
+    private final Object lock = new Object();
+
+    // guarded by lock
+    private WatcherRef watcher = null;
+
+    // guarded by lock
+    private final Set<Path> watchedDirs = new HashSet<>();
+
+    // guarded by lock
+    private DesktopProxyRules rules = null;
+
+    public DesktopProxySelector() {
+        this(getDefaultConfigDir(), System::getProperty, System::nanoTime);
+    }
+
+    @Override
+    public Proxy getProxyOrNull(URI uri) {
+        if (!isUnix(sys)) {
+            return null;
+        }
+        return getRules().getProxyOrNull(uri.getScheme(), uri.getHost());
+    }
+
+    @Override
+    public void warmUp() {
+        if (isUnix(sys)) {
+            getRules();
+        }
+    }
+
+    @Override
+    public int getPriority() {
+        // environment variables override the desktop settings
+        return 100;
+    }
+
+    DesktopProxyRules getRules() {
+        return getSnapshot().get();
+    }
+
+    private DesktopProxyRules check() {
+        WatcherRef.closeDropped();
+        synchronized (lock) {
+            if (rules == null || hasChanged()) {
+                watch();
+                rules = DesktopProxyRules.load(configDir);
+            }
+            return rules;
+        }
+    }
+
+    // guarded by lock
+    private boolean hasChanged() {
+        if (watcher == null) {
+            return false;
+        }
+        boolean result = false;
+        try {
+            WatchKey key;
+            while ((key = watcher.getService().poll()) != null) {
+                key.pollEvents();
+                if (!key.reset()) {
+                    watchedDirs.remove((Path) key.watchable());
+                }
+                result = true;
+            }
+        } catch (ClosedWatchServiceException ex) {
+            watcher.close();
+            watcher = null;
+            watchedDirs.clear();
+            return true;
+        }
+        return result;
+    }
+
+    // guarded by lock
+    private void watch() {
+        try {
+            if (watcher == null) {
+                watcher = new WatcherRef(this, configDir.getFileSystem().newWatchService());
+            }
+            register(configDir);
+            register(configDir.resolve("dconf"));
+            register(configDir.resolve("dconf").resolve(DesktopProxyRules.GNOME_DIR));
+        } catch (IOException | UnsupportedOperationException ex) {
+            if (log.isLoggable(Level.FINE)) {
+                log.log(Level.FINE, "Cannot watch '" + configDir + "'", ex);
+            }
+        }
+    }
+
+    private void register(Path dir) throws IOException {
+        if (!watchedDirs.contains(dir) && Files.isDirectory(dir)) {
+            dir.register(watcher.getService(),
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY,
+                    StandardWatchEventKinds.ENTRY_DELETE);
+            watchedDirs.add(dir);
+        }
+    }
+
+    private static boolean isUnix(UnaryOperator<String> sys) {
+        String result = sys.apply("os.name");
+        return result != null
+                && (result.startsWith("Linux") || result.endsWith("BSD") || result.equals("SunOS") || result.equals("AIX"));
+    }
+
+    private static Path getDefaultConfigDir() {
+        String configDir = System.getProperty(CONFIG_DIR_PROPERTY);
+        if (configDir != null) {
+            return Paths.get(configDir);
+        }
+        String xdgConfigHome = System.getenv("XDG_CONFIG_HOME");
+        if (xdgConfigHome != null && !xdgConfigHome.isEmpty()) {
+            return Paths.get(xdgConfigHome);
+        }
+        return FileSystems.getDefault().getPath(System.getProperty("user.home"), ".config");
+    }
+
+    /**
+     * A watch service that is closed once its selector is unreachable.
+     * Dropped services are closed by the next check of any selector.
+     */
+    private static final class WatcherRef extends PhantomReference<DesktopProxySelector> {
+
+        private static final ReferenceQueue<DesktopProxySelector> DROPPED = new ReferenceQueue<>();
+        private static final Set<WatcherRef> OPEN = ConcurrentHashMap.newKeySet();
+
+        @lombok.Getter
+        private final WatchService service;
+
+        WatcherRef(DesktopProxySelector owner, WatchService service) {
+            super(owner, DROPPED);
+            this.service = service;
+            OPEN.add(this);
+        }
+
+        void close() {
+            OPEN.remove(this);
+            clear();
+            try {
+                service.close();
+            } catch (IOException ex) {
+                if (log.isLoggable(Level.FINE)) {
+                    log.log(Level.FINE, "Cannot close watch service", ex);
+                }
+            }
+        }
+
+        static void closeDropped() {
+            Reference<? extends DesktopProxySelector> ref;
+            while ((ref = DROPPED.poll()) != null) {
+                ((WatcherRef) ref).close();
+            }
+        }
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2026 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package internal.net.proxy.x;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import java.util.function.UnaryOperator;
+import java.util.logging.Level;
+import nbbrd.design.ThreadSafe;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+/**
+ * A bounded append-only file of key-value pairs shared by concurrent JVMs.
+ * <p>
+ * Each line holds a configuration fingerprint, a timestamp, a key and a
+ * value separated by tabs. Lines of another fingerprint or older than the
+ * maximum age are ignored, the last line of a key wins and the file is
+ * compacted once it exceeds its maximum size and has grown by half of this
+ * size since its last compaction, so that live entries larger than the
+ * maximum size are not rewritten at every store. Reads and writes are
+ * guarded by a lock on a sibling file so that compaction can replace the
+ * data file atomically.
+ *
+ * @author Philippe Charles
+ */
+@ThreadSafe
+@lombok.extern.java.Log
+@lombok.RequiredArgsConstructor
+final class DiskCache {
+
+    static final String CACHE_DIR_PROPERTY = "nbbrd.net.proxy.cacheDir";
+
+    // file locks are held by the whole JVM and can't be nested
+    private static final Object JVM_LOCK = new Object();
+
+    /**
+     * Gets the cache directory of this library for the current user.
+     *
+     * @param sys system properties
+     * @param env environment variables
+     * @return a non-null directory that might not exist yet
+     */
+    @NonNull
+    static Path getUserCacheDir(@NonNull UnaryOperator<String> sys, @NonNull UnaryOperator<String> env) {
+        String custom = sys.apply(CACHE_DIR_PROPERTY);
+        if (custom != null && !custom.isEmpty()) {
+            return Paths.get(custom);
+        }
+        String os = sys.apply("os.name");
+        String localAppData = env.apply("LOCALAPPDATA");
+        if (os != null && os.startsWith("Windows") && localAppData != null && !localAppData.isEmpty()) {
+            return Paths.get(localAppData, "nbbrd", "net-proxy");
+        }
+        String xdg = env.apply("XDG_CACHE_HOME");
+        return (xdg != null && !xdg.isEmpty() ? Paths.get(xdg) : Paths.get(sys.apply("user.home"), ".cache")).resolve("nbbrd-net-proxy");
+    }
+
+    @NonNull
+    private final Path file;
+
+    @NonNull
+    private final String fingerprint;
+
+    private final long maxAgeInMillis;
+
+    private final long maxSizeInBytes;
+
+    private final int maxEntries;
+
+    @NonNull
+    private final LongSupplier clock;
+
+    // guarded by JVM_LOCK
+    private long compactedSize = 0;
+
+    /**
+     * Reads the valid entries of the current fingerprint.
+     *
+     * @return a non-null map, empty if the file doesn't exist or can't be read
+     */
+    @NonNull
+    Map<String, String> load() {
+        if (!Files.exists(file)) {
+            return Collections.emptyMap();
+        }
+        synchronized (JVM_LOCK) {
+            try (FileChannel lock = openLock(); FileLock ignore = lock.lock(0, Long.MAX_VALUE, true)) {
+                Map<String, String> result = new LinkedHashMap<>();
+                read().forEach((key, fields) -> result.put(key, fields[3]));
+                return result;
+            } catch (IOException ex) {
+                logWarning("Failed to read", ex);
+                return Collections.emptyMap();
+            }
+        }
+    }
+
+    /**
+     * Appends some entries and compacts the file if it is too large.
+     *
+     * @param entries non-null entries whose keys and values have no tab or
+     * line separator
+     */
+    void store(@NonNull Map<String, String> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        String time = String.valueOf(clock.getAsLong());
+        StringBuilder lines = new StringBuilder();
+        entries.forEach((key, value) -> appendLine(lines, time, key, value));
+        synchronized (JVM_LOCK) {
+            try {
+                Files.createDirectories(file.getParent());
+                try (FileChannel lock = openLock(); FileLock ignore = lock.lock()) {
+                    Files.write(file, lines.toString().getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                    if (Files.size(file) > Math.max(maxSizeInBytes, compactedSize + maxSizeInBytes / 2)) {
+                        compact();
+                        compactedSize = Files.size(file);
+                    }
+                }
+            } catch (IOException ex) {
+                logWarning("Failed to write", ex);
+            }
+        }
+    }
+
+    private Map<String, String[]> read() throws IOException {
+        long minTime = clock.getAsLong() - maxAgeInMillis;
+        Map<String, String[]> result = new LinkedHashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t", -1);
+                if (fields.length == 4 && fields[0].equals(fingerprint) && parseTime(fields[1]) >= minTime) {
+                    result.remove(fields[2]);
+                    result.put(fields[2], fields);
+                }
+            }
+        } catch (CharacterCodingException ex) {
+            // a torn or foreign file is discarded at the next compaction
+        }
+        return result;
+    }
+
+    private void compact() throws IOException {
+        List<String[]> entries = new ArrayList<>(read().values());
+        StringBuilder lines = new StringBuilder();
+        entries.subList(Math.max(0, entries.size() - maxEntries), entries.size())
+                .forEach(fields -> appendLine(lines, fields[1], fields[2], fields[3]));
+        Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temp, lines.toString().getBytes(StandardCharsets.UTF_8));
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private void appendLine(StringBuilder lines, String time, String key, String value) {
+        lines.append(fingerprint).append('\t').append(time).append('\t').append(key).append('\t').append(value).append('\n');
+    }
+
+    private FileChannel openLock() throws IOException {
+        return FileChannel.open(file.resolveSibling(file.getFileName() + ".lock"), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private static long parseTime(String text) {
+        try {
+            return Long.parseLong(text);
+        } catch (NumberFormatException ex) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    private void logWarning(String message, IOException ex) {
+        if (log.isLoggable(Level.WARNING)) {
+            log.log(Level.WARNING, message + " cache file '" + file + "'", ex);
+        }
+    }
+}
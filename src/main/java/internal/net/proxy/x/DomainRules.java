@@ -0,0 +1,118 @@
+/*
+ * Copyright 2026 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package internal.net.proxy.x;
+
+import java.net.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import nbbrd.design.ThreadSafe;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Verified rules that decide the proxy of whole domains, such as the leading
+ * <code>dnsDomainIs</code> tests of a PAC script, stored in a trie of
+ * reversed labels so that sibling hosts are answered without evaluating the
+ * script.
+ *
+ * @author Philippe Charles
+ */
+@ThreadSafe
+@lombok.AllArgsConstructor(access = lombok.AccessLevel.PRIVATE)
+final class DomainRules {
+
+    private static final int NONE = Integer.MAX_VALUE;
+
+    static final DomainRules EMPTY = new DomainRules(new Node(), NONE, Collections.emptyList());
+
+    @NonNull
+    static DomainRules of(@NonNull List<PacScript.HostRule> rules) {
+        Node root = new Node();
+        int plainHostName = NONE;
+        for (int i = rules.size() - 1; i >= 0; i--) {
+            PacScript.HostRule rule = rules.get(i);
+            if (rule.isPlainHostName()) {
+                plainHostName = i;
+            }
+            for (String domain : rule.getDomains()) {
+                root.child(domain).rule = i;
+            }
+        }
+        Proxy[] proxies = new Proxy[rules.size()];
+        for (int i = 0; i < proxies.length; i++) {
+            proxies[i] = PacProxySelector.parseResult(rules.get(i).getResult());
+        }
+        return new DomainRules(root, plainHostName, Collections.unmodifiableList(Arrays.asList(proxies)));
+    }
+
+    private final Node root;
+    private final int plainHostName;
+    private final List<Proxy> proxies;
+
+    boolean isEmpty() {
+        return proxies.isEmpty();
+    }
+
+    /**
+     * Gets the proxy of the first rule that matches a host.
+     *
+     * @param host a non-null host
+     * @return a proxy or null if no rule applies or if the host isn't in
+     * lower case
+     */
+    @Nullable
+    Proxy getProxyOrNull(@NonNull String host) {
+        if (proxies.isEmpty() || !host.toLowerCase(Locale.ROOT).equals(host)) {
+            return null;
+        }
+        int result = host.indexOf('.') == -1 ? plainHostName : NONE;
+        Node node = root;
+        int end = host.length();
+        while (true) {
+            int dot = host.lastIndexOf('.', end - 1);
+            if (dot == -1) {
+                break;
+            }
+            node = node.children.get(host.substring(dot + 1, end));
+            if (node == null) {
+                break;
+            }
+            result = Math.min(result, node.rule);
+            end = dot;
+        }
+        return result != NONE ? proxies.get(result) : null;
+    }
+
+    private static final class Node {
+
+        final Map<String, Node> children = new HashMap<>();
+        int rule = NONE;
+
+        Node child(String domain) {
+            Node result = this;
+            String[] labels = domain.split("\\.", -1);
+            for (int i = labels.length - 1; i >= 0; i--) {
+                result = result.children.computeIfAbsent(labels[i], o -> new Node());
+            }
+            return result;
+        }
+    }
+}
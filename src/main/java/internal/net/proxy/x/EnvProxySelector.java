@@ -0,0 +1,226 @@
+/*
+ * Copyright 2026 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package internal.net.proxy.x;
+
+import internal.net.proxy.HostMatcher;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Locale;
+import java.util.function.UnaryOperator;
+import java.util.logging.Level;
+import lombok.AccessLevel;
+import nbbrd.net.proxy.SystemProxySelector;
+import nbbrd.service.ServiceProvider;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Honors the <code>http_proxy</code>, <code>https_proxy</code>,
+ * <code>all_proxy</code> and <code>no_proxy</code> environment variables, in
+ * lower or upper case. The variables are read once and <code>no_proxy</code>
+ * is compiled into a {@link HostMatcher}.
+ * <p>
+ * These variables are ignored on Windows, where they are often set by
+ * developer tools and would otherwise override the Internet settings.
+ *
+ * @author Philippe Charles
+ */
+@ServiceProvider(SystemProxySelector.Spi.class)
+@lombok.extern.java.Log
+@lombok.AllArgsConstructor(access = AccessLevel.PACKAGE)
+public final class EnvProxySelector implements SystemProxySelector.Spi {
+
+    private final UnaryOperator<String> env;
+
+    private final UnaryOperator<String> sys;
+
+    @lombok.Getter(value = AccessLevel.PRIVATE, lazy = true)
+    private final Config config = Config.parse(env);
+
+    public EnvProxySelector() {
+        this(System::getenv, System::getProperty);
+    }
+
+    @Override
+    public Proxy getProxyOrNull(URI uri) {
+        if (isWindows(sys)) {
+            return null;
+        }
+        Config current = getConfig();
+        if (current.isEmpty()) {
+            return null;
+        }
+        String host = uri.getHost();
+        if (host != null && current.getNoProxy().matches(host)) {
+            return Proxy.NO_PROXY;
+        }
+        return current.getProxy(uri.getScheme());
+    }
+
+    @Override
+    public void warmUp() {
+        if (!isWindows(sys)) {
+            getConfig();
+        }
+    }
+
+    @Override
+    public int getPriority() {
+        return 200;
+    }
+
+    private static boolean isWindows(UnaryOperator<String> sys) {
+        String result = sys.apply("os.name");
+        return result != null && result.startsWith("Windows");
+    }
+
+    @lombok.Value
+    static class Config {
+
+        @NonNull
+        static Config parse(@NonNull UnaryOperator<String> env) {
+            return new Config(
+                    parseProxy(get(env, "http_proxy")),
+                    parseProxy(get(env, "https_proxy")),
+                    parseProxy(get(env, "all_proxy")),
+                    parseNoProxy(get(env, "no_proxy"))
+            );
+        }
+
+        @Nullable
+        Proxy http;
+
+        @Nullable
+        Proxy https;
+
+        @Nullable
+        Proxy all;
+
+        @NonNull
+        HostMatcher noProxy;
+
+        boolean isEmpty() {
+            return http == null && https == null && all == null;
+        }
+
+        @Nullable
+        Proxy getProxy(@Nullable String scheme) {
+            Proxy result = null;
+            if (scheme != null) {
+                switch (scheme.toLowerCase(Locale.ROOT)) {
+                    case "http":
+                    case "ws":
+                        result = http;
+                        break;
+                    case "https":
+                    case "wss":
+                        result = https;
+                        break;
+                    default:
+                        break;
+                }
+            }
+            return result != null ? result : all;
+        }
+
+        private static String get(UnaryOperator<String> env, String name) {
+            String result = env.apply(name);
+            if (result == null || result.trim().isEmpty()) {
+                result = env.apply(name.toUpperCase(Locale.ROOT));
+            }
+            return result != null && !result.trim().isEmpty() ? result.trim() : null;
+        }
+
+        @Nullable
+        static Proxy parseProxy(@Nullable String value) {
+            if (value == null) {
+                return null;
+            }
+            try {
+                URI uri = new URI(value.contains("://") ? value : "http://" + value);
+                String scheme = uri.getScheme().toLowerCase(Locale.ROOT);
+                if (uri.getHost() == null) {
+                    throw new URISyntaxException(value, "Missing host");
+                }
+                boolean socks = scheme.startsWith("socks");
+                int port = uri.getPort() != -1 ? uri.getPort() : getDefaultPort(scheme, value.contains("://"));
+                return new Proxy(socks ? Proxy.Type.SOCKS : Proxy.Type.HTTP, InetSocketAddress.createUnresolved(uri.getHost(), port));
+            } catch (URISyntaxException ex) {
+                if (log.isLoggable(Level.WARNING)) {
+                    log.log(Level.WARNING, "Invalid proxy '" + value + "'", ex);
+                }
+                return null;
+            }
+        }
+
+        private static int getDefaultPort(String scheme, boolean explicitScheme) {
+            if (explicitScheme) {
+                switch (scheme) {
+                    case "http":
+                        return 80;
+                    case "https":
+                        return 443;
+                    default:
+                        break;
+                }
+            }
+            return 1080;
+        }
+
+        @NonNull
+        static HostMatcher parseNoProxy(@Nullable String value) {
+            if (value == null) {
+                return HostMatcher.NONE;
+            }
+            HostMatcher.Builder result = HostMatcher.builder();
+            for (String item : value.split("[,\\s]+", -1)) {
+                if (!item.isEmpty()) {
+                    addNoProxyEntry(result, item);
+                }
+            }
+            return result.build();
+        }
+
+        private static void addNoProxyEntry(HostMatcher.Builder builder, String entry) {
+            if (entry.equals("*")) {
+                builder.any();
+            } else if (entry.indexOf('/') != -1) {
+                try {
+                    builder.range(entry);
+                } catch (IllegalArgumentException ex) {
+                    if (log.isLoggable(Level.WARNING)) {
+                        log.log(Level.WARNING, "Invalid no_proxy range '" + entry + "'", ex);
+                    }
+                }
+            } else {
+                String host = removePort(entry);
+                builder.domain(host.startsWith("*.") ? host.substring(2) : host);
+            }
+        }
+
+        private static String removePort(String entry) {
+            if (entry.startsWith("[")) {
+                int end = entry.indexOf(']');
+                return end != -1 ? entry.substring(0, end + 1) : entry;
+            }
+            int colon = entry.indexOf(':');
+            return colon != -1 && colon == entry.lastIndexOf(':') ? entry.substring(0, colon) : entry;
+        }
+    }
+}
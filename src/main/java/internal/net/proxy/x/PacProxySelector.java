@@ -0,0 +1,257 @@
+/*
+ * Copyright 2026 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package internal.net.proxy.x;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import lombok.AccessLevel;
+import nbbrd.net.proxy.SystemProxySelector;
+import nbbrd.service.ServiceProvider;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Evaluates the proxy auto-config script whose location is set by the
+ * <code>nbbrd.net.proxy.pac.url</code> system property, as an URL or a
+ * file path. The script is compiled once and its results are memoized per
+ * host, or per URL if the script depends on it.
+ *
+ * @author Philippe Charles
+ */
+@ServiceProvider(SystemProxySelector.Spi.class)
+@lombok.extern.java.Log
+@lombok.AllArgsConstructor(access = AccessLevel.PACKAGE)
+public final class PacProxySelector implements SystemProxySelector.Spi {
+
+    private static final String PAC_URL_PROPERTY = "nbbrd.net.proxy.pac.url";
+    private static final long MEMO_TTL_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final int MEMO_MAX_SIZE = 10_000;
+    private static final int LOAD_TIMEOUT_MILLIS = (int) TimeUnit.SECONDS.toMillis(10);
+
+    private final Supplier<String> source;
+    private final PacScript.Dns dns;
+    private final LongSupplier nanoClock;
+
+    @lombok.Getter(value = AccessLevel.PRIVATE, lazy = true)
+    private final PacScript script = initScript();
+
+    private final ConcurrentMap<String, Memo> memo = new ConcurrentHashMap<>();
+
+    public PacProxySelector() {
+        this(PacProxySelector::loadFromProperty, PacScript.Dns.system(), System::nanoTime);
+    }
+
+    @Override
+    public Proxy getProxyOrNull(URI uri) {
+        PacScript pac = getScript();
+        String host = uri.getHost();
+        if (pac == null || host == null) {
+            return null;
+        }
+        String url = uri.toString();
+        String key = pac.isUrlDependent() ? url : host;
+        long now = nanoClock.getAsLong();
+        Memo entry = memo.get(key);
+        if (entry != null && now - entry.getExpiration() < 0) {
+            return entry.getProxy();
+        }
+        Proxy result = parseResult(pac.findProxyForURL(url, host, dns));
+        if (memo.size() >= MEMO_MAX_SIZE) {
+            memo.clear();
+        }
+        memo.put(key, new Memo(now + MEMO_TTL_NANOS, result));
+        return result;
+    }
+
+    @Override
+    public void warmUp() {
+        getScript();
+    }
+
+    @Override
+    public int getPriority() {
+        // an explicitly configured script comes first
+        return 400;
+    }
+
+    private PacScript initScript() {
+        try {
+            String text = source.get();
+            return text != null ? PacScript.parse(text) : null;
+        } catch (RuntimeException ex) {
+            if (log.isLoggable(Level.WARNING)) {
+                log.log(Level.WARNING, "Failed to load PAC script", ex);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Parses the first entry of a PAC result such as
+     * <code>"PROXY host:port; DIRECT"</code>.
+     *
+     * @param result a nullable PAC result
+     * @return a proxy or null if the result is empty or unknown
+     */
+    @Nullable
+    static Proxy parseResult(@Nullable String result) {
+        if (result == null) {
+            return null;
+        }
+        for (String entry : result.split(";", -1)) {
+            String item = entry.trim();
+            if (!item.isEmpty()) {
+                return parseEntry(item);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Formats a proxy as a PAC result, the inverse of
+     * {@link #parseResult(String)}.
+     *
+     * @param proxy a non-null proxy
+     * @return a non-null PAC result
+     */
+    @NonNull
+    static String formatResult(@NonNull Proxy proxy) {
+        if (proxy.type() == Proxy.Type.DIRECT || !(proxy.address() instanceof InetSocketAddress)) {
+            return "DIRECT";
+        }
+        InetSocketAddress address = (InetSocketAddress) proxy.address();
+        return (proxy.type() == Proxy.Type.SOCKS ? "SOCKS " : "PROXY ") + address.getHostString() + ":" + address.getPort();
+    }
+
+    private static Proxy parseEntry(String entry) {
+        String[] fields = entry.split("\\s+", 2);
+        switch (fields[0].toUpperCase(Locale.ROOT)) {
+            case "DIRECT":
+                return Proxy.NO_PROXY;
+            case "PROXY":
+            case "HTTP":
+            case "HTTPS":
+                return fields.length == 2 ? newProxy(Proxy.Type.HTTP, fields[1], 80) : null;
+            case "SOCKS":
+            case "SOCKS4":
+            case "SOCKS5":
+                return fields.length == 2 ? newProxy(Proxy.Type.SOCKS, fields[1], 1080) : null;
+            default:
+                return null;
+        }
+    }
+
+    private static Proxy newProxy(Proxy.Type type, String address, int defaultPort) {
+        int index = address.lastIndexOf(':');
+        if (index == -1) {
+            return new Proxy(type, InetSocketAddress.createUnresolved(address, defaultPort));
+        }
+        try {
+            return new Proxy(type, InetSocketAddress.createUnresolved(address.substring(0, index), Integer.parseInt(address.substring(index + 1))));
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    private static String loadFromProperty() {
+        String location = System.getProperty(PAC_URL_PROPERTY);
+        if (location == null || location.isEmpty()) {
+            return null;
+        }
+        try {
+            return load(location);
+        } catch (IOException | IllegalArgumentException ex) {
+            if (log.isLoggable(Level.WARNING)) {
+                log.log(Level.WARNING, "Failed to read PAC script '" + location + "'", ex);
+            }
+            return null;
+        }
+    }
+
+    static String load(String location) throws IOException {
+        return load(location, LOAD_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Loads a script from an URL or a file path. The connection is bounded by
+     * a timeout since the first selection waits for this script.
+     */
+    static String load(String location, int timeoutInMillis) throws IOException {
+        URI uri = parseUrl(location);
+        if (uri == null) {
+            return new String(Files.readAllBytes(Paths.get(location)), StandardCharsets.UTF_8);
+        }
+        // no proxy selection since this selector may be the default one
+        URLConnection connection = openConnection(uri.toURL());
+        connection.setConnectTimeout(timeoutInMillis);
+        connection.setReadTimeout(timeoutInMillis);
+        try (InputStream stream = connection.getInputStream()) {
+            ByteArrayOutputStream result = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = stream.read(buffer)) != -1) {
+                result.write(buffer, 0, n);
+            }
+            return new String(result.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static URLConnection openConnection(URL url) throws IOException {
+        switch (url.getProtocol().toLowerCase(Locale.ROOT)) {
+            case "http":
+            case "https":
+            case "ftp":
+                return url.openConnection(Proxy.NO_PROXY);
+            default:
+                return url.openConnection();
+        }
+    }
+
+    private static URI parseUrl(String location) {
+        try {
+            URI result = new URI(location);
+            // a single letter is a drive letter
+            return result.getScheme() != null && result.getScheme().length() > 1 ? result : null;
+        } catch (URISyntaxException ex) {
+            return null;
+        }
+    }
+
+    @lombok.Value
+    private static class Memo {
+
+        long expiration;
+        Proxy proxy;
+    }
+}
@@ -0,0 +1,1169 @@
+/*
+ * Copyright 2026 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package internal.net.proxy.x;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import nbbrd.design.ThreadSafe;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A proxy auto-config script compiled into a tree of closures.
+ * <p>
+ * Only the subset of JavaScript commonly found in PAC files is supported:
+ * function and variable declarations, assignments, <code>if</code>/<code>else</code>,
+ * <code>return</code>, logical, comparison, conditional and <code>+</code>/<code>-</code>
+ * operators, a few string methods and the standard PAC functions except the
+ * time-based ones. Shell expressions given as literals to
+ * <code>shExpMatch</code> are compiled once at parse time.
+ *
+ * @author Philippe Charles
+ */
+@ThreadSafe
+@lombok.AllArgsConstructor(access = lombok.AccessLevel.PRIVATE)
+final class PacScript {
+
+    static final String ENTRY_POINT = "FindProxyForURL";
+
+    private static final int MAX_CALL_DEPTH = 64;
+
+    @NonNull
+    static PacScript parse(@NonNull String source) throws IllegalArgumentException {
+        return new Parser(new Lexer(source).tokenize()).parseScript();
+    }
+
+    private final Map<String, UserFunction> functions;
+    private final List<Stmt> globals;
+
+    /**
+     * Checks if the result depends on the whole URL and not only on the host.
+     */
+    @lombok.Getter
+    private final boolean urlDependent;
+
+    /**
+     * Rules at the start of the entry point that only depend on the domain
+     * of the host, in order of evaluation.
+     */
+    @lombok.Getter
+    private final List<HostRule> hostRules;
+
+    @Nullable
+    String findProxyForURL(@NonNull String url, @NonNull String host, @NonNull Dns dns) throws IllegalStateException {
+        Scope global = new Scope(new Env(functions, dns), null);
+        for (Stmt stmt : globals) {
+            stmt.exec(global);
+        }
+        Object result = functions.get(ENTRY_POINT).call(global, asList(url, host));
+        return result != null ? toStr(result) : null;
+    }
+
+    /**
+     * Name resolution used by the DNS functions of PAC scripts.
+     */
+    interface Dns {
+
+        @Nullable
+        String resolve(@NonNull String host);
+
+        @NonNull
+        String myIpAddress();
+
+        @NonNull
+        static Dns system() {
+            return new Dns() {
+                @Override
+                public String resolve(String host) {
+                    try {
+                        return InetAddress.getByName(host).getHostAddress();
+                    } catch (UnknownHostException ex) {
+                        return null;
+                    }
+                }
+
+                @Override
+                public String myIpAddress() {
+                    try {
+                        return InetAddress.getLocalHost().getHostAddress();
+                    } catch (UnknownHostException ex) {
+                        return "127.0.0.1";
+                    }
+                }
+            };
+        }
+    }
+
+    /**
+     * A statement such as <code>if (dnsDomainIs(host, ".corp")) return
+     * "DIRECT";</code> that decides the result for host names without dots
+     * and for the subdomains of some lower-case domains.
+     */
+    @lombok.Value
+    static class HostRule {
+
+        boolean plainHostName;
+        List<String> domains;
+        String result;
+    }
+
+    private static final Object NEXT = new Object();
+
+    private static final List<String> HOST_TESTS = Arrays.asList("isPlainHostName", "dnsDomainIs", "shExpMatch");
+
+    @FunctionalInterface
+    private interface Expr {
+
+        Object eval(Scope scope);
+    }
+
+    @FunctionalInterface
+    private interface Stmt {
+
+        /**
+         * @return the returned value or {@link #NEXT} if there is no return
+         */
+        Object exec(Scope scope);
+    }
+
+    @FunctionalInterface
+    private interface Builtin {
+
+        Object call(Env env, List<Object> args);
+    }
+
+    @lombok.RequiredArgsConstructor
+    private static final class Env {
+
+        final Map<String, UserFunction> functions;
+        final Dns dns;
+        int depth = 0;
+    }
+
+    @lombok.RequiredArgsConstructor
+    private static final class Scope {
+
+        final Env env;
+        final Scope parent;
+        final Map<String, Object> vars = new HashMap<>();
+
+        Scope root() {
+            Scope result = this;
+            while (result.parent != null) {
+                result = result.parent;
+            }
+            return result;
+        }
+
+        Object get(String name) {
+            for (Scope scope = this; scope != null; scope = scope.parent) {
+                if (scope.vars.containsKey(name)) {
+                    return scope.vars.get(name);
+                }
+            }
+            throw new IllegalStateException("Undefined variable '" + name + "'");
+        }
+
+        void set(String name, Object value) {
+            for (Scope scope = this; scope != null; scope = scope.parent) {
+                if (scope.vars.containsKey(name)) {
+                    scope.vars.put(name, value);
+                    return;
+                }
+            }
+            root().vars.put(name, value);
+        }
+    }
+
+    @lombok.RequiredArgsConstructor
+    private static final class UserFunction {
+
+        final List<String> params;
+        final Stmt body;
+
+        Object call(Scope caller, List<Object> args) {
+            Env env = caller.env;
+            if (env.depth >= MAX_CALL_DEPTH) {
+                throw new IllegalStateException("Too many nested calls");
+            }
+            Scope local = new Scope(env, caller.root());
+            for (int i = 0; i < params.size(); i++) {
+                local.vars.put(params.get(i), i < args.size() ? args.get(i) : null);
+            }
+            env.depth++;
+            try {
+                Object result = body.exec(local);
+                return result != NEXT ? result : null;
+            } finally {
+                env.depth--;
+            }
+        }
+    }
+
+    private static List<Object> asList(Object... values) {
+        List<Object> result = new ArrayList<>(values.length);
+        Collections.addAll(result, values);
+        return result;
+    }
+
+    private static Object arg(List<Object> args, int index) {
+        return index < args.size() ? args.get(index) : null;
+    }
+
+    private static boolean truthy(Object value) {
+        if (value == null) {
+            return false;
+        }
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        if (value instanceof Double) {
+            double d = (Double) value;
+            return d != 0 && !Double.isNaN(d);
+        }
+        return !((String) value).isEmpty();
+    }
+
+    private static double toNumber(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof Double) {
+            return (Double) value;
+        }
+        if (value instanceof Boolean) {
+            return (Boolean) value ? 1 : 0;
+        }
+        String text = ((String) value).trim();
+        if (text.isEmpty()) {
+            return 0;
+        }
+        try {
+            return Double.parseDouble(text);
+        } catch (NumberFormatException ex) {
+            return Double.NaN;
+        }
+    }
+
+    private static String toStr(Object value) {
+        if (value instanceof Double) {
+            double d = (Double) value;
+            return d == Math.rint(d) && !Double.isInfinite(d) ? Long.toString((long) d) : Double.toString(d);
+        }
+        return String.valueOf(value);
+    }
+
+    private static boolean looseEquals(Object left, Object right) {
+        if (left == null || right == null) {
+            return left == right;
+        }
+        if (left.getClass() == right.getClass()) {
+            return left.equals(right);
+        }
+        return toNumber(left) == toNumber(right);
+    }
+
+    private static boolean strictEquals(Object left, Object right) {
+        if (left == null || right == null) {
+            return left == right;
+        }
+        if (left instanceof Double && right instanceof Double) {
+            return ((Double) left).doubleValue() == ((Double) right).doubleValue();
+        }
+        return left.equals(right);
+    }
+
+    private static int compare(Object left, Object right) {
+        if (left instanceof String && right instanceof String) {
+            return ((String) left).compareTo((String) right);
+        }
+        return Double.compare(toNumber(left), toNumber(right));
+    }
+
+    private static Object add(Object left, Object right) {
+        if (left instanceof String || right instanceof String) {
+            return toStr(left) + toStr(right);
+        }
+        return toNumber(left) + toNumber(right);
+    }
+
+    private static final Map<String, Builtin> BUILTINS = initBuiltins();
+
+    private static final Set<String> UNSUPPORTED = new HashSet<>(Arrays.asList("weekdayRange", "dateRange", "timeRange", "alert"));
+
+    private static Map<String, Builtin> initBuiltins() {
+        Map<String, Builtin> result = new HashMap<>();
+        result.put("isPlainHostName", (env, args) -> toStr(arg(args, 0)).indexOf('.') == -1);
+        result.put("dnsDomainIs", (env, args) -> dnsDomainIs(toStr(arg(args, 0)), toStr(arg(args, 1))));
+        result.put("localHostOrDomainIs", (env, args) -> localHostOrDomainIs(toStr(arg(args, 0)), toStr(arg(args, 1))));
+        result.put("isResolvable", (env, args) -> resolve(env, toStr(arg(args, 0))) != null);
+        result.put("isInNet", (env, args) -> isInNet(env, toStr(arg(args, 0)), toStr(arg(args, 1)), toStr(arg(args, 2))));
+        result.put("dnsResolve", (env, args) -> resolve(env, toStr(arg(args, 0))));
+        result.put("myIpAddress", (env, args) -> env.dns.myIpAddress());
+        result.put("dnsDomainLevels", (env, args) -> (double) countDots(toStr(arg(args, 0))));
+        result.put("shExpMatch", (env, args) -> Glob.compile(toStr(arg(args, 1))).matches(toStr(arg(args, 0))));
+        result.put("convert_addr", (env, args) -> (double) parseIpv4(toStr(arg(args, 0))));
+        return result;
+    }
+
+    static boolean dnsDomainIs(String host, String domain) {
+        return host.length() >= domain.length()
+                && host.regionMatches(true, host.length() - domain.length(), domain, 0, domain.length());
+    }
+
+    static boolean localHostOrDomainIs(String host, String hostdom) {
+        return host.equalsIgnoreCase(hostdom)
+                || (host.indexOf('.') == -1 && hostdom.regionMatches(true, 0, host + ".", 0, host.length() + 1));
+    }
+
+    private static String resolve(Env env, String host) {
+        return parseIpv4(host) != -1 ? host : env.dns.resolve(host);
+    }
+
+    private static boolean isInNet(Env env, String host, String pattern, String mask) {
+        String ip = resolve(env, host);
+        if (ip == null) {
+            return false;
+        }
+        long address = parseIpv4(ip);
+        long network = parseIpv4(pattern);
+        long bits = parseIpv4(mask);
+        return address != -1 && network != -1 && bits != -1 && (address & bits) == (network & bits);
+    }
+
+    private static int countDots(String text) {
+        int result = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '.') {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Parses a dotted-quad IPv4 address.
+     *
+     * @return the address as an unsigned int or -1 if invalid
+     */
+    static long parseIpv4(String text) {
+        long result = 0;
+        int parts = 0;
+        int value = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : '.';
+            if (c == '.') {
+                if (value == -1 || ++parts > 4) {
+                    return -1;
+                }
+                result = (result << 8) | value;
+                value = -1;
+            } else if (c >= '0' && c <= '9') {
+                value = (value == -1 ? 0 : value * 10) + (c - '0');
+                if (value > 255) {
+                    return -1;
+                }
+            } else {
+                return -1;
+            }
+        }
+        return parts == 4 ? result : -1;
+    }
+
+    /**
+     * A shell expression where <code>*</code> matches any sequence and
+     * <code>?</code> matches any character, compiled into the segments found
+     * between stars: the first and last ones are anchored and the others
+     * are searched from left to right.
+     */
+    @lombok.AllArgsConstructor(access = lombok.AccessLevel.PRIVATE)
+    static final class Glob {
+
+        static Glob compile(String pattern) {
+            List<String> segments = new ArrayList<>(Arrays.asList(pattern.split("\\*", -1)));
+            for (int i = segments.size() - 2; i > 0; i--) {
+                if (segments.get(i).isEmpty()) {
+                    segments.remove(i);
+                }
+            }
+            return new Glob(segments.toArray(new String[0]), pattern.indexOf('?') != -1);
+        }
+
+        private final String[] segments;
+        private final boolean anyChar;
+
+        boolean matches(String text) {
+            String first = segments[0];
+            if (segments.length == 1) {
+                return text.length() == first.length() && regionMatches(text, 0, first);
+            }
+            String last = segments[segments.length - 1];
+            int end = text.length() - last.length();
+            if (end < first.length() || !regionMatches(text, 0, first) || !regionMatches(text, end, last)) {
+                return false;
+            }
+            int t = first.length();
+            for (int i = 1; i < segments.length - 1; i++) {
+                int found = indexOf(text, segments[i], t, end);
+                if (found == -1) {
+                    return false;
+                }
+                t = found + segments[i].length();
+            }
+            return true;
+        }
+
+        private boolean regionMatches(String text, int offset, String segment) {
+            if (!anyChar) {
+                return text.startsWith(segment, offset);
+            }
+            for (int i = 0; i < segment.length(); i++) {
+                char c = segment.charAt(i);
+                if (c != '?' && c != text.charAt(offset + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int indexOf(String text, String segment, int from, int end) {
+            if (!anyChar) {
+                int result = text.indexOf(segment, from);
+                return result != -1 && result + segment.length() <= end ? result : -1;
+            }
+            for (int i = from; i + segment.length() <= end; i++) {
+                if (regionMatches(text, i, segment)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    private enum TokenType {
+        IDENT, STRING, NUMBER, PUNCT, EOF
+    }
+
+    @lombok.Value
+    private static class Token {
+
+        TokenType type;
+        String text;
+        int position;
+
+        boolean is(String punct) {
+            return type == TokenType.PUNCT && text.equals(punct);
+        }
+
+        boolean isKeyword(String keyword) {
+            return type == TokenType.IDENT && text.equals(keyword);
+        }
+    }
+
+    private static final String[] PUNCTS = {
+        "===", "!==", "==", "!=", "<=", ">=", "&&", "||",
+        "(", ")", "{", "}", ",", ";", ".", "!", "=", "+", "-", "<", ">", "?", ":"
+    };
+
+    @lombok.RequiredArgsConstructor
+    private static final class Lexer {
+
+        private final String source;
+        private int pos = 0;
+
+        List<Token> tokenize() {
+            List<Token> result = new ArrayList<>();
+            while (true) {
+                skipSpacesAndComments();
+                if (pos >= source.length()) {
+                    result.add(new Token(TokenType.EOF, "", pos));
+                    return result;
+                }
+                result.add(next());
+            }
+        }
+
+        private void skipSpacesAndComments() {
+            while (pos < source.length()) {
+                char c = source.charAt(pos);
+                if (Character.isWhitespace(c)) {
+                    pos++;
+                } else if (source.startsWith("//", pos)) {
+                    while (pos < source.length() && source.charAt(pos) != '\n') {
+                        pos++;
+                    }
+                } else if (source.startsWith("/*", pos)) {
+                    int end = source.indexOf("*/", pos + 2);
+                    if (end == -1) {
+                        throw error("Unterminated comment", pos);
+                    }
+                    pos = end + 2;
+                } else {
+                    return;
+                }
+            }
+        }
+
+        private Token next() {
+            int start = pos;
+            char c = source.charAt(pos);
+            if (Character.isJavaIdentifierStart(c)) {
+                while (pos < source.length() && Character.isJavaIdentifierPart(source.charAt(pos))) {
+                    pos++;
+                }
+                return new Token(TokenType.IDENT, source.substring(start, pos), start);
+            }
+            if (c >= '0' && c <= '9') {
+                while (pos < source.length() && (Character.isDigit(source.charAt(pos)) || source.charAt(pos) == '.')) {
+                    pos++;
+                }
+                return new Token(TokenType.NUMBER, source.substring(start, pos), start);
+            }
+            if (c == '"' || c == '\'') {
+                return new Token(TokenType.STRING, readString(c), start);
+            }
+            for (String punct : PUNCTS) {
+                if (source.startsWith(punct, pos)) {
+                    pos += punct.length();
+                    return new Token(TokenType.PUNCT, punct, start);
+                }
+            }
+            throw error("Unexpected character '" + c + "'", start);
+        }
+
+        private String readString(char quote) {
+            int start = pos++;
+            StringBuilder result = new StringBuilder();
+            while (pos < source.length()) {
+                char c = source.charAt(pos++);
+                if (c == quote) {
+                    return result.toString();
+                }
+                if (c == '\\' && pos < source.length()) {
+                    char escaped = source.charAt(pos++);
+                    switch (escaped) {
+                        case 'n':
+                            result.append('\n');
+                            break;
+                        case 't':
+                            result.append('\t');
+                            break;
+                        case 'r':
+                            result.append('\r');
+                            break;
+                        default:
+                            result.append(escaped);
+                            break;
+                    }
+                } else {
+                    result.append(c);
+                }
+            }
+            throw error("Unterminated string", start);
+        }
+    }
+
+    @lombok.RequiredArgsConstructor
+    private static final class Parser {
+
+        private final List<Token> tokens;
+        private int index = 0;
+        private final Map<String, UserFunction> functions = new HashMap<>();
+        private final Map<String, Integer> calls = new HashMap<>();
+        private Set<String> references = new HashSet<>();
+
+        PacScript parseScript() {
+            List<Stmt> globals = new ArrayList<>();
+            boolean urlDependent = false;
+            List<HostRule> hostRules = Collections.emptyList();
+            while (peek().getType() != TokenType.EOF) {
+                if (peek().isKeyword("function")) {
+                    Token start = next();
+                    String name = expectIdent();
+                    references = new HashSet<>();
+                    UserFunction function = parseFunction();
+                    functions.put(name, function);
+                    if (ENTRY_POINT.equals(name)) {
+                        if (function.params.size() != 2) {
+                            throw error("Expected two parameters in '" + ENTRY_POINT + "'", start.getPosition());
+                        }
+                        urlDependent = references.contains(function.params.get(0));
+                        hostRules = findHostRules(function);
+                    }
+                } else {
+                    globals.add(parseStatement());
+                }
+            }
+            if (!functions.containsKey(ENTRY_POINT)) {
+                throw error("Missing function '" + ENTRY_POINT + "'", peek().getPosition());
+            }
+            calls.forEach((name, position) -> {
+                if (!functions.containsKey(name) && !BUILTINS.containsKey(name)) {
+                    throw error((UNSUPPORTED.contains(name) ? "Unsupported" : "Unknown") + " function '" + name + "'", position);
+                }
+            });
+            if (HOST_TESTS.stream().anyMatch(functions::containsKey)) {
+                hostRules = Collections.emptyList();
+            }
+            return new PacScript(Collections.unmodifiableMap(functions), Collections.unmodifiableList(globals), urlDependent, hostRules);
+        }
+
+        private UserFunction parseFunction() {
+            expect("(");
+            List<String> params = new ArrayList<>();
+            if (!peek().is(")")) {
+                do {
+                    params.add(expectIdent());
+                } while (accept(","));
+            }
+            expect(")");
+            return new UserFunction(params, parseBlock());
+        }
+
+        private Stmt parseBlock() {
+            expect("{");
+            List<Stmt> list = new ArrayList<>();
+            while (!accept("}")) {
+                list.add(parseStatement());
+            }
+            return new Block(list);
+        }
+
+        private Stmt parseStatement() {
+            Token token = peek();
+            if (token.is("{")) {
+                return parseBlock();
+            }
+            if (accept(";")) {
+                return scope -> NEXT;
+            }
+            if (token.isKeyword("if")) {
+                next();
+                expect("(");
+                Expr condition = parseExpression();
+                expect(")");
+                Stmt then = parseStatement();
+                Stmt otherwise = acceptKeyword("else") ? parseStatement() : null;
+                return new If(condition, then, otherwise);
+            }
+            if (token.isKeyword("return")) {
+                next();
+                Expr value = peek().is(";") || peek().is("}") ? literal(null) : parseExpression();
+                accept(";");
+                return new Return(value);
+            }
+            if (token.isKeyword("var") || token.isKeyword("let") || token.isKeyword("const")) {
+                next();
+                List<Stmt> declarations = new ArrayList<>();
+                do {
+                    String name = expectIdent();
+                    Expr value = accept("=") ? parseExpression() : scope -> null;
+                    declarations.add(scope -> {
+                        scope.vars.put(name, value.eval(scope));
+                        return NEXT;
+                    });
+                } while (accept(","));
+                accept(";");
+                return scope -> {
+                    declarations.forEach(declaration -> declaration.exec(scope));
+                    return NEXT;
+                };
+            }
+            Expr expr = parseExpression();
+            accept(";");
+            return scope -> {
+                expr.eval(scope);
+                return NEXT;
+            };
+        }
+
+        private Expr parseExpression() {
+            if (peek().getType() == TokenType.IDENT && peekAt(1).is("=")) {
+                String name = next().getText();
+                references.add(name);
+                next();
+                Expr value = parseExpression();
+                return scope -> {
+                    Object result = value.eval(scope);
+                    scope.set(name, result);
+                    return result;
+                };
+            }
+            Expr condition = parseOr();
+            if (accept("?")) {
+                Expr then = parseExpression();
+                expect(":");
+                Expr otherwise = parseExpression();
+                return scope -> truthy(condition.eval(scope)) ? then.eval(scope) : otherwise.eval(scope);
+            }
+            return condition;
+        }
+
+        private Expr parseOr() {
+            Expr result = parseAnd();
+            while (accept("||")) {
+                Expr left = result;
+                Expr right = parseAnd();
+                Expr or = scope -> {
+                    Object value = left.eval(scope);
+                    return truthy(value) ? value : right.eval(scope);
+                };
+                result = HostTest.or(left, right, or);
+            }
+            return result;
+        }
+
+        private Expr parseAnd() {
+            Expr result = parseEquality();
+            while (accept("&&")) {
+                Expr left = result;
+                Expr right = parseEquality();
+                result = scope -> {
+                    Object value = left.eval(scope);
+                    return truthy(value) ? right.eval(scope) : value;
+                };
+            }
+            return result;
+        }
+
+        private Expr parseEquality() {
+            Expr result = parseRelational();
+            while (true) {
+                Expr left = result;
+                if (accept("==")) {
+                    Expr right = parseRelational();
+                    result = scope -> looseEquals(left.eval(scope), right.eval(scope));
+                } else if (accept("!=")) {
+                    Expr right = parseRelational();
+                    result = scope -> !looseEquals(left.eval(scope), right.eval(scope));
+                } else if (accept("===")) {
+                    Expr right = parseRelational();
+                    result = scope -> strictEquals(left.eval(scope), right.eval(scope));
+                } else if (accept("!==")) {
+                    Expr right = parseRelational();
+                    result = scope -> !strictEquals(left.eval(scope), right.eval(scope));
+                } else {
+                    return result;
+                }
+            }
+        }
+
+        private Expr parseRelational() {
+            Expr result = parseAdditive();
+            while (true) {
+                Expr left = result;
+                if (accept("<")) {
+                    Expr right = parseAdditive();
+                    result = scope -> compare(left.eval(scope), right.eval(scope)) < 0;
+                } else if (accept("<=")) {
+                    Expr right = parseAdditive();
+                    result = scope -> compare(left.eval(scope), right.eval(scope)) <= 0;
+                } else if (accept(">")) {
+                    Expr right = parseAdditive();
+                    result = scope -> compare(left.eval(scope), right.eval(scope)) > 0;
+                } else if (accept(">=")) {
+                    Expr right = parseAdditive();
+                    result = scope -> compare(left.eval(scope), right.eval(scope)) >= 0;
+                } else {
+                    return result;
+                }
+            }
+        }
+
+        private Expr parseAdditive() {
+            Expr result = parseUnary();
+            while (true) {
+                Expr left = result;
+                if (accept("+")) {
+                    Expr right = parseUnary();
+                    result = scope -> add(left.eval(scope), right.eval(scope));
+                } else if (accept("-")) {
+                    Expr right = parseUnary();
+                    result = scope -> toNumber(left.eval(scope)) - toNumber(right.eval(scope));
+                } else {
+                    return result;
+                }
+            }
+        }
+
+        private Expr parseUnary() {
+            if (accept("!")) {
+                Expr operand = parseUnary();
+                return scope -> !truthy(operand.eval(scope));
+            }
+            if (accept("-")) {
+                Expr operand = parseUnary();
+                return scope -> -toNumber(operand.eval(scope));
+            }
+            return parsePostfix();
+        }
+
+        private Expr parsePostfix() {
+            Expr result = parsePrimary();
+            while (accept(".")) {
+                Token member = peek();
+                String name = expectIdent();
+                if (peek().is("(")) {
+                    result = parseMethod(result, name, parseArguments(), member.getPosition());
+                } else if ("length".equals(name)) {
+                    Expr target = result;
+                    result = scope -> (double) toStr(target.eval(scope)).length();
+                } else {
+                    throw error("Unsupported property '" + name + "'", member.getPosition());
+                }
+            }
+            return result;
+        }
+
+        private Expr parseMethod(Expr target, String name, List<Expr> args, int position) {
+            switch (name) {
+                case "toLowerCase":
+                    return scope -> toStr(target.eval(scope)).toLowerCase(Locale.ROOT);
+                case "toUpperCase":
+                    return scope -> toStr(target.eval(scope)).toUpperCase(Locale.ROOT);
+                case "indexOf":
+                    return scope -> (double) toStr(target.eval(scope)).indexOf(toStr(evalArg(args, 0, scope)));
+                case "lastIndexOf":
+                    return scope -> (double) toStr(target.eval(scope)).lastIndexOf(toStr(evalArg(args, 0, scope)));
+                case "startsWith":
+                    return scope -> toStr(target.eval(scope)).startsWith(toStr(evalArg(args, 0, scope)));
+                case "endsWith":
+                    return scope -> toStr(target.eval(scope)).endsWith(toStr(evalArg(args, 0, scope)));
+                case "charAt":
+                    return scope -> {
+                        String text = toStr(target.eval(scope));
+                        int i = (int) toNumber(evalArg(args, 0, scope));
+                        return i >= 0 && i < text.length() ? String.valueOf(text.charAt(i)) : "";
+                    };
+                case "substring":
+                    return scope -> {
+                        String text = toStr(target.eval(scope));
+                        int begin = clamp(toNumber(evalArg(args, 0, scope)), text.length());
+                        int end = args.size() > 1 ? clamp(toNumber(evalArg(args, 1, scope)), text.length()) : text.length();
+                        return text.substring(Math.min(begin, end), Math.max(begin, end));
+                    };
+                default:
+                    throw error("Unsupported method '" + name + "'", position);
+            }
+        }
+
+        private Expr parsePrimary() {
+            Token token = next();
+            switch (token.getType()) {
+                case STRING:
+                    return literal(token.getText());
+                case NUMBER:
+                    try {
+                        return literal(Double.parseDouble(token.getText()));
+                    } catch (NumberFormatException ex) {
+                        throw error("Invalid number '" + token.getText() + "'", token.getPosition());
+                    }
+                case IDENT:
+                    return parseIdentifier(token);
+                case PUNCT:
+                    if (token.is("(")) {
+                        Expr result = parseExpression();
+                        expect(")");
+                        return result;
+                    }
+                    break;
+                default:
+                    break;
+            }
+            throw error("Unexpected token '" + token.getText() + "'", token.getPosition());
+        }
+
+        private Expr parseIdentifier(Token token) {
+            String name = token.getText();
+            switch (name) {
+                case "true":
+                    return literal(Boolean.TRUE);
+                case "false":
+                    return literal(Boolean.FALSE);
+                case "null":
+                case "undefined":
+                    return literal(null);
+                default:
+                    break;
+            }
+            if (!peek().is("(")) {
+                references.add(name);
+                return new Variable(name);
+            }
+            List<Expr> args = parseArguments();
+            calls.putIfAbsent(name, token.getPosition());
+            if ("shExpMatch".equals(name) && args.size() == 2 && args.get(1) instanceof Literal) {
+                Glob glob = Glob.compile(toStr(((Literal) args.get(1)).value));
+                Expr text = args.get(0);
+                return HostTest.of(name, args, scope -> scope.env.functions.containsKey(name)
+                        ? scope.env.functions.get(name).call(scope, evalArgs(args, scope))
+                        : glob.matches(toStr(text.eval(scope))));
+            }
+            return HostTest.of(name, args, scope -> {
+                UserFunction function = scope.env.functions.get(name);
+                return function != null
+                        ? function.call(scope, evalArgs(args, scope))
+                        : BUILTINS.get(name).call(scope.env, evalArgs(args, scope));
+            });
+        }
+
+        private List<Expr> parseArguments() {
+            expect("(");
+            List<Expr> result = new ArrayList<>();
+            if (!peek().is(")")) {
+                do {
+                    result.add(parseExpression());
+                } while (accept(","));
+            }
+            expect(")");
+            return result;
+        }
+
+        private Token peek() {
+            return tokens.get(index);
+        }
+
+        private Token peekAt(int offset) {
+            return tokens.get(Math.min(index + offset, tokens.size() - 1));
+        }
+
+        private Token next() {
+            Token result = tokens.get(index);
+            if (result.getType() != TokenType.EOF) {
+                index++;
+            }
+            return result;
+        }
+
+        private boolean accept(String punct) {
+            if (peek().is(punct)) {
+                index++;
+                return true;
+            }
+            return false;
+        }
+
+        private boolean acceptKeyword(String keyword) {
+            if (peek().isKeyword(keyword)) {
+                index++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(String punct) {
+            if (!accept(punct)) {
+                throw error("Expected '" + punct + "' but found '" + peek().getText() + "'", peek().getPosition());
+            }
+        }
+
+        private String expectIdent() {
+            Token token = next();
+            if (token.getType() != TokenType.IDENT) {
+                throw error("Expected identifier but found '" + token.getText() + "'", token.getPosition());
+            }
+            return token.getText();
+        }
+    }
+
+    @lombok.RequiredArgsConstructor
+    private static final class Literal implements Expr {
+
+        final Object value;
+
+        @Override
+        public Object eval(Scope scope) {
+            return value;
+        }
+    }
+
+    private static Expr literal(Object value) {
+        return new Literal(value);
+    }
+
+    @lombok.RequiredArgsConstructor
+    private static final class Variable implements Expr {
+
+        final String name;
+
+        @Override
+        public Object eval(Scope scope) {
+            return scope.get(name);
+        }
+    }
+
+    /**
+     * A call that only depends on the domain of a variable, kept along with
+     * its compiled form for the extraction of host rules.
+     */
+    @lombok.RequiredArgsConstructor
+    private static final class HostTest implements Expr {
+
+        static Expr of(String name, List<Expr> args, Expr call) {
+            if (args.isEmpty() || !(args.get(0) instanceof Variable)) {
+                return call;
+            }
+            String variable = ((Variable) args.get(0)).name;
+            String text = args.size() == 2 && args.get(1) instanceof Literal && ((Literal) args.get(1)).value instanceof String
+                    ? (String) ((Literal) args.get(1)).value
+                    : null;
+            switch (name) {
+                case "isPlainHostName":
+                    return args.size() == 1 ? new HostTest(variable, true, Collections.emptyList(), call) : call;
+                case "dnsDomainIs":
+                    return text != null && text.length() > 1 && text.startsWith(".")
+                            ? new HostTest(variable, false, Collections.singletonList(text.substring(1).toLowerCase(Locale.ROOT)), call)
+                            : call;
+                case "shExpMatch":
+                    return text != null && text.length() > 2 && text.startsWith("*.") && isLowerCaseDomain(text.substring(2))
+                            ? new HostTest(variable, false, Collections.singletonList(text.substring(2)), call)
+                            : call;
+                default:
+                    return call;
+            }
+        }
+
+        static Expr or(Expr left, Expr right, Expr or) {
+            if (left instanceof HostTest && right instanceof HostTest && ((HostTest) left).variable.equals(((HostTest) right).variable)) {
+                HostTest l = (HostTest) left;
+                HostTest r = (HostTest) right;
+                List<String> domains = new ArrayList<>(l.domains);
+                domains.addAll(r.domains);
+                return new HostTest(l.variable, l.plainHostName || r.plainHostName, domains, or);
+            }
+            return or;
+        }
+
+        final String variable;
+        final boolean plainHostName;
+        final List<String> domains;
+        final Expr call;
+
+        @Override
+        public Object eval(Scope scope) {
+            return call.eval(scope);
+        }
+    }
+
+    private static boolean isLowerCaseDomain(String text) {
+        return text.indexOf('*') == -1 && text.indexOf('?') == -1 && text.toLowerCase(Locale.ROOT).equals(text);
+    }
+
+    @lombok.RequiredArgsConstructor
+    private static final class Block implements Stmt {
+
+        final List<Stmt> list;
+
+        @Override
+        public Object exec(Scope scope) {
+            for (Stmt stmt : list) {
+                Object result = stmt.exec(scope);
+                if (result != NEXT) {
+                    return result;
+                }
+            }
+            return NEXT;
+        }
+    }
+
+    @lombok.RequiredArgsConstructor
+    private static final class If implements Stmt {
+
+        final Expr condition;
+        final Stmt then;
+        final Stmt otherwise;
+
+        @Override
+        public Object exec(Scope scope) {
+            return truthy(condition.eval(scope))
+                    ? then.exec(scope)
+                    : otherwise != null ? otherwise.exec(scope) : NEXT;
+        }
+    }
+
+    @lombok.RequiredArgsConstructor
+    private static final class Return implements Stmt {
+
+        final Expr value;
+
+        @Override
+        public Object exec(Scope scope) {
+            return value.eval(scope);
+        }
+    }
+
+    private static List<HostRule> findHostRules(UserFunction entryPoint) {
+        String host = entryPoint.params.get(1);
+        List<HostRule> result = new ArrayList<>();
+        for (Stmt stmt : ((Block) entryPoint.body).list) {
+            HostRule rule = toHostRule(stmt, host);
+            if (rule == null) {
+                break;
+            }
+            result.add(rule);
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    private static HostRule toHostRule(Stmt stmt, String host) {
+        if (!(stmt instanceof If)) {
+            return null;
+        }
+        If x = (If) stmt;
+        if (x.otherwise != null || !(x.condition instanceof HostTest) || !((HostTest) x.condition).variable.equals(host)) {
+            return null;
+        }
+        Stmt then = x.then;
+        if (then instanceof Block && ((Block) then).list.size() == 1) {
+            then = ((Block) then).list.get(0);
+        }
+        if (!(then instanceof Return) || !(((Return) then).value instanceof Literal) || !(((Literal) ((Return) then).value).value instanceof String)) {
+            return null;
+        }
+        HostTest test = (HostTest) x.condition;
+        return new HostRule(test.plainHostName, Collections.unmodifiableList(test.domains), (String) ((Literal) ((Return) then).value).value);
+    }
+
+    private static Object evalArg(List<Expr> args, int index, Scope scope) {
+        return index < args.size() ? args.get(index).eval(scope) : null;
+    }
+
+    private static List<Object> evalArgs(List<Expr> args, Scope scope) {
+        List<Object> result = new ArrayList<>(args.size());
+        for (Expr arg : args) {
+            result.add(arg.eval(scope));
+        }
+        return result;
+    }
+
+    private static int clamp(double value, int length) {
+        return Double.isNaN(value) ? 0 : (int) Math.max(0, Math.min(length, value));
+    }
+
+    private static IllegalArgumentException error(String message, int position) {
+        return new IllegalArgumentException(message + " at position " + position);
+    }
+}
@@ -18,14 +18,31 @@ package internal.net.proxy.x;
 
 import com.github.tuupertunut.powershelllibjava.PowerShell;
 import com.github.tuupertunut.powershelllibjava.PowerShellExecutionException;
-import nbbrd.design.ThreadSafe;
-
+import internal.net.proxy.JfrEventType;
+import internal.net.proxy.Metrics;
+import java.io.Closeable;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import nbbrd.design.ThreadSafe;
+import nbbrd.design.VisibleForTesting;
+import nbbrd.net.proxy.MetricsListener;
 
 /**
+ * A pool of long-lived PowerShell sessions whose default size can be set with
+ * the <code>nbbrd.net.proxy.powershell.poolSize</code> system property.
+ * <p>
+ * A command borrows the most recently used idle session, waiting up to ten
+ * seconds for one to be returned before falling back to a short-lived
+ * process. Sessions are opened lazily unless warmed up, probed with a cheap
+ * command when they have been idle for a while and replaced after an I/O or
+ * unexpected failure.
  *
  * @author Philippe Charles
  */
@@ -34,74 +51,242 @@ public final class SharedPowerShell {
 
     private static final long MAIN_TIMEOUT_MILLIS = 1000 * 10;
     private static final int FALLBACK_MAX_INSTANCES = 3;
+    private static final String POOL_SIZE_PROPERTY = "nbbrd.net.proxy.powershell.poolSize";
+    private static final int DEFAULT_POOL_SIZE = 2;
+    private static final long HEALTH_CHECK_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final String HEALTH_CHECK_COMMAND = "$true";
+    private static final String RESOURCE_NAME = "PowerShell";
 
-    private final ReentrantLock lock;
+    private static final JfrEventType EXECUTION_EVENT = JfrEventType.of(
+            "nbbrd.net.proxy.PowerShellExecution", "PowerShell Execution",
+            JfrEventType.Field.of("fallback", boolean.class),
+            JfrEventType.Field.timespan("lockWait"),
+            JfrEventType.Field.timespan("execution")
+    );
+    private static final int EXECUTION_FALLBACK = 0;
+    private static final int EXECUTION_LOCK_WAIT = 1;
+    private static final int EXECUTION_DURATION = 2;
+
+    private final SessionFactory factory;
+    private final LongSupplier nanoClock;
+    private final List<Slot> slots;
+    private final BlockingDeque<Slot> idleSlots;
     private final Semaphore fallbackInstances;
-    private PowerShell ps;
+
+    @lombok.Getter
+    private final Metrics metrics = new Metrics();
 
     public SharedPowerShell() {
-        this.lock = new ReentrantLock();
-        this.fallbackInstances = new Semaphore(FALLBACK_MAX_INSTANCES);
-        this.ps = null;
+        this(Integer.getInteger(POOL_SIZE_PROPERTY, DEFAULT_POOL_SIZE));
+    }
+
+    public SharedPowerShell(int poolSize) {
+        this(poolSize, SharedPowerShell::openPowerShell, System::nanoTime);
         Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown));
     }
 
+    @VisibleForTesting
+    SharedPowerShell(int poolSize, SessionFactory factory, LongSupplier nanoClock) {
+        if (poolSize < 1) {
+            throw new IllegalArgumentException("poolSize");
+        }
+        this.factory = factory;
+        this.nanoClock = nanoClock;
+        List<Slot> list = new ArrayList<>(poolSize);
+        for (int i = 0; i < poolSize; i++) {
+            list.add(new Slot());
+        }
+        this.slots = Collections.unmodifiableList(list);
+        this.idleSlots = new LinkedBlockingDeque<>(slots);
+        this.fallbackInstances = new Semaphore(FALLBACK_MAX_INSTANCES);
+    }
+
     public String executeCommands(String cmd) throws IOException, PowerShellExecutionException {
+        MetricsListener listener = metrics.get();
+        JfrEventType.Event event = EXECUTION_EVENT.begin();
+        if (listener == MetricsListener.NONE && !event.isEnabled()) {
+            Slot slot = borrow();
+            return slot != null ? execOnMain(slot, cmd) : execOnFallback(cmd);
+        }
+        long start = nanoClock.getAsLong();
+        Slot slot = borrow();
+        long acquired = nanoClock.getAsLong();
+        listener.onLockWait(RESOURCE_NAME, acquired - start);
         try {
-            if (lock.tryLock(MAIN_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
-                return execOnMain(cmd);
+            return slot != null ? execOnMain(slot, cmd) : execOnFallback(cmd);
+        } finally {
+            long execution = nanoClock.getAsLong() - acquired;
+            listener.onExecution(RESOURCE_NAME, slot == null, execution);
+            event.set(EXECUTION_FALLBACK, slot == null)
+                    .set(EXECUTION_LOCK_WAIT, acquired - start)
+                    .set(EXECUTION_DURATION, execution)
+                    .commit();
+        }
+    }
+
+    /**
+     * Opens the sessions of the idle slots of the pool, so that the first
+     * commands don't pay for the process spawns. Each slot is given back as
+     * soon as its session is open and the warm-up stops at the first failure.
+     *
+     * @throws IOException if a session cannot be opened
+     */
+    public void warmUp() throws IOException {
+        for (int i = 0; i < slots.size(); i++) {
+            Slot slot = idleSlots.pollLast();
+            if (slot == null) {
+                return;
             }
+            try {
+                slot.getHealthySession();
+            } finally {
+                idleSlots.addFirst(slot);
+            }
+        }
+    }
+
+    private Slot borrow() {
+        try {
+            return idleSlots.pollFirst(MAIN_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
         } catch (InterruptedException ex) {
-            kill(ex);
+            Thread.currentThread().interrupt();
             throw new RuntimeException(ex);
-        } finally {
-            if (lock.isHeldByCurrentThread()) {
-                lock.unlock();
-            }
         }
-        return execOnFallback(cmd);
     }
 
-    private String execOnMain(String cmd) throws IOException, PowerShellExecutionException {
+    private String execOnMain(Slot slot, String cmd) throws IOException, PowerShellExecutionException {
         try {
-            if (ps == null) {
-                ps = PowerShell.open();
-            } else {
-            }
-            return ps.executeCommands(cmd);
-        } catch (RuntimeException unexpected) {
-            kill(unexpected);
-            throw unexpected;
+            return slot.execute(cmd);
+        } finally {
+            idleSlots.addFirst(slot);
         }
     }
 
     private String execOnFallback(String cmd) throws IOException, PowerShellExecutionException {
         if (fallbackInstances.tryAcquire()) {
-            try (PowerShell temp = PowerShell.open()) {
+            try (Session temp = open()) {
                 return temp.executeCommands(cmd);
             } finally {
                 fallbackInstances.release();
             }
         }
+        MetricsListener listener = metrics.get();
+        if (listener != MetricsListener.NONE) {
+            listener.onRejection(RESOURCE_NAME);
+        }
         throw new IOException("No more resource available");
     }
 
-    private void kill(Exception unexpected) {
-        if (ps != null) {
+    private Session open() throws IOException {
+        MetricsListener listener = metrics.get();
+        if (listener != MetricsListener.NONE) {
+            listener.onSpawn(RESOURCE_NAME);
+        }
+        return factory.open();
+    }
+
+    private void shutdown() {
+        for (Slot slot : slots) {
             try {
+                slot.close();
+            } catch (RuntimeException ex) {
+            }
+        }
+    }
+
+    private static Session openPowerShell() throws IOException {
+        PowerShell ps = PowerShell.open();
+        return new Session() {
+            @Override
+            public String executeCommands(String cmd) throws IOException, PowerShellExecutionException {
+                return ps.executeCommands(cmd);
+            }
+
+            @Override
+            public void close() {
                 ps.close();
+            }
+        };
+    }
+
+    /**
+     * A session slot that is only used by the thread that borrowed it, except
+     * for the shutdown hook.
+     */
+    private final class Slot {
+
+        private Session session = null;
+        private long lastUse = 0;
+
+        String execute(String cmd) throws IOException, PowerShellExecutionException {
+            Session current = getHealthySession();
+            try {
+                String result = current.executeCommands(cmd);
+                lastUse = nanoClock.getAsLong();
+                return result;
+            } catch (PowerShellExecutionException ex) {
+                // a script error leaves the session usable
+                lastUse = nanoClock.getAsLong();
+                throw ex;
+            } catch (IOException | RuntimeException ex) {
+                close(ex);
+                throw ex;
+            }
+        }
+
+        private Session getHealthySession() throws IOException {
+            if (session != null && nanoClock.getAsLong() - lastUse > HEALTH_CHECK_INTERVAL_NANOS && !isHealthy(session)) {
+                try {
+                    close();
+                } catch (RuntimeException ex) {
+                }
+            }
+            if (session == null) {
+                session = open();
+                lastUse = nanoClock.getAsLong();
+            }
+            return session;
+        }
+
+        private boolean isHealthy(Session candidate) {
+            try {
+                candidate.executeCommands(HEALTH_CHECK_COMMAND);
+                return true;
+            } catch (IOException | PowerShellExecutionException | RuntimeException ex) {
+                return false;
+            }
+        }
+
+        private void close(Exception unexpected) {
+            try {
+                close();
             } catch (RuntimeException suppressed) {
                 unexpected.addSuppressed(suppressed);
             }
         }
-    }
 
-    private void shutdown() {
-        if (ps != null) {
-            try {
-                ps.close();
-            } catch (RuntimeException ex) {
+        void close() {
+            Session current = session;
+            session = null;
+            if (current != null) {
+                current.close();
             }
         }
     }
+
+    @VisibleForTesting
+    interface Session extends Closeable {
+
+        String executeCommands(String cmd) throws IOException, PowerShellExecutionException;
+
+        @Override
+        void close();
+    }
+
+    @VisibleForTesting
+    @FunctionalInterface
+    interface SessionFactory {
+
+        Session open() throws IOException;
+    }
 }
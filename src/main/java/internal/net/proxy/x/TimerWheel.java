@@ -0,0 +1,109 @@
+/*
+ * Copyright 2026 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package internal.net.proxy.x;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+import nbbrd.design.NotThreadSafe;
+
+/**
+ * Hierarchical timing wheel that reports items once their expiration time
+ * has passed. Advancing the wheel only visits the buckets whose time span
+ * has elapsed, so the cost is proportional to the number of expired items
+ * and of items cascading to a finer level, not to the total number of items.
+ * <p>
+ * Times are in nanoseconds and only compared through differences so that
+ * they can come from {@link System#nanoTime()}. Ticks use arithmetic shifts
+ * to stay monotonic when the clock crosses zero.
+ *
+ * @author Philippe Charles
+ * @param <T>
+ */
+@NotThreadSafe
+final class TimerWheel<T> {
+
+    // spans of one bucket: ~16.8ms, ~1.07s, ~1.15m, ~1.22h, ~19.5h
+    private static final int[] SHIFTS = {24, 30, 36, 42, 46};
+    private static final int[] BUCKETS = {64, 64, 64, 16, 1};
+
+    private final ToLongFunction<T> expirationOf;
+    private final Deque<T>[][] wheel;
+    private long time;
+
+    @SuppressWarnings("unchecked")
+    TimerWheel(ToLongFunction<T> expirationOf, long time) {
+        this.expirationOf = expirationOf;
+        this.wheel = new Deque[BUCKETS.length][];
+        for (int i = 0; i < BUCKETS.length; i++) {
+            wheel[i] = new Deque[BUCKETS[i]];
+            for (int j = 0; j < BUCKETS[i]; j++) {
+                wheel[i][j] = new ArrayDeque<>();
+            }
+        }
+        this.time = time;
+    }
+
+    void schedule(T item) {
+        getBucket(expirationOf.applyAsLong(item)).add(item);
+    }
+
+    void advance(long currentTime, Consumer<? super T> onExpired) {
+        long previousTime = time;
+        time = currentTime;
+        for (int level = 0; level < SHIFTS.length; level++) {
+            long previousTicks = previousTime >> SHIFTS[level];
+            long currentTicks = currentTime >> SHIFTS[level];
+            long delta = currentTicks - previousTicks;
+            if (delta <= 0) {
+                break;
+            }
+            expire(level, previousTicks, delta, onExpired);
+        }
+    }
+
+    private void expire(int level, long previousTicks, long delta, Consumer<? super T> onExpired) {
+        Deque<T>[] buckets = wheel[level];
+        int mask = buckets.length - 1;
+        int steps = (int) Math.min(delta + 1, buckets.length);
+        int start = (int) (previousTicks & mask);
+        for (int i = start; i < start + steps; i++) {
+            Deque<T> bucket = buckets[i & mask];
+            // items rescheduled in the same bucket are left for a later turn
+            for (int n = bucket.size(); n > 0; n--) {
+                T item = bucket.poll();
+                if (expirationOf.applyAsLong(item) - time <= 0) {
+                    onExpired.accept(item);
+                } else {
+                    schedule(item);
+                }
+            }
+        }
+    }
+
+    private Deque<T> getBucket(long expiration) {
+        long duration = expiration - time;
+        for (int level = 0; level < SHIFTS.length - 1; level++) {
+            if (duration < (1L << SHIFTS[level + 1])) {
+                long ticks = expiration >> SHIFTS[level];
+                return wheel[level][(int) (ticks & (BUCKETS[level] - 1))];
+            }
+        }
+        return wheel[SHIFTS.length - 1][0];
+    }
+}
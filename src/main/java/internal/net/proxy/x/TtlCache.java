@@ -16,16 +16,57 @@
  */
 package internal.net.proxy.x;
 
+import internal.net.proxy.JfrEventType;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
 import java.util.function.LongSupplier;
 import java.util.logging.Level;
+import lombok.AccessLevel;
+import nbbrd.net.proxy.CacheStats;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
 /**
+ * A cache whose time-to-live is proportional to the loading time of values.
+ * <p>
+ * The <code>clock</code> is a monotonic time source in nanoseconds, such as
+ * {@link System#nanoTime()}, while durations are configured in milliseconds.
+ * Expired entries are reclaimed proactively on writes through a timer wheel.
+ * <p>
+ * If <code>maxSize</code> is positive, the number of entries is bounded using
+ * a TinyLFU admission policy: a new entry replaces the oldest one only if it
+ * has been requested more often recently.
+ * <p>
+ * If <code>maxLoadWaitInMillis</code> is positive, concurrent loads of the
+ * same key are coalesced: one caller runs the loader while the others wait
+ * for its result up to that delay before loading by themselves.
+ * <p>
+ * If a <code>refreshExecutor</code> is set, an entry that expired less than
+ * <code>maxStaleInMillis</code> ago is still returned while its value is
+ * reloaded in the background on that executor.
+ * <p>
+ * Null values are returned but never cached, so that a failed load is retried
+ * on the next request.
  *
  * @author Philippe Charles
  * @param <K>
@@ -35,14 +76,26 @@ import org.checkerframework.checker.nullness.qual.Nullable;
 @lombok.Builder(toBuilder = true)
 public final class TtlCache<K, V> {
 
+    private static final JfrEventType LOAD_EVENT = JfrEventType.of(
+            "nbbrd.net.proxy.CacheLoad", "Proxy Cache Load",
+            JfrEventType.Field.of("key", String.class),
+            JfrEventType.Field.of("count", int.class),
+            JfrEventType.Field.of("miss", boolean.class)
+    );
+    private static final int LOAD_KEY = 0;
+    private static final int LOAD_COUNT = 1;
+    private static final int LOAD_MISS = 2;
+
     @NonNull
     public static <K, V> TtlCache of() {
         return builder()
                 .minTtlInMillis(10)
                 .maxTtlInMillis(1000 * 60)
                 .ttlFactor(10)
+                .maxSize(10_000)
+                .maxLoadWaitInMillis(1000 * 15)
                 .storage(new ConcurrentHashMap<>())
-                .clock(System::currentTimeMillis)
+                .clock(System::nanoTime)
                 .onEvent(TtlCache::logEvent)
                 .build();
     }
@@ -50,18 +103,48 @@ public final class TtlCache<K, V> {
     private final long minTtlInMillis;
     private final long maxTtlInMillis;
     private final long ttlFactor;
+    private final long maxSize;
+    @lombok.Getter
+    private final long maxLoadWaitInMillis;
+    private final long maxStaleInMillis;
+    @Nullable
+    private final Executor refreshExecutor;
     private final ConcurrentMap<K, Entry<V>> storage;
     private final LongSupplier clock;
     private final BiConsumer<? super K, Event> onEvent;
-    private final int evictThreshold = 1000;
+
+    private final Queue<Node<K, V>> writeOrder = new ConcurrentLinkedQueue<>();
+
+    private final AtomicLong writeOrderLength = new AtomicLong();
+
+    private final Queue<Node<K, V>> pendingExpirations = new ConcurrentLinkedQueue<>();
+
+    private final ReentrantLock maintenanceLock = new ReentrantLock();
+
+    @lombok.Getter(value = AccessLevel.PRIVATE, lazy = true)
+    private final TimerWheel<Node<K, V>> wheel = new TimerWheel<>(this::getReclaimTime, clock.getAsLong());
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final CacheStatsCounter stats = new CacheStatsCounter();
+
+    @lombok.Getter(value = AccessLevel.PRIVATE, lazy = true)
+    private final FrequencySketch<K> sketch = new FrequencySketch<>(maxSize);
 
     @Nullable
     public V get(@NonNull K key, @NonNull Function<K, V> loader) {
         long now = clock.getAsLong();
+        if (isBounded()) {
+            getSketch().increment(key);
+        }
         Entry<V> entry = storage.get(key);
         if (entry != null) {
             if (!entry.hasExpired(now)) {
-                onEvent.accept(key, Event.HIT);
+                fire(key, Event.HIT);
+                return entry.getNullableValue();
+            } else if (!isReclaimable(entry, now)) {
+                fire(key, Event.STALE);
+                refresh(key, loader);
                 return entry.getNullableValue();
             } else {
                 return load(key, loader, now, false);
@@ -70,16 +153,190 @@ public final class TtlCache<K, V> {
         return load(key, loader, now, true);
     }
 
+    /**
+     * Gets the values of several keys, loading all the missing ones in a
+     * single call of the batch loader. Loads of missing keys are not
+     * coalesced with concurrent loads of the same keys.
+     */
+    @NonNull
+    public Map<K, V> getAll(@NonNull Collection<K> keys, @NonNull Function<List<K>, Map<K, V>> batchLoader) {
+        long now = clock.getAsLong();
+        Map<K, V> result = new HashMap<>();
+        List<K> missing = new ArrayList<>();
+        List<K> expired = new ArrayList<>();
+        Set<K> distinct = new HashSet<>();
+        for (K key : keys) {
+            if (!distinct.add(key)) {
+                continue;
+            }
+            if (isBounded()) {
+                getSketch().increment(key);
+            }
+            Entry<V> entry = storage.get(key);
+            if (entry == null) {
+                missing.add(key);
+            } else if (!entry.hasExpired(now)) {
+                fire(key, Event.HIT);
+                result.put(key, entry.getNullableValue());
+            } else if (!isReclaimable(entry, now)) {
+                fire(key, Event.STALE);
+                refresh(key, o -> batchLoader.apply(Collections.singletonList(o)).get(o));
+                result.put(key, entry.getNullableValue());
+            } else {
+                expired.add(key);
+            }
+        }
+        if (!missing.isEmpty() || !expired.isEmpty()) {
+            List<K> loads = new ArrayList<>(missing);
+            loads.addAll(expired);
+            JfrEventType.Event event = LOAD_EVENT.begin();
+            Map<K, V> values = batchLoader.apply(loads);
+            long after = clock.getAsLong();
+            if (event.isEnabled()) {
+                event.set(LOAD_KEY, loads.toString())
+                        .set(LOAD_COUNT, loads.size())
+                        .set(LOAD_MISS, expired.isEmpty())
+                        .commit();
+            }
+            stats.recordLoad(after - now);
+            missing.forEach(key -> result.put(key, store(key, values.get(key), now, after, true)));
+            expired.forEach(key -> result.put(key, store(key, values.get(key), now, after, false)));
+        }
+        return result;
+    }
+
+    /**
+     * Adds a value of unknown freshness, such as one read from a persistent
+     * storage, unless the key is already present. The value is served as a
+     * stale one and reloaded on its first request. It is ignored if no
+     * refresh executor is set.
+     */
+    public void putProvisional(@NonNull K key, @Nullable V value) {
+        if (refreshExecutor == null) {
+            return;
+        }
+        long now = clock.getAsLong();
+        Entry<V> entry = new Entry<>(now, value);
+        if (storage.putIfAbsent(key, entry) == null) {
+            Node<K, V> node = new Node<>(key, entry);
+            pendingExpirations.add(node);
+            maintain(now);
+            if (isBounded()) {
+                addToWriteOrder(node);
+                evictEntries(key, entry, now);
+            }
+        }
+    }
+
+    @NonNull
+    public CacheStats stats() {
+        return stats.snapshot(storage.size());
+    }
+
+    /**
+     * Reclaims the expired entries without waiting for the next write.
+     */
+    public void cleanUp() {
+        maintain(clock.getAsLong());
+    }
+
     private V load(K key, Function<K, V> loader, long before, boolean miss) {
+        if (maxLoadWaitInMillis <= 0) {
+            return loadAndStore(key, loader, before, miss);
+        }
+        CompletableFuture<V> own = new CompletableFuture<>();
+        CompletableFuture<V> other = inFlight.putIfAbsent(key, own);
+        if (other != null) {
+            return awaitOtherLoad(key, other, loader, before, miss);
+        }
+        return loadInFlight(key, own, loader, before, miss);
+    }
+
+    private void refresh(K key, Function<K, V> loader) {
+        CompletableFuture<V> own = new CompletableFuture<>();
+        if (inFlight.putIfAbsent(key, own) != null) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> refreshInFlight(key, own, loader));
+        } catch (RejectedExecutionException ex) {
+            inFlight.remove(key, own);
+            own.completeExceptionally(ex);
+        }
+    }
+
+    private void refreshInFlight(K key, CompletableFuture<V> own, Function<K, V> loader) {
+        try {
+            loadInFlight(key, own, loader, clock.getAsLong(), false);
+        } catch (RuntimeException ex) {
+            if (log.isLoggable(Level.WARNING)) {
+                log.log(Level.WARNING, "Failed to refresh key '" + key + "'", ex);
+            }
+        }
+    }
+
+    private V loadInFlight(K key, CompletableFuture<V> own, Function<K, V> loader, long before, boolean miss) {
+        try {
+            V result = loadAndStore(key, loader, before, miss);
+            own.complete(result);
+            return result;
+        } catch (RuntimeException | Error ex) {
+            own.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            inFlight.remove(key, own);
+        }
+    }
+
+    private V awaitOtherLoad(K key, CompletableFuture<V> other, Function<K, V> loader, long before, boolean miss) {
+        try {
+            V result = other.get(maxLoadWaitInMillis, TimeUnit.MILLISECONDS);
+            fire(key, Event.SHARED);
+            return result;
+        } catch (ExecutionException ex) {
+            throw propagate(ex.getCause());
+        } catch (TimeoutException ex) {
+            return loadAndStore(key, loader, before, miss);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return loadAndStore(key, loader, before, miss);
+        }
+    }
+
+    private V loadAndStore(K key, Function<K, V> loader, long before, boolean miss) {
+        JfrEventType.Event event = LOAD_EVENT.begin();
         V result = loader.apply(key);
         long after = clock.getAsLong();
+        if (event.isEnabled()) {
+            event.set(LOAD_KEY, String.valueOf(key))
+                    .set(LOAD_COUNT, 1)
+                    .set(LOAD_MISS, miss)
+                    .commit();
+        }
+        stats.recordLoad(after - before);
+        return store(key, result, before, after, miss);
+    }
+
+    private V store(K key, V result, long before, long after, boolean miss) {
+        if (result == null) {
+            // no answer: the previous entry, if any, is kept as is
+            fire(key, miss ? Event.MISS_FAST : Event.EXP_FAST);
+            return null;
+        }
         long ttl = (after - before) * ttlFactor;
-        if (ttl >= minTtlInMillis) {
-            onEvent.accept(key, miss ? Event.MISS_SLOW : Event.EXP_SLOW);
-            evictExpiredEntries(after);
-            storage.put(key, new Entry<>(after + Math.min(maxTtlInMillis, ttl), result));
+        if (ttl >= toNanos(minTtlInMillis)) {
+            fire(key, miss ? Event.MISS_SLOW : Event.EXP_SLOW);
+            Entry<V> entry = new Entry<>(after + Math.min(toNanos(maxTtlInMillis), ttl), result);
+            storage.put(key, entry);
+            Node<K, V> node = new Node<>(key, entry);
+            pendingExpirations.add(node);
+            maintain(after);
+            if (isBounded()) {
+                addToWriteOrder(node);
+                evictEntries(key, entry, after);
+            }
         } else {
-            onEvent.accept(key, miss ? Event.MISS_FAST : Event.EXP_FAST);
+            fire(key, miss ? Event.MISS_FAST : Event.EXP_FAST);
             if (!miss) {
                 storage.remove(key);
             }
@@ -87,29 +344,138 @@ public final class TtlCache<K, V> {
         return result;
     }
 
-    private void evictExpiredEntries(long currentTimeInMillis) {
-        if (storage.size() > evictThreshold) {
-            storage.entrySet()
-                    .stream()
-                    .filter(o -> o.getValue().hasExpired(currentTimeInMillis))
-                    .forEach(storage::remove);
+    private boolean isBounded() {
+        return maxSize > 0;
+    }
+
+    private long getStaleness() {
+        return refreshExecutor != null ? toNanos(maxStaleInMillis) : 0;
+    }
+
+    private boolean isReclaimable(Entry<V> entry, long currentTime) {
+        return entry.hasExpired(currentTime - getStaleness());
+    }
+
+    private long getReclaimTime(Node<K, V> node) {
+        return node.getEntry().getExpiration() + getStaleness();
+    }
+
+    private void maintain(long currentTime) {
+        if (maintenanceLock.tryLock()) {
+            try {
+                TimerWheel<Node<K, V>> timerWheel = getWheel();
+                Node<K, V> node;
+                while ((node = pendingExpirations.poll()) != null) {
+                    timerWheel.schedule(node);
+                }
+                timerWheel.advance(currentTime, this::reclaim);
+            } finally {
+                maintenanceLock.unlock();
+            }
+        }
+    }
+
+    private void reclaim(Node<K, V> node) {
+        storage.remove(node.getKey(), node.getEntry());
+    }
+
+    private void addToWriteOrder(Node<K, V> node) {
+        writeOrder.add(node);
+        // amortized O(1): stale nodes are purged once they outnumber the live ones
+        if (writeOrderLength.incrementAndGet() > 2 * maxSize + 16 && maintenanceLock.tryLock()) {
+            try {
+                writeOrder.removeIf(o -> !o.isCurrent(storage));
+                writeOrderLength.set(writeOrder.size());
+            } finally {
+                maintenanceLock.unlock();
+            }
+        }
+    }
+
+    private Node<K, V> pollWriteOrder() {
+        Node<K, V> result = writeOrder.poll();
+        if (result != null) {
+            writeOrderLength.decrementAndGet();
+        }
+        return result;
+    }
+
+    private void evictEntries(K candidateKey, Entry<V> candidate, long currentTime) {
+        while (storage.size() > maxSize) {
+            Node<K, V> victim = pollWriteOrder();
+            if (victim == null) {
+                return;
+            }
+            if (!victim.isCurrent(storage)) {
+                continue;
+            }
+            if (isReclaimable(victim.getEntry(), currentTime)) {
+                storage.remove(victim.getKey(), victim.getEntry());
+                continue;
+            }
+            if (victim.getEntry() == candidate) {
+                addToWriteOrder(victim);
+                return;
+            }
+            FrequencySketch<K> frequencies = getSketch();
+            if (frequencies.frequency(candidateKey) > frequencies.frequency(victim.getKey())) {
+                if (storage.remove(victim.getKey(), victim.getEntry())) {
+                    fire(victim.getKey(), Event.EVICT);
+                }
+            } else {
+                addToWriteOrder(victim);
+                if (storage.remove(candidateKey, candidate)) {
+                    fire(candidateKey, Event.EVICT);
+                }
+                return;
+            }
         }
     }
 
     @lombok.AllArgsConstructor
+    @lombok.Getter
     public static final class Entry<V> {
 
         private final long expiration;
-        @lombok.Getter
         private final V nullableValue;
 
-        public boolean hasExpired(long currentTimeInMillis) {
-            return expiration <= currentTimeInMillis;
+        public boolean hasExpired(long currentTime) {
+            return expiration - currentTime <= 0;
+        }
+    }
+
+    private void fire(K key, Event event) {
+        stats.record(event);
+        onEvent.accept(key, event);
+    }
+
+    private static long toNanos(long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    private static RuntimeException propagate(Throwable cause) {
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new IllegalStateException(cause);
+    }
+
+    @lombok.Value
+    private static class Node<K, V> {
+
+        K key;
+        Entry<V> entry;
+
+        boolean isCurrent(ConcurrentMap<K, Entry<V>> storage) {
+            return storage.get(key) == entry;
         }
     }
 
     public enum Event {
-        HIT, EXP_SLOW, EXP_FAST, MISS_SLOW, MISS_FAST
+        HIT, EXP_SLOW, EXP_FAST, MISS_SLOW, MISS_FAST, EVICT, SHARED, STALE
     }
 
     private static void logEvent(Object key, Event e) {
@@ -17,19 +17,36 @@
 package internal.net.proxy.x;
 
 import com.github.tuupertunut.powershelllibjava.PowerShellExecutionException;
+import internal.net.proxy.Metrics;
+import internal.net.proxy.Origin;
+import internal.net.proxy.PeriodicSnapshot;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.Proxy;
 import java.net.URI;
+import java.net.URISyntaxException;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.function.UnaryOperator;
 import java.util.logging.Level;
 import lombok.AccessLevel;
+import nbbrd.net.proxy.CacheStats;
+import nbbrd.net.proxy.MetricsListener;
 import nbbrd.net.proxy.SystemProxySelector;
 import nbbrd.service.ServiceProvider;
+import org.checkerframework.checker.nullness.qual.Nullable;
 
 /**
  *
@@ -40,31 +57,308 @@ import nbbrd.service.ServiceProvider;
 @lombok.AllArgsConstructor(access = AccessLevel.PACKAGE)
 public final class WinPowerShellProxySelector implements SystemProxySelector.Spi {
 
-    private final TtlCache<String, Proxy> cache;
-    private final Function<URI, Map<String, String>> powerShellCommand;
+    private static final Executor REFRESH_EXECUTOR = Executors.newCachedThreadPool(WinPowerShellProxySelector::newRefreshThread);
+    private static final long BATCH_WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final int BATCH_MAX_SIZE = 64;
+    private static final String BLOCK_PREFIX = "### ";
+    private static final String FETCH_CONFIG_PROPERTY = "nbbrd.net.proxy.powershell.fetchConfig";
+    private static final long CONFIG_CHECK_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final String PERSISTENT_CACHE_PROPERTY = "nbbrd.net.proxy.powershell.persistentCache";
+    private static final String CACHE_NAME = WinPowerShellProxySelector.class.getSimpleName();
+
+    private final TtlCache<Origin, Proxy> cache;
+    private final Function<List<URI>, Map<String, Map<String, String>>> powerShellCommand;
+    @Nullable
+    private final Supplier<WinProxyConfig> configCommand;
+    @Nullable
+    private final Supplier<DiskCache> diskCacheFactory;
+    private final Executor backgroundExecutor;
     private final UnaryOperator<String> sys;
+    private final Runnable powerShellWarmUp;
+    private final Metrics metrics;
+
+    @lombok.Getter(value = AccessLevel.PRIVATE, lazy = true)
+    private final PeriodicSnapshot<WinProxyConfig> config = initConfig();
+
+    @lombok.Getter(value = AccessLevel.PRIVATE, lazy = true)
+    private final DiskCache diskCache = initDiskCache();
+
+    private final AtomicBoolean diskCacheRequested = new AtomicBoolean();
+
+    private final Map<String, String> pendingWrites = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean writing = new AtomicBoolean();
+
+    @lombok.Getter(value = AccessLevel.PRIVATE, lazy = true)
+    private final Batcher<URI, Map<String, String>> batcher = new Batcher<>(this::getSystemWebProxies, BATCH_WINDOW_NANOS, BATCH_MAX_SIZE, TimeUnit.MILLISECONDS.toNanos(cache.getMaxLoadWaitInMillis()));
 
     public WinPowerShellProxySelector() {
+        this(new GetSystemWebProxyCommand());
+    }
+
+    private WinPowerShellProxySelector(GetSystemWebProxyCommand command) {
         this(TtlCache.of()
                 .toBuilder()
                 .minTtlInMillis(Duration.ofMillis(100).toMillis())
                 .maxTtlInMillis(Duration.ofMinutes(1).toMillis())
                 .ttlFactor(100)
-                .onEvent((k, e) -> logCacheEvent(k, (TtlCache.Event) e))
+                .maxStaleInMillis(Duration.ofMinutes(1).toMillis())
+                .refreshExecutor(REFRESH_EXECUTOR)
+                .onEvent((k, e) -> onCacheEvent(command.getMetrics(), k, (TtlCache.Event) e))
                 .build(),
-                new GetSystemWebProxyCommand().andThen(WinPowerShellProxySelector::parseMap),
-                System::getProperty
+                command.andThen(WinPowerShellProxySelector::parseBlocks),
+                Boolean.getBoolean(FETCH_CONFIG_PROPERTY) ? new WinProxyConfigFetcher(command::fetchConfig, WinPowerShellProxySelector::learnRules, REFRESH_EXECUTOR) : null,
+                Boolean.getBoolean(PERSISTENT_CACHE_PROPERTY) ? () -> newDiskCache(command) : null,
+                REFRESH_EXECUTOR,
+                System::getProperty,
+                command::warmUp,
+                command.getMetrics()
         );
     }
 
     @Override
     public Proxy getProxyOrNull(URI uri) {
-        return isWindows(sys) ? cache.get(uri.getHost(), (o) -> getSystemWebProxy(uri)) : null;
+        if (!isWindows(sys)) {
+            return null;
+        }
+        WinProxyConfig config = getFetchedConfig();
+        Proxy local = config != null ? config.getLocalProxyOrNull(uri) : null;
+        if (local != null) {
+            return local;
+        }
+        requestDiskCache();
+        return cache.get(Origin.of(uri), (o) -> store(o, getSystemWebProxy(uri)));
+    }
+
+    @Override
+    public Map<URI, Proxy> getProxies(List<URI> uris) {
+        if (!isWindows(sys)) {
+            return Collections.emptyMap();
+        }
+        WinProxyConfig config = getFetchedConfig();
+        Map<URI, Proxy> result = new HashMap<>();
+        Map<URI, Origin> originByUri = new HashMap<>();
+        Map<Origin, URI> uriByOrigin = new HashMap<>();
+        for (URI uri : uris) {
+            Proxy local = config != null ? config.getLocalProxyOrNull(uri) : null;
+            if (local != null) {
+                result.put(uri, local);
+            } else {
+                uriByOrigin.putIfAbsent(originByUri.computeIfAbsent(uri, Origin::of), uri);
+            }
+        }
+        if (!uriByOrigin.isEmpty()) {
+            requestDiskCache();
+            Map<Origin, Proxy> proxyByOrigin = cache.getAll(uriByOrigin.keySet(), origins -> getSystemWebProxies(origins, uriByOrigin));
+            originByUri.forEach((uri, origin) -> {
+                Proxy proxy = proxyByOrigin.get(origin);
+                if (proxy != null) {
+                    result.put(uri, proxy);
+                }
+            });
+        }
+        return result;
+    }
+
+    @Override
+    public void warmUp() {
+        if (isWindows(sys)) {
+            powerShellWarmUp.run();
+            requestDiskCache();
+        }
+    }
+
+    @Override
+    public Map<String, CacheStats> getCacheStats() {
+        return Collections.singletonMap(CACHE_NAME, cache.stats());
+    }
+
+    @Override
+    public int getPriority() {
+        return 300;
+    }
+
+    @Override
+    public void addListener(MetricsListener listener) {
+        metrics.add(listener);
+    }
+
+    private WinProxyConfig getFetchedConfig() {
+        PeriodicSnapshot<WinProxyConfig> snapshot = getConfig();
+        return snapshot != null ? snapshot.get() : null;
+    }
+
+    private PeriodicSnapshot<WinProxyConfig> initConfig() {
+        return configCommand != null
+                ? new PeriodicSnapshot<>(configCommand, CONFIG_CHECK_INTERVAL_NANOS, System::nanoTime, backgroundExecutor)
+                : null;
+    }
+
+    /**
+     * Learns the domain rules of a proxy auto-config script, or returns empty
+     * rules if it can't be loaded.
+     */
+    private static DomainRules learnRules(String url) {
+        try {
+            return DomainRules.of(PacScript.parse(PacProxySelector.load(url)).getHostRules());
+        } catch (IOException | IllegalArgumentException ex) {
+            if (log.isLoggable(Level.WARNING)) {
+                log.log(Level.WARNING, "Failed to learn rules from PAC script '" + url + "'", ex);
+            }
+            return DomainRules.EMPTY;
+        }
     }
 
     private Proxy getSystemWebProxy(URI uri) {
-        Map<String, String> result = powerShellCommand.apply(uri);
-        return isDirect(result, uri) ? Proxy.NO_PROXY : parseProxy(result);
+        return toProxy(getBatcher().get(uri), uri);
+    }
+
+    private Map<Origin, Proxy> getSystemWebProxies(List<Origin> origins, Map<Origin, URI> uriByOrigin) {
+        Map<Origin, Proxy> result = new HashMap<>();
+        for (int i = 0; i < origins.size(); i += BATCH_MAX_SIZE) {
+            List<Origin> chunk = origins.subList(i, Math.min(i + BATCH_MAX_SIZE, origins.size()));
+            List<URI> uris = new ArrayList<>();
+            chunk.forEach(origin -> uris.add(uriByOrigin.get(origin)));
+            Map<URI, Map<String, String>> webProxies = getSystemWebProxies(uris);
+            chunk.forEach(origin -> {
+                URI uri = uriByOrigin.get(origin);
+                result.put(origin, toProxy(webProxies.get(uri), uri));
+            });
+        }
+        store(result);
+        return result;
+    }
+
+    private Proxy store(Origin origin, Proxy proxy) {
+        store(Collections.singletonMap(origin, proxy));
+        return proxy;
+    }
+
+    /**
+     * Queues some decisions for the disk cache, which is written by a single
+     * background task so that lookups never wait for file locks.
+     */
+    private void store(Map<Origin, Proxy> proxies) {
+        if (diskCacheFactory == null) {
+            return;
+        }
+        proxies.forEach((origin, proxy) -> {
+            if (origin.getHost() != null && origin.getPort() != -1 && proxy != null) {
+                pendingWrites.put(origin.toString(), PacProxySelector.formatResult(proxy));
+            }
+        });
+        if (!pendingWrites.isEmpty() && writing.compareAndSet(false, true)) {
+            backgroundExecutor.execute(this::writeDiskCache);
+        }
+    }
+
+    private void writeDiskCache() {
+        do {
+            try {
+                Map<String, String> entries = new HashMap<>();
+                for (String key : pendingWrites.keySet()) {
+                    String value = pendingWrites.remove(key);
+                    if (value != null) {
+                        entries.put(key, value);
+                    }
+                }
+                DiskCache diskCache = getDiskCache();
+                if (diskCache != null) {
+                    diskCache.store(entries);
+                }
+            } finally {
+                writing.set(false);
+            }
+        } while (!pendingWrites.isEmpty() && writing.compareAndSet(false, true));
+    }
+
+    /**
+     * Loads the decisions of previous runs in the background, once, as
+     * provisional values that are revalidated on first use. Lookups don't
+     * wait for this load since it fetches the Internet settings first.
+     */
+    private void requestDiskCache() {
+        if (diskCacheFactory != null && diskCacheRequested.compareAndSet(false, true)) {
+            backgroundExecutor.execute(this::loadDiskCache);
+        }
+    }
+
+    private void loadDiskCache() {
+        DiskCache diskCache = getDiskCache();
+        if (diskCache == null) {
+            return;
+        }
+        diskCache.load().forEach((key, value) -> {
+            Proxy proxy = PacProxySelector.parseResult(value);
+            if (proxy != null) {
+                try {
+                    cache.putProvisional(Origin.of(new URI(key)), proxy);
+                } catch (URISyntaxException ex) {
+                    // ignored since the file may have been altered
+                }
+            }
+        });
+    }
+
+    private DiskCache initDiskCache() {
+        DiskCache result = diskCacheFactory != null ? diskCacheFactory.get() : null;
+        if (diskCacheFactory != null && result == null && log.isLoggable(Level.WARNING)) {
+            log.log(Level.WARNING, "Persistent cache disabled since the Internet settings can't be fetched");
+        }
+        return result;
+    }
+
+    /**
+     * Creates a disk cache whose entries are bound to the current Internet
+     * settings, or returns null if these settings can't be fetched.
+     */
+    @Nullable
+    private static DiskCache newDiskCache(GetSystemWebProxyCommand command) {
+        Map<String, String> settings = parseMap(command.fetchConfig());
+        if (!settings.containsKey("ProxyEnable")) {
+            return null;
+        }
+        return new DiskCache(
+                DiskCache.getUserCacheDir(System::getProperty, System::getenv).resolve("WinPowerShellProxySelector.cache"),
+                getFingerprint(System::getProperty, System::getenv, settings),
+                TimeUnit.DAYS.toMillis(1),
+                1024 * 1024,
+                10_000,
+                System::currentTimeMillis);
+    }
+
+    static String getFingerprint(UnaryOperator<String> sys, UnaryOperator<String> env, Map<String, String> settings) {
+        return Integer.toHexString(String.join("|",
+                String.valueOf(sys.apply("user.name")),
+                String.valueOf(sys.apply("os.version")),
+                String.valueOf(env.apply("COMPUTERNAME")),
+                String.valueOf(env.apply("USERDNSDOMAIN")),
+                String.valueOf(settings.get("ProxyEnable")),
+                String.valueOf(settings.get("ProxyServer")),
+                String.valueOf(settings.get("ProxyOverride")),
+                String.valueOf(settings.get("AutoConfigURL")),
+                String.valueOf(settings.get("AutoDetect"))).hashCode());
+    }
+
+    /**
+     * Converts the answer of PowerShell, or returns null if it is missing or
+     * incomplete, which happens when the PowerShell call failed.
+     */
+    @Nullable
+    private static Proxy toProxy(@Nullable Map<String, String> webProxy, URI uri) {
+        if (webProxy == null) {
+            return null;
+        }
+        return isDirect(webProxy, uri) ? Proxy.NO_PROXY : parseProxy(webProxy);
+    }
+
+    private Map<URI, Map<String, String>> getSystemWebProxies(List<URI> uris) {
+        Map<String, Map<String, String>> blocks = powerShellCommand.apply(uris);
+        Map<URI, Map<String, String>> result = new HashMap<>();
+        for (URI uri : uris) {
+            result.put(uri, blocks.get(uri.toString()));
+        }
+        return result;
     }
 
     private static boolean isWindows(UnaryOperator<String> sys) {
@@ -89,35 +383,121 @@ public final class WinPowerShellProxySelector implements SystemProxySelector.Spi
         return uri.getHost().equals(webProxy.get("Host"));
     }
 
+    @Nullable
     private static Proxy parseProxy(Map<String, String> webProxy) {
-        return new Proxy(Proxy.Type.HTTP, new InetSocketAddress(webProxy.get("Host"), Integer.valueOf(webProxy.get("Port"))));
+        String host = webProxy.get("Host");
+        String port = webProxy.get("Port");
+        if (host == null || port == null) {
+            return null;
+        }
+        try {
+            return new Proxy(Proxy.Type.HTTP, new InetSocketAddress(host, Integer.parseInt(port)));
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
     }
 
-    private static Map<String, String> parseMap(String input) {
-        Map<String, String> result = new HashMap<>();
-        for (String row : input.split(System.lineSeparator(), -1)) {
-            String[] fields = row.split(" : ", -1);
-            if (fields.length == 2) {
-                result.put(fields[0].trim(), fields[1].trim());
+    static Map<String, Map<String, String>> parseBlocks(String input) {
+        Map<String, Map<String, String>> result = new LinkedHashMap<>();
+        Map<String, String> block = null;
+        for (String row : input.split("\\R", -1)) {
+            if (row.startsWith(BLOCK_PREFIX)) {
+                block = new HashMap<>();
+                result.put(row.substring(BLOCK_PREFIX.length()), block);
+            } else if (block != null) {
+                putField(block, row);
             }
         }
         return result;
     }
 
-    private static void logCacheEvent(Object key, TtlCache.Event e) {
+    static Map<String, String> parseMap(String input) {
+        Map<String, String> result = new HashMap<>();
+        for (String row : input.split("\\R", -1)) {
+            putField(result, row);
+        }
+        return result;
+    }
+
+    private static void putField(Map<String, String> map, String row) {
+        String[] fields = row.split(" : ", -1);
+        if (fields.length == 2) {
+            map.put(fields[0].trim(), fields[1].trim());
+        }
+    }
+
+    private static Thread newRefreshThread(Runnable task) {
+        Thread result = new Thread(task, "WinPowerShellProxySelector-refresh");
+        result.setDaemon(true);
+        return result;
+    }
+
+    private static void onCacheEvent(Metrics metrics, Object key, TtlCache.Event e) {
         if (log.isLoggable(Level.FINE)) {
             log.log(Level.FINE, "Proxy cache: {0} on key ''{1}''", new Object[]{e, key});
         }
+        MetricsListener listener = metrics.get();
+        if (listener != MetricsListener.NONE) {
+            listener.onCacheEvent(CACHE_NAME, toCacheEvent(e));
+        }
+    }
+
+    private static MetricsListener.CacheEvent toCacheEvent(TtlCache.Event e) {
+        switch (e) {
+            case HIT:
+                return MetricsListener.CacheEvent.HIT;
+            case STALE:
+                return MetricsListener.CacheEvent.STALE;
+            case EXP_FAST:
+            case EXP_SLOW:
+                return MetricsListener.CacheEvent.EXPIRED;
+            case EVICT:
+                return MetricsListener.CacheEvent.EVICTED;
+            case SHARED:
+                return MetricsListener.CacheEvent.SHARED;
+            default:
+                return MetricsListener.CacheEvent.MISS;
+        }
     }
 
-    public static final class GetSystemWebProxyCommand implements Function<URI, String> {
+    /**
+     * Resolves several URIs in one script whose output is made of one block
+     * per URI: a header line with the URI followed by "key : value" lines.
+     */
+    public static final class GetSystemWebProxyCommand implements Function<List<URI>, String> {
+
+        static final String CONFIG_SCRIPT
+                = "$k = 'HKCU:\\Software\\Microsoft\\Windows\\CurrentVersion\\Internet Settings'; "
+                + "$s = Get-ItemProperty -Path $k; "
+                + "$c = (Get-ItemProperty -Path ($k + '\\Connections') -ErrorAction SilentlyContinue).DefaultConnectionSettings; "
+                + "'ProxyEnable : ' + $s.ProxyEnable; "
+                + "'ProxyServer : ' + $s.ProxyServer; "
+                + "'ProxyOverride : ' + $s.ProxyOverride; "
+                + "'AutoConfigURL : ' + $s.AutoConfigURL; "
+                + "'AutoDetect : ' + ($c -ne $null -and $c.Length -gt 8 -and ($c[8] -band 8) -ne 0)";
 
         private final SharedPowerShell ps = new SharedPowerShell();
 
+        Metrics getMetrics() {
+            return ps.getMetrics();
+        }
+
         @Override
-        public String apply(URI uri) {
+        public String apply(List<URI> uris) {
+            return execute(getScript(uris));
+        }
+
+        /**
+         * Fetches the Internet settings of the current user as "key : value"
+         * lines.
+         */
+        public String fetchConfig() {
+            return execute(CONFIG_SCRIPT);
+        }
+
+        private String execute(String script) {
             try {
-                return ps.executeCommands("([System.Net.WebRequest]::GetSystemWebproxy()).GetProxy('" + uri + "')");
+                return ps.executeCommands(script);
             } catch (IOException | PowerShellExecutionException ex) {
                 if (log.isLoggable(Level.WARNING)) {
                     log.log(Level.WARNING, "Failed to execute powershell command", ex);
@@ -125,5 +505,30 @@ public final class WinPowerShellProxySelector implements SystemProxySelector.Spi
                 return "";
             }
         }
+
+        void warmUp() {
+            try {
+                ps.warmUp();
+            } catch (IOException ex) {
+                if (log.isLoggable(Level.WARNING)) {
+                    log.log(Level.WARNING, "Failed to warm up powershell", ex);
+                }
+            }
+        }
+
+        static String getScript(List<URI> uris) {
+            StringBuilder result = new StringBuilder();
+            result.append("$p = [System.Net.WebRequest]::GetSystemWebproxy(); foreach ($u in @(");
+            for (int i = 0; i < uris.size(); i++) {
+                if (i > 0) {
+                    result.append(", ");
+                }
+                result.append('\'').append(uris.get(i).toString().replace("'", "''")).append('\'');
+            }
+            result.append(")) { $r = $p.GetProxy($u); '")
+                    .append(BLOCK_PREFIX)
+                    .append("' + $u; 'Host : ' + $r.Host; 'Port : ' + $r.Port; 'IsDefaultPort : ' + $r.IsDefaultPort }");
+            return result.toString();
+        }
     }
 }
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2026 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package internal.net.proxy.x;
+
+import internal.net.proxy.HostMatcher;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.URI;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A snapshot of the Internet settings of Windows that evaluates URIs
+ * locally, unless a proxy auto-config script or auto-detection is enabled.
+ *
+ * @author Philippe Charles
+ */
+@lombok.Value
+class WinProxyConfig {
+
+    static final String ALL_SCHEMES = "";
+
+    /**
+     * A configuration that could not be fetched and is therefore left to
+     * Windows.
+     */
+    static final WinProxyConfig UNKNOWN = new WinProxyConfig(false, Collections.emptyMap(), HostMatcher.NONE, false, null, true, DomainRules.EMPTY);
+
+    boolean enabled;
+
+    /**
+     * Proxies by scheme, the {@link #ALL_SCHEMES} entry being used for every
+     * scheme.
+     */
+    @NonNull
+    Map<String, Proxy> proxies;
+
+    @NonNull
+    HostMatcher bypass;
+
+    /**
+     * Whether the <code>&lt;local&gt;</code> entry bypasses host names
+     * without dots.
+     */
+    boolean bypassLocal;
+
+    @Nullable
+    String autoConfigUrl;
+
+    boolean autoDetect;
+
+    /**
+     * Rules verified in the proxy auto-config script.
+     */
+    @NonNull
+    DomainRules rules;
+
+    /**
+     * Checks if the proxy depends on a script or on auto-detection, which
+     * can only be evaluated by Windows.
+     */
+    boolean isDynamic() {
+        return autoConfigUrl != null || autoDetect;
+    }
+
+    @NonNull
+    WinProxyConfig withRules(@NonNull DomainRules rules) {
+        return new WinProxyConfig(enabled, proxies, bypass, bypassLocal, autoConfigUrl, autoDetect, rules);
+    }
+
+    /**
+     * Evaluates an URI locally if possible.
+     *
+     * @return a proxy or null if the URI must be evaluated by Windows
+     */
+    @Nullable
+    Proxy getLocalProxyOrNull(@NonNull URI uri) {
+        if (!isDynamic()) {
+            return getProxy(uri);
+        }
+        String host = uri.getHost();
+        return host != null ? rules.getProxyOrNull(host) : null;
+    }
+
+    @NonNull
+    Proxy getProxy(@NonNull URI uri) {
+        String host = uri.getHost();
+        if (!enabled || host == null || isBypassed(host)) {
+            return Proxy.NO_PROXY;
+        }
+        Proxy result = proxies.get(ALL_SCHEMES);
+        if (result == null && uri.getScheme() != null) {
+            result = proxies.get(uri.getScheme().toLowerCase(Locale.ROOT));
+        }
+        if (result == null) {
+            result = proxies.get("socks");
+        }
+        return result != null ? result : Proxy.NO_PROXY;
+    }
+
+    private boolean isBypassed(String host) {
+        return (bypassLocal && host.indexOf('.') == -1 && host.indexOf(':') == -1) || bypass.matches(host);
+    }
+
+    @NonNull
+    static WinProxyConfig parse(@NonNull Map<String, String> settings) {
+        if (!settings.containsKey("ProxyEnable")) {
+            return UNKNOWN;
+        }
+        String autoConfigUrl = settings.get("AutoConfigURL");
+        HostMatcher.Builder bypass = HostMatcher.builder();
+        boolean bypassLocal = false;
+        for (String item : split(settings.get("ProxyOverride"))) {
+            if (item.isEmpty()) {
+                continue;
+            }
+            if (item.equalsIgnoreCase("<local>")) {
+                bypassLocal = true;
+            } else {
+                bypass.wildcard(removeScheme(item));
+            }
+        }
+        return new WinProxyConfig(
+                "1".equals(settings.get("ProxyEnable")),
+                parseProxyServer(settings.get("ProxyServer")),
+                bypass.build(),
+                bypassLocal,
+                autoConfigUrl != null && !autoConfigUrl.isEmpty() ? autoConfigUrl : null,
+                "True".equalsIgnoreCase(settings.get("AutoDetect")),
+                DomainRules.EMPTY
+        );
+    }
+
+    /**
+     * Parses a <code>ProxyServer</code> value that is either a single
+     * <code>host:port</code> or a list such as
+     * <code>http=host:port;https=host:port;socks=host:port</code>.
+     */
+    @NonNull
+    static Map<String, Proxy> parseProxyServer(@Nullable String value) {
+        Map<String, Proxy> result = new HashMap<>();
+        for (String item : split(value)) {
+            if (item.isEmpty()) {
+                continue;
+            }
+            int index = item.indexOf('=');
+            String scheme = index != -1 ? item.substring(0, index).trim().toLowerCase(Locale.ROOT) : ALL_SCHEMES;
+            Proxy proxy = parseAddress(scheme.equals("socks") ? Proxy.Type.SOCKS : Proxy.Type.HTTP, item.substring(index + 1).trim());
+            if (proxy != null) {
+                result.put(scheme, proxy);
+            }
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    private static Proxy parseAddress(Proxy.Type type, String address) {
+        String text = removeScheme(address);
+        int colon = text.lastIndexOf(':');
+        try {
+            return colon != -1
+                    ? new Proxy(type, InetSocketAddress.createUnresolved(text.substring(0, colon), Integer.parseInt(text.substring(colon + 1))))
+                    : new Proxy(type, InetSocketAddress.createUnresolved(text, type == Proxy.Type.SOCKS ? 1080 : 80));
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    private static String removeScheme(String text) {
+        int index = text.indexOf("://");
+        return index != -1 ? text.substring(index + 3) : text;
+    }
+
+    private static String[] split(String value) {
+        return value != null && !value.trim().isEmpty() ? value.trim().split("\\s*;\\s*") : new String[0];
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2026 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package internal.net.proxy.x;
+
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import nbbrd.design.ThreadSafe;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Fetches the Internet settings of Windows and, if they point to a proxy
+ * auto-config script without auto-detection, adds the domain rules of this
+ * script.
+ * <p>
+ * The script is learned in the background and only when its URL changes, so
+ * that a fetch never waits for a download: the settings are returned without
+ * rules until the script is learned.
+ *
+ * @author Philippe Charles
+ */
+@ThreadSafe
+@lombok.RequiredArgsConstructor
+final class WinProxyConfigFetcher implements Supplier<WinProxyConfig> {
+
+    /**
+     * Raw settings as "key : value" lines, empty if they can't be fetched.
+     */
+    @lombok.NonNull
+    private final Supplier<String> settingsCommand;
+
+    @lombok.NonNull
+    private final Function<String, DomainRules> rulesLearner;
+
+    @lombok.NonNull
+    private final Executor learningExecutor;
+
+    private final AtomicReference<LearnedRules> learned = new AtomicReference<>();
+
+    /**
+     * Fetches the settings.
+     *
+     * @return the settings, null if they can't be fetched
+     */
+    @Override
+    @Nullable
+    public WinProxyConfig get() {
+        Map<String, String> settings = WinPowerShellProxySelector.parseMap(settingsCommand.get());
+        if (!settings.containsKey("ProxyEnable")) {
+            return null;
+        }
+        WinProxyConfig result = WinProxyConfig.parse(settings);
+        String url = result.getAutoConfigUrl();
+        if (url == null || result.isAutoDetect()) {
+            return result;
+        }
+        LearnedRules current = learned.get();
+        if (current == null || !current.getUrl().equals(url)) {
+            LearnedRules pending = new LearnedRules(url, null);
+            if (learned.compareAndSet(current, pending)) {
+                learningExecutor.execute(() -> learned.compareAndSet(pending, new LearnedRules(url, rulesLearner.apply(url))));
+            }
+            return result;
+        }
+        return current.getRules() != null ? result.withRules(current.getRules()) : result;
+    }
+
+    @lombok.Value
+    private static class LearnedRules {
+
+        String url;
+
+        @Nullable
+        DomainRules rules;
+    }
+}
@@ -27,7 +27,10 @@ module nbbrd.net.proxy {
     exports nbbrd.net.proxy;
 
     provides nbbrd.net.proxy.SystemProxySelector.Spi with
-            internal.net.proxy.x.WinPowerShellProxySelector;
+            internal.net.proxy.x.PacProxySelector,
+            internal.net.proxy.x.WinPowerShellProxySelector,
+            internal.net.proxy.x.EnvProxySelector,
+            internal.net.proxy.x.DesktopProxySelector;
 
     uses nbbrd.net.proxy.SystemProxySelector.Spi;
 }
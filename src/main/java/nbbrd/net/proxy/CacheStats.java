@@ -0,0 +1,94 @@
+/*
+ * Copyright 2026 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package nbbrd.net.proxy;
+
+import java.util.List;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+/**
+ * Cumulative statistics of a cache used by a proxy provider.
+ *
+ * @author Philippe Charles
+ */
+@lombok.Value
+@lombok.Builder(toBuilder = true)
+public class CacheStats {
+
+    /**
+     * Number of requests that returned a cached value, including stale ones.
+     */
+    long hitCount;
+
+    /**
+     * Number of requests that did not find a usable cached value.
+     */
+    long missCount;
+
+    /**
+     * Number of hits that returned a stale value while it was being reloaded.
+     */
+    long staleCount;
+
+    /**
+     * Number of misses caused by an expired entry.
+     */
+    long expirationCount;
+
+    /**
+     * Number of entries removed or rejected because of the size bound.
+     */
+    long evictionCount;
+
+    /**
+     * Number of misses that got the value loaded concurrently by another
+     * request.
+     */
+    long sharedLoadCount;
+
+    /**
+     * Number of values loaded.
+     */
+    long loadCount;
+
+    /**
+     * Total time spent loading values.
+     */
+    long totalLoadTimeInNanos;
+
+    /**
+     * Load time histogram: the value at index <code>i</code> counts the loads
+     * that took less than 2<sup>i</sup> milliseconds (and at least
+     * 2<sup>i-1</sup>). The last value counts all the slower loads.
+     */
+    @lombok.Singular("loadTimeBucket")
+    @NonNull
+    List<Long> loadTimeHistogram;
+
+    /**
+     * Current number of entries.
+     */
+    long size;
+
+    public long getRequestCount() {
+        return hitCount + missCount;
+    }
+
+    public double getHitRatio() {
+        long requestCount = getRequestCount();
+        return requestCount == 0 ? 1.0 : (double) hitCount / requestCount;
+    }
+}
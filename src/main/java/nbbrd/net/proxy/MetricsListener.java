@@ -0,0 +1,104 @@
+/*
+ * Copyright 2026 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package nbbrd.net.proxy;
+
+import nbbrd.design.ThreadSafe;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+/**
+ * A listener of the timings and counters of a {@link SystemProxySelector}
+ * and its providers, meant to be bridged to a metrics library.
+ * <p>
+ * Methods are called synchronously on the hot paths and must therefore be
+ * fast and thread-safe. Nothing is measured if no listener is set.
+ *
+ * @author Philippe Charles
+ */
+@ThreadSafe
+public interface MetricsListener {
+
+    /**
+     * A listener that ignores everything.
+     */
+    MetricsListener NONE = new MetricsListener() {
+    };
+
+    /**
+     * Called after a provider has resolved one or several URIs.
+     *
+     * @param provider the name of the provider
+     * @param durationInNanos the time spent in the provider
+     */
+    default void onProviderCall(@NonNull String provider, long durationInNanos) {
+    }
+
+    /**
+     * Called when an URI is resolved by the fallback selector.
+     */
+    default void onFallback() {
+    }
+
+    /**
+     * Called on every lookup or change of a cache.
+     *
+     * @param cache the name of the cache
+     * @param event the kind of event
+     */
+    default void onCacheEvent(@NonNull String cache, @NonNull CacheEvent event) {
+    }
+
+    /**
+     * Called after a thread has waited for a shared resource such as a pooled
+     * process.
+     *
+     * @param resource the name of the resource
+     * @param durationInNanos the waiting time
+     */
+    default void onLockWait(@NonNull String resource, long durationInNanos) {
+    }
+
+    /**
+     * Called after a command has been executed by an external process.
+     *
+     * @param resource the name of the resource
+     * @param fallback true if a short-lived process was used instead of a
+     * pooled one
+     * @param durationInNanos the execution time
+     */
+    default void onExecution(@NonNull String resource, boolean fallback, long durationInNanos) {
+    }
+
+    /**
+     * Called when an external process is started.
+     *
+     * @param resource the name of the resource
+     */
+    default void onSpawn(@NonNull String resource) {
+    }
+
+    /**
+     * Called when a command is rejected because no process is available.
+     *
+     * @param resource the name of the resource
+     */
+    default void onRejection(@NonNull String resource) {
+    }
+
+    enum CacheEvent {
+        HIT, MISS, STALE, EXPIRED, EVICTED, SHARED
+    }
+}
@@ -16,21 +16,40 @@
  */
 package nbbrd.net.proxy;
 
+import internal.net.proxy.DefaultExecutor;
 import internal.net.proxy.FailsafeSystemProxySpi;
+import internal.net.proxy.JfrEventType;
+import internal.net.proxy.Origin;
+import internal.net.proxy.PeriodicSnapshot;
+import internal.net.proxy.SelectionCache;
+import internal.net.proxy.StaticProxyConfig;
+import internal.net.proxy.StaticProxyProperties;
 import internal.net.proxy.SystemProxySpiLoader;
 import java.io.IOException;
 import java.net.Proxy;
 import java.net.ProxySelector;
 import java.net.SocketAddress;
 import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Objects;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
 import java.util.function.UnaryOperator;
+import lombok.AccessLevel;
 
 import nbbrd.design.ThreadSafe;
 import nbbrd.service.Quantifier;
 import nbbrd.service.ServiceDefinition;
+import nbbrd.service.ServiceSorter;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
@@ -42,13 +61,40 @@ import org.checkerframework.checker.nullness.qual.Nullable;
 @lombok.Builder(toBuilder = true)
 public final class SystemProxySelector extends ProxySelector {
 
+    private static final String WARM_UP_PROPERTY = "nbbrd.net.proxy.warmUp";
+    private static final int PRELOAD_CHUNK_SIZE = 64;
+    private static final String CACHE_NAME = SystemProxySelector.class.getSimpleName();
+    private static final String FALLBACK_NAME = "fallback";
+
+    private static final JfrEventType SELECTION_EVENT = JfrEventType.of(
+            "nbbrd.net.proxy.Selection", "Proxy Selection",
+            JfrEventType.Field.of("host", String.class),
+            JfrEventType.Field.of("provider", String.class),
+            JfrEventType.Field.of("cached", boolean.class)
+    );
+    private static final int SELECTION_HOST = 0;
+    private static final int SELECTION_PROVIDER = 1;
+    private static final int SELECTION_CACHED = 2;
+
+    /**
+     * Creates a selector from the providers found by the service loader.
+     * Its providers are warmed up in the background if the
+     * <code>nbbrd.net.proxy.warmUp</code> system property is set to
+     * <code>true</code>.
+     *
+     * @return a non-null selector
+     */
     @NonNull
     public static SystemProxySelector ofServiceLoader() {
-        return builder()
+        SystemProxySelector result = builder()
                 .providers(new SystemProxySpiLoader().get())
                 .systemProperties(System::getProperty)
                 .fallback(ProxySelector.getDefault())
                 .build();
+        if (Boolean.getBoolean(WARM_UP_PROPERTY)) {
+            result.warmUp();
+        }
+        return result;
     }
 
     @lombok.Singular
@@ -60,20 +106,254 @@ public final class SystemProxySelector extends ProxySelector {
     @lombok.NonNull
     private final ProxySelector fallback;
 
+    /**
+     * Maximum age of the snapshot of static proxy properties.
+     * Properties are read on every call if zero.
+     */
+    @lombok.NonNull
+    @lombok.Builder.Default
+    private final Duration propertiesCheckInterval = Duration.ofSeconds(1);
+
+    /**
+     * Time-to-live of the selections memoized per (scheme, host, port).
+     * Memoization is disabled if zero.
+     */
+    @lombok.NonNull
+    @lombok.Builder.Default
+    private final Duration cacheTtl = Duration.ZERO;
+
+    @lombok.Builder.Default
+    private final int cacheMaxSize = 1000;
+
+    @lombok.NonNull
+    @lombok.Builder.Default
+    private final LongSupplier nanoClock = System::nanoTime;
+
+    /**
+     * Executor of the asynchronous selections.
+     * Defaults to virtual threads on Java 21+ and to a cached pool of daemon
+     * threads otherwise.
+     */
+    @lombok.NonNull
+    @lombok.Builder.Default
+    private final Executor executor = DefaultExecutor.get();
+
+    /**
+     * Listener of the metrics of this selector and of its providers.
+     */
+    @lombok.NonNull
+    @lombok.Builder.Default
+    private final MetricsListener metricsListener = MetricsListener.NONE;
+
+    @lombok.Getter(value = AccessLevel.PRIVATE, lazy = true)
+    private final SelectionCache cache = initCache();
+
+    @lombok.Getter(value = AccessLevel.PRIVATE, lazy = true)
+    private final PeriodicSnapshot<StaticProxyConfig> properties = initProperties();
+
+    @lombok.Getter(value = AccessLevel.PRIVATE, lazy = true)
+    private final List<String> providerNames = initProviderNames();
+
+    private final AtomicBoolean listenerRegistered = new AtomicBoolean();
+
     @Override
     public List<Proxy> select(URI uri) {
         if (uri == null) {
             throw new IllegalArgumentException("uri");
         }
-        if (hasStaticProxyProperties()) {
-            return fallback.select(uri);
+        JfrEventType.Event event = SELECTION_EVENT.begin();
+        List<Proxy> result = select(uri, event);
+        event.set(SELECTION_HOST, uri.getHost()).commit();
+        return result;
+    }
+
+    private List<Proxy> select(URI uri, JfrEventType.Event event) {
+        StaticProxyConfig config = getProperties().get();
+        if (!config.isEmpty()) {
+            return selectFromStaticConfig(config, uri, event);
+        }
+        SelectionCache cache = getCache();
+        if (cache == null) {
+            return selectFromProviders(uri, event);
+        }
+        List<Proxy> result = cache.getIfPresent(uri);
+        if (result != null) {
+            fireCacheEvent(MetricsListener.CacheEvent.HIT);
+            event.set(SELECTION_CACHED, true);
+            return result;
+        }
+        fireCacheEvent(MetricsListener.CacheEvent.MISS);
+        return cache.put(uri, selectFromProviders(uri, event));
+    }
+
+    /**
+     * Selects the proxies of an URI without blocking the calling thread.
+     * Providers are called on the configured executor.
+     *
+     * @param uri a non-null URI
+     * @return a non-null future of the proxies
+     */
+    @NonNull
+    public CompletableFuture<List<Proxy>> selectAsync(@NonNull URI uri) {
+        if (uri == null) {
+            throw new IllegalArgumentException("uri");
+        }
+        StaticProxyConfig config = getProperties().get();
+        if (!config.isEmpty()) {
+            return CompletableFuture.completedFuture(selectFromStaticConfig(config, uri, JfrEventType.Event.NONE));
+        }
+        SelectionCache cache = getCache();
+        if (cache == null) {
+            return selectFromProvidersAsync(uri, 0);
+        }
+        List<Proxy> result = cache.getIfPresent(uri);
+        if (result != null) {
+            fireCacheEvent(MetricsListener.CacheEvent.HIT);
+            return CompletableFuture.completedFuture(result);
+        }
+        fireCacheEvent(MetricsListener.CacheEvent.MISS);
+        return selectFromProvidersAsync(uri, 0).thenApply(proxies -> cache.put(uri, proxies));
+    }
+
+    private CompletableFuture<List<Proxy>> selectFromProvidersAsync(URI uri, int index) {
+        if (index >= providers.size()) {
+            return CompletableFuture.completedFuture(selectFromFallback(uri));
+        }
+        CompletableFuture<Proxy> future;
+        if (isObserved()) {
+            String name = getProviderNames().get(index);
+            long start = nanoClock.getAsLong();
+            future = providers.get(index)
+                    .getProxyOrNullAsync(uri, executor)
+                    .whenComplete((proxy, ex) -> metricsListener.onProviderCall(name, nanoClock.getAsLong() - start));
+        } else {
+            future = providers.get(index).getProxyOrNullAsync(uri, executor);
+        }
+        return future
+                .thenCompose(proxy -> proxy != null
+                ? CompletableFuture.completedFuture(Collections.singletonList(proxy))
+                : selectFromProvidersAsync(uri, index + 1));
+    }
+
+    /**
+     * Selects the proxies of several URIs at once.
+     * <p>
+     * The static proxy properties are checked once, URIs sharing the same
+     * scheme, host and port are resolved once and providers that support it
+     * resolve the remaining URIs in a single batch.
+     *
+     * @param uris a non-null collection of non-null URIs
+     * @return a non-null unmodifiable map of proxies by URI
+     */
+    @NonNull
+    public Map<URI, List<Proxy>> selectAll(@NonNull Collection<URI> uris) {
+        Map<Origin, URI> origins = new LinkedHashMap<>();
+        for (URI uri : uris) {
+            if (uri == null) {
+                throw new IllegalArgumentException("uri");
+            }
+            origins.putIfAbsent(Origin.of(uri), uri);
+        }
+        StaticProxyConfig config = getProperties().get();
+        Map<URI, List<Proxy>> selections = !config.isEmpty()
+                ? selectAllFromStaticConfig(config, origins.values())
+                : selectAllFromCacheOrProviders(origins.values());
+        Map<URI, List<Proxy>> result = new LinkedHashMap<>();
+        for (URI uri : uris) {
+            result.put(uri, selections.get(origins.get(Origin.of(uri))));
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    private Map<URI, List<Proxy>> selectAllFromStaticConfig(StaticProxyConfig config, Collection<URI> uris) {
+        Map<URI, List<Proxy>> result = new HashMap<>();
+        uris.forEach(uri -> result.put(uri, selectFromStaticConfig(config, uri, JfrEventType.Event.NONE)));
+        return result;
+    }
+
+    private List<Proxy> selectFromStaticConfig(StaticProxyConfig config, URI uri, JfrEventType.Event event) {
+        List<Proxy> result = config.select(uri);
+        if (result != null) {
+            event.set(SELECTION_PROVIDER, StaticProxyConfig.class.getSimpleName());
+            return result;
+        }
+        event.set(SELECTION_PROVIDER, FALLBACK_NAME);
+        return selectFromFallback(uri);
+    }
+
+    private Map<URI, List<Proxy>> selectAllFromCacheOrProviders(Collection<URI> uris) {
+        SelectionCache cache = getCache();
+        if (cache == null) {
+            return selectAllFromProviders(uris);
+        }
+        Map<URI, List<Proxy>> result = new HashMap<>();
+        List<URI> misses = new ArrayList<>();
+        for (URI uri : uris) {
+            List<Proxy> proxies = cache.getIfPresent(uri);
+            if (proxies != null) {
+                fireCacheEvent(MetricsListener.CacheEvent.HIT);
+                result.put(uri, proxies);
+            } else {
+                fireCacheEvent(MetricsListener.CacheEvent.MISS);
+                misses.add(uri);
+            }
+        }
+        if (!misses.isEmpty()) {
+            selectAllFromProviders(misses).forEach((uri, proxies) -> result.put(uri, cache.put(uri, proxies)));
+        }
+        return result;
+    }
+
+    private Map<URI, List<Proxy>> selectAllFromProviders(Collection<URI> uris) {
+        Map<URI, List<Proxy>> result = new HashMap<>();
+        List<URI> remaining = new ArrayList<>(uris);
+        boolean observed = isObserved();
+        for (int i = 0; i < providers.size(); i++) {
+            if (remaining.isEmpty()) {
+                break;
+            }
+            long start = observed ? nanoClock.getAsLong() : 0;
+            Map<URI, Proxy> proxies = providers.get(i).getProxies(remaining);
+            if (observed) {
+                metricsListener.onProviderCall(getProviderNames().get(i), nanoClock.getAsLong() - start);
+            }
+            remaining.removeIf(uri -> {
+                Proxy proxy = proxies.get(uri);
+                if (proxy != null) {
+                    result.put(uri, Collections.singletonList(proxy));
+                    return true;
+                }
+                return false;
+            });
+        }
+        remaining.forEach(uri -> result.put(uri, selectFromFallback(uri)));
+        return result;
+    }
+
+    private List<Proxy> selectFromProviders(URI uri, JfrEventType.Event event) {
+        boolean observed = isObserved();
+        for (int i = 0; i < providers.size(); i++) {
+            long start = observed ? nanoClock.getAsLong() : 0;
+            Proxy proxy = providers.get(i).getProxyOrNull(uri);
+            if (observed) {
+                metricsListener.onProviderCall(getProviderNames().get(i), nanoClock.getAsLong() - start);
+            }
+            if (proxy != null) {
+                if (event.isEnabled()) {
+                    event.set(SELECTION_PROVIDER, getProviderNames().get(i));
+                }
+                return Collections.singletonList(proxy);
+            }
+        }
+        event.set(SELECTION_PROVIDER, FALLBACK_NAME);
+        return selectFromFallback(uri);
+    }
+
+    private List<Proxy> selectFromFallback(URI uri) {
+        if (metricsListener != MetricsListener.NONE) {
+            metricsListener.onFallback();
         }
-        return providers.stream()
-                .map(provider -> provider.getProxyOrNull(uri))
-                .filter(Objects::nonNull)
-                .findFirst()
-                .map(Collections::singletonList)
-                .orElseGet(() -> fallback.select(uri));
+        return fallback.select(uri);
     }
 
     @Override
@@ -81,16 +361,109 @@ public final class SystemProxySelector extends ProxySelector {
         fallback.connectFailed(uri, sa, ioe);
     }
 
-    private boolean hasStaticProxyProperties() {
-        return hasProperty("https.proxyPort")
-                || hasProperty("https.proxyHost")
-                || hasProperty("http.proxyPort")
-                || hasProperty("http.proxyHost")
-                || hasProperty("http.nonProxyHosts");
+    /**
+     * Gets the statistics of the caches used by the providers, by name.
+     *
+     * @return a non-null unmodifiable map
+     */
+    @NonNull
+    public Map<String, CacheStats> getCacheStats() {
+        Map<String, CacheStats> result = new LinkedHashMap<>();
+        providers.forEach(provider -> result.putAll(provider.getCacheStats()));
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Starts the resources of the providers, such as external processes or
+     * configuration parsing, on the executor so that the first selections
+     * find them ready.
+     *
+     * @return a non-null future completed when all providers are warmed up
+     */
+    @NonNull
+    public CompletableFuture<Void> warmUp() {
+        registerListener();
+        return CompletableFuture.allOf(providers
+                .stream()
+                .map(provider -> CompletableFuture.runAsync(provider::warmUp, executor))
+                .toArray(CompletableFuture[]::new));
+    }
+
+    /**
+     * Resolves a known list of URIs ahead of the traffic in order to fill the
+     * caches of the selector and its providers. URIs are deduplicated by
+     * origin and resolved in parallel chunks on the executor.
+     *
+     * @param uris a non-null collection of non-null URIs
+     * @return a non-null future completed when all URIs are resolved
+     */
+    @NonNull
+    public CompletableFuture<Void> preload(@NonNull Collection<URI> uris) {
+        Map<Origin, URI> origins = new LinkedHashMap<>();
+        for (URI uri : uris) {
+            if (uri == null) {
+                throw new IllegalArgumentException("uri");
+            }
+            origins.putIfAbsent(Origin.of(uri), uri);
+        }
+        List<URI> list = new ArrayList<>(origins.values());
+        List<CompletableFuture<?>> chunks = new ArrayList<>();
+        for (int i = 0; i < list.size(); i += PRELOAD_CHUNK_SIZE) {
+            List<URI> chunk = list.subList(i, Math.min(i + PRELOAD_CHUNK_SIZE, list.size()));
+            chunks.add(CompletableFuture.runAsync(() -> selectAll(chunk), executor));
+        }
+        return CompletableFuture.allOf(chunks.toArray(new CompletableFuture[0]));
+    }
+
+    /**
+     * Reloads the static proxy properties without waiting for the end of
+     * the check interval.
+     */
+    public void refresh() {
+        getProperties().refresh();
+    }
+
+    private SelectionCache initCache() {
+        return cacheTtl.isZero() || cacheTtl.isNegative() ? null : new SelectionCache(cacheTtl.toNanos(), cacheMaxSize, nanoClock);
     }
 
-    private boolean hasProperty(String property) {
-        return systemProperties.apply(property) != null;
+    private List<String> initProviderNames() {
+        List<String> result = new ArrayList<>();
+        for (Spi provider : providers) {
+            result.add(FailsafeSystemProxySpi.getName(provider));
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * Registers the listener to the providers once, if a listener is set.
+     */
+    private void registerListener() {
+        if (metricsListener != MetricsListener.NONE && !listenerRegistered.get() && listenerRegistered.compareAndSet(false, true)) {
+            providers.forEach(provider -> provider.addListener(metricsListener));
+        }
+    }
+
+    private boolean isObserved() {
+        if (metricsListener == MetricsListener.NONE) {
+            return false;
+        }
+        registerListener();
+        return true;
+    }
+
+    private void fireCacheEvent(MetricsListener.CacheEvent event) {
+        if (metricsListener != MetricsListener.NONE) {
+            metricsListener.onCacheEvent(CACHE_NAME, event);
+        }
+    }
+
+    private PeriodicSnapshot<StaticProxyConfig> initProperties() {
+        AtomicReference<StaticProxyConfig> last = new AtomicReference<>();
+        return new PeriodicSnapshot<>(() -> last.updateAndGet(config -> {
+            StaticProxyProperties properties = StaticProxyProperties.load(systemProperties);
+            return config != null ? config.update(properties) : StaticProxyConfig.compile(properties);
+        }), propertiesCheckInterval.toNanos(), nanoClock);
     }
 
     @ThreadSafe
@@ -102,5 +475,75 @@ public final class SystemProxySelector extends ProxySelector {
 
         @Nullable
         Proxy getProxyOrNull(@NonNull URI uri);
+
+        /**
+         * Gets the proxy of an URI without blocking the calling thread.
+         * <p>
+         * The default implementation calls {@link #getProxyOrNull(URI)} on
+         * the specified executor.
+         *
+         * @param uri a non-null URI
+         * @param executor a non-null executor for blocking work
+         * @return a non-null future of a nullable proxy
+         */
+        @NonNull
+        default CompletableFuture<Proxy> getProxyOrNullAsync(@NonNull URI uri, @NonNull Executor executor) {
+            return CompletableFuture.supplyAsync(() -> getProxyOrNull(uri), executor);
+        }
+
+        /**
+         * Gets the proxies of several URIs at once. URIs without proxy are
+         * absent from the result.
+         * <p>
+         * The default implementation calls {@link #getProxyOrNull(URI)} for
+         * each URI; providers that can resolve URIs in bulk should override it.
+         *
+         * @param uris a non-null list of non-null URIs
+         * @return a non-null map of proxies by URI
+         */
+        @NonNull
+        default Map<URI, Proxy> getProxies(@NonNull List<URI> uris) {
+            Map<URI, Proxy> result = new HashMap<>();
+            for (URI uri : uris) {
+                Proxy proxy = getProxyOrNull(uri);
+                if (proxy != null) {
+                    result.put(uri, proxy);
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Starts the resources needed by this provider ahead of the first
+         * call. Does nothing by default.
+         */
+        default void warmUp() {
+        }
+
+        @NonNull
+        default Map<String, CacheStats> getCacheStats() {
+            return Collections.emptyMap();
+        }
+
+        /**
+         * Registers a listener of the internal metrics of this provider, such
+         * as its cache events or its external processes. Does nothing by
+         * default.
+         *
+         * @param listener a non-null listener
+         */
+        default void addListener(@NonNull MetricsListener listener) {
+        }
+
+        /**
+         * Gets the precedence of this provider among the ones found by the
+         * service loader, the highest being asked first. Zero by default.
+         *
+         * @return a priority
+         */
+        @ServiceSorter(reverse = true)
+        default int getPriority() {
+            return 0;
+        }
     }
 }
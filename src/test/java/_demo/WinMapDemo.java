@@ -19,6 +19,7 @@ package _demo;
 import internal.net.proxy.x.WinPowerShellProxySelector;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.Collections;
 
 /**
  *
@@ -29,6 +30,6 @@ public final class WinMapDemo {
     public static void main(String[] args) throws URISyntaxException {
         URI uri = new URI("https://www.nbb.be");
 
-        System.out.println(new WinPowerShellProxySelector.GetSystemWebProxyCommand().apply(uri));
+        System.out.println(new WinPowerShellProxySelector.GetSystemWebProxyCommand().apply(Collections.singletonList(uri)));
     }
 }
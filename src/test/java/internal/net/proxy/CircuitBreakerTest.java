@@ -0,0 +1,112 @@
+/*
+ * Copyright 2026 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package internal.net.proxy;
+
+import internal.net.proxy.CircuitBreaker.Permit;
+import internal.net.proxy.CircuitBreaker.State;
+import internal.net.proxy.CircuitBreaker.Transition;
+import java.util.concurrent.atomic.AtomicLong;
+import static org.assertj.core.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Philippe Charles
+ */
+public class CircuitBreakerTest {
+
+    @Test
+    public void testFailures() {
+        AtomicLong clock = new AtomicLong();
+        CircuitBreaker x = CircuitBreaker
+                .builder()
+                .failureThreshold(2)
+                .coolDownInNanos(100)
+                .clock(clock::get)
+                .build();
+
+        assertThat(x.tryAcquire()).isEqualTo(Permit.CALL);
+        assertThat(x.onFailure(Permit.CALL)).isEqualTo(Transition.NONE);
+        assertThat(x.onSuccess(Permit.CALL, 0)).isEqualTo(Transition.NONE);
+        assertThat(x.onFailure(Permit.CALL)).isEqualTo(Transition.NONE);
+        assertThat(x.getState()).isEqualTo(State.CLOSED);
+
+        assertThat(x.onFailure(Permit.CALL)).isEqualTo(Transition.OPENED);
+        assertThat(x.getState()).isEqualTo(State.OPEN);
+        assertThat(x.tryAcquire()).isEqualTo(Permit.DENIED);
+
+        clock.addAndGet(100);
+        assertThat(x.getState()).isEqualTo(State.HALF_OPEN);
+        assertThat(x.tryAcquire()).isEqualTo(Permit.PROBE);
+        assertThat(x.tryAcquire()).as("single probe").isEqualTo(Permit.DENIED);
+        assertThat(x.onFailure(Permit.PROBE)).isEqualTo(Transition.REOPENED);
+        x.release(Permit.PROBE);
+        assertThat(x.getState()).isEqualTo(State.OPEN);
+
+        clock.addAndGet(100);
+        assertThat(x.tryAcquire()).isEqualTo(Permit.PROBE);
+        assertThat(x.onSuccess(Permit.PROBE, 0)).isEqualTo(Transition.CLOSED);
+        x.release(Permit.PROBE);
+        assertThat(x.getState()).isEqualTo(State.CLOSED);
+        assertThat(x.getConsecutiveFailures()).isZero();
+        assertThat(x.tryAcquire()).isEqualTo(Permit.CALL);
+    }
+
+    @Test
+    public void testOnlyProbeChangesOpenState() {
+        AtomicLong clock = new AtomicLong();
+        CircuitBreaker x = CircuitBreaker
+                .builder()
+                .failureThreshold(1)
+                .coolDownInNanos(100)
+                .clock(clock::get)
+                .build();
+
+        assertThat(x.onFailure(Permit.CALL)).isEqualTo(Transition.OPENED);
+
+        // late outcomes of calls that started before the circuit opened
+        assertThat(x.onSuccess(Permit.CALL, 0)).isEqualTo(Transition.NONE);
+        assertThat(x.onFailure(Permit.CALL)).isEqualTo(Transition.NONE);
+        assertThat(x.getState()).isEqualTo(State.OPEN);
+
+        clock.addAndGet(100);
+        assertThat(x.tryAcquire()).isEqualTo(Permit.PROBE);
+        assertThat(x.onSuccess(Permit.CALL, 0)).isEqualTo(Transition.NONE);
+        assertThat(x.getState()).isEqualTo(State.HALF_OPEN);
+
+        // a probe that ends abruptly lets another caller probe
+        x.release(Permit.PROBE);
+        assertThat(x.tryAcquire()).isEqualTo(Permit.PROBE);
+    }
+
+    @Test
+    public void testSlowCalls() {
+        AtomicLong clock = new AtomicLong();
+        CircuitBreaker x = CircuitBreaker
+                .builder()
+                .failureThreshold(2)
+                .slowCallThresholdInNanos(10)
+                .coolDownInNanos(100)
+                .clock(clock::get)
+                .build();
+
+        assertThat(x.onSuccess(Permit.CALL, 9)).isEqualTo(Transition.NONE);
+        assertThat(x.onSuccess(Permit.CALL, 10)).isEqualTo(Transition.NONE);
+        assertThat(x.onSuccess(Permit.CALL, 10)).isEqualTo(Transition.OPENED);
+        assertThat(x.tryAcquire()).isEqualTo(Permit.DENIED);
+    }
+}
@@ -21,9 +21,19 @@ import java.net.InetSocketAddress;
 import java.net.Proxy;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.BiConsumer;
+import java.util.logging.Level;
+import nbbrd.net.proxy.SystemProxySelector;
 import static org.assertj.core.api.Assertions.*;
 import org.junit.jupiter.api.Test;
 
@@ -63,6 +73,163 @@ public class FailsafeSystemProxySpiTest {
         assertThat(errorStack).hasSize(1);
     }
 
+    @Test
+    public void testGetProxyOrNullAsync() throws URISyntaxException {
+        URI uri = new URI("https://www.nbb.be");
+
+        Queue<Exception> errorStack = new LinkedList<>();
+        BiConsumer<String, Exception> pushError = (m, e) -> errorStack.add(e);
+
+        assertThatNullPointerException()
+                .isThrownBy(() -> new FailsafeSystemProxySpi(this::pass, pushError).getProxyOrNullAsync(null, Runnable::run));
+        assertThatNullPointerException()
+                .isThrownBy(() -> new FailsafeSystemProxySpi(this::pass, pushError).getProxyOrNullAsync(uri, null));
+        assertThat(errorStack).isEmpty();
+
+        assertThat(new FailsafeSystemProxySpi(this::pass, pushError).getProxyOrNullAsync(uri, Runnable::run)).isCompletedWithValue(mainProxy);
+        assertThat(errorStack).isEmpty();
+
+        assertThat(new FailsafeSystemProxySpi(this::fail, pushError).getProxyOrNullAsync(uri, Runnable::run)).isCompletedWithValue(null);
+        assertThat(errorStack).hasSize(1).element(0).extracting(Exception::getMessage).isEqualTo("boom");
+    }
+
+    @Test
+    public void testGetProxies() throws URISyntaxException {
+        List<URI> uris = Collections.singletonList(new URI("https://www.nbb.be"));
+
+        Queue<Exception> errorStack = new LinkedList<>();
+        BiConsumer<String, Exception> pushError = (m, e) -> errorStack.add(e);
+
+        assertThatNullPointerException()
+                .isThrownBy(() -> new FailsafeSystemProxySpi(this::pass, pushError).getProxies(null));
+        assertThat(errorStack).isEmpty();
+
+        assertThat(new FailsafeSystemProxySpi(this::pass, pushError).getProxies(uris)).containsOnly(entry(uris.get(0), mainProxy));
+        assertThat(errorStack).isEmpty();
+
+        assertThat(new FailsafeSystemProxySpi(this::fail, pushError).getProxies(uris)).isEmpty();
+        assertThat(errorStack).hasSize(1);
+    }
+
+    @Test
+    public void testWarmUp() {
+        Queue<Exception> errorStack = new LinkedList<>();
+        BiConsumer<String, Exception> pushError = (m, e) -> errorStack.add(e);
+
+        new FailsafeSystemProxySpi(new SystemProxySelector.Spi() {
+            @Override
+            public Proxy getProxyOrNull(URI uri) {
+                return null;
+            }
+
+            @Override
+            public void warmUp() {
+                throw new RuntimeException("boom");
+            }
+        }, pushError).warmUp();
+        assertThat(errorStack).hasSize(1);
+    }
+
+    @Test
+    public void testCircuitBreaker() throws URISyntaxException {
+        URI uri = new URI("https://www.nbb.be");
+        AtomicLong clock = new AtomicLong();
+        AtomicInteger calls = new AtomicInteger();
+        AtomicBoolean broken = new AtomicBoolean(true);
+        List<String> reports = new ArrayList<>();
+
+        FailsafeSystemProxySpi x = new FailsafeSystemProxySpi(o -> {
+            calls.incrementAndGet();
+            if (broken.get()) {
+                throw new RuntimeException("boom");
+            }
+            return mainProxy;
+        }, (m, e) -> reports.add(summarize(m)),
+                (l, m) -> reports.add(l + " " + m.substring(0, m.indexOf(' '))),
+                CircuitBreaker.builder().failureThreshold(3).coolDownInNanos(100).clock(clock::get).build());
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(x.getProxyOrNull(uri)).isNull();
+        }
+        assertThat(calls).hasValue(3);
+        assertThat(reports).containsExactly("error", "WARNING Skipping");
+
+        clock.addAndGet(100);
+        assertThat(x.getProxyOrNull(uri)).isNull();
+        assertThat(x.getProxies(Collections.singletonList(uri))).isEmpty();
+        assertThat(calls).hasValue(4);
+        assertThat(reports).containsExactly("error", "WARNING Skipping");
+
+        clock.addAndGet(100);
+        broken.set(false);
+        // asynchronous calls don't probe
+        assertThat(x.getProxyOrNullAsync(uri, Runnable::run)).isCompletedWithValue(null);
+        assertThat(calls).hasValue(4);
+        assertThat(x.getProxyOrNull(uri)).isEqualTo(mainProxy);
+        assertThat(x.getProxyOrNullAsync(uri, Runnable::run)).isCompletedWithValue(mainProxy);
+        assertThat(calls).hasValue(6);
+        assertThat(reports).containsExactly("error", "WARNING Skipping", "INFO Resuming");
+
+        broken.set(true);
+        assertThat(x.getProxyOrNull(uri)).isNull();
+        assertThat(reports).containsExactly("error", "WARNING Skipping", "INFO Resuming");
+
+        clock.addAndGet(TimeUnit.MINUTES.toNanos(1));
+        assertThat(x.getProxyOrNull(uri)).isNull();
+        assertThat(reports).containsExactly("error", "WARNING Skipping", "INFO Resuming", "error (3 similar errors suppressed)");
+    }
+
+    @Test
+    public void testCircuitBreakerProbeError() throws URISyntaxException {
+        URI uri = new URI("https://www.nbb.be");
+        AtomicLong clock = new AtomicLong();
+        AtomicInteger calls = new AtomicInteger();
+
+        FailsafeSystemProxySpi x = new FailsafeSystemProxySpi(o -> {
+            if (calls.incrementAndGet() == 2) {
+                throw new AssertionError("boom");
+            }
+            throw new RuntimeException("boom");
+        }, this::doNothing, this::doNothing,
+                CircuitBreaker.builder().failureThreshold(1).coolDownInNanos(100).clock(clock::get).build());
+
+        assertThat(x.getProxyOrNull(uri)).isNull();
+        clock.addAndGet(100);
+        assertThatExceptionOfType(AssertionError.class).isThrownBy(() -> x.getProxyOrNull(uri));
+        assertThat(x.getProxyOrNull(uri)).isNull();
+        assertThat(calls).hasValue(3);
+    }
+
+    @Test
+    public void testCircuitBreakerBatch() throws URISyntaxException {
+        List<URI> uris = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            uris.add(new URI("https://host" + i));
+        }
+        AtomicLong clock = new AtomicLong();
+        AtomicInteger calls = new AtomicInteger();
+
+        FailsafeSystemProxySpi x = new FailsafeSystemProxySpi(new SystemProxySelector.Spi() {
+            @Override
+            public Proxy getProxyOrNull(URI uri) {
+                return mainProxy;
+            }
+
+            @Override
+            public Map<URI, Proxy> getProxies(List<URI> uris) {
+                calls.incrementAndGet();
+                clock.addAndGet(50L * uris.size());
+                return Collections.emptyMap();
+            }
+        }, this::doNothing, this::doNothing,
+                CircuitBreaker.builder().failureThreshold(1).slowCallThresholdInNanos(100).clock(clock::get).build());
+
+        // each batch lasts longer than the threshold but not its average call
+        x.getProxies(uris);
+        x.getProxies(uris);
+        assertThat(calls).hasValue(2);
+    }
+
     @Test
     public void testLogUnexpectedError() throws URISyntaxException {
         URI uri = new URI("https://www.nbb.be");
@@ -90,4 +257,12 @@ public class FailsafeSystemProxySpiTest {
 
     private void doNothing(String msg, Exception ex) {
     }
+
+    private void doNothing(Level level, String msg) {
+    }
+
+    private static String summarize(String msg) {
+        int suppressed = msg.lastIndexOf(" (");
+        return suppressed != -1 ? "error" + msg.substring(suppressed) : "error";
+    }
 }
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2026 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package internal.net.proxy;
+
+import static org.assertj.core.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Philippe Charles
+ */
+public class HostMatcherTest {
+
+    @Test
+    public void testDomains() {
+        HostMatcher x = HostMatcher
+                .builder()
+                .domain("example.com")
+                .exact("localhost")
+                .subdomains("intra.net")
+                .build();
+
+        assertThat(x.isEmpty()).isFalse();
+        assertThat(x.matches("example.com")).isTrue();
+        assertThat(x.matches("www.Example.COM")).isTrue();
+        assertThat(x.matches("a.b.example.com.")).isTrue();
+        assertThat(x.matches("badexample.com")).isFalse();
+        assertThat(x.matches("com")).isFalse();
+        assertThat(x.matches("localhost")).isTrue();
+        assertThat(x.matches("a.localhost")).isFalse();
+        assertThat(x.matches("intra.net")).isFalse();
+        assertThat(x.matches("host.intra.net")).isTrue();
+        assertThat(x.matches("")).isFalse();
+    }
+
+    @Test
+    public void testRanges() {
+        HostMatcher x = HostMatcher
+                .builder()
+                .range("10.0.0.0/8")
+                .range("192.168.1.0/25")
+                .range("fd00::/8")
+                .exact("127.0.0.1")
+                .build();
+
+        assertThat(x.matches("10.255.0.1")).isTrue();
+        assertThat(x.matches("11.0.0.1")).isFalse();
+        assertThat(x.matches("192.168.1.127")).isTrue();
+        assertThat(x.matches("192.168.1.128")).isFalse();
+        assertThat(x.matches("[fd12::1]")).isTrue();
+        assertThat(x.matches("fe80::1")).isFalse();
+        assertThat(x.matches("127.0.0.1")).isTrue();
+        assertThat(x.matches("127.0.0.2")).isFalse();
+        assertThat(x.matches("10.example.com")).isFalse();
+
+        assertThatIllegalArgumentException().isThrownBy(() -> HostMatcher.builder().range("host/8"));
+        assertThatIllegalArgumentException().isThrownBy(() -> HostMatcher.builder().range("10.0.0.0/33"));
+        assertThatIllegalArgumentException().isThrownBy(() -> HostMatcher.builder().range("10.0.0.0/x"));
+    }
+
+    @Test
+    public void testWildcards() {
+        HostMatcher x = HostMatcher
+                .builder()
+                .wildcard("*.example.com")
+                .wildcard("192.168.*")
+                .wildcard("*internal*")
+                .wildcard("Host")
+                .build();
+
+        assertThat(x.matches("www.example.com")).isTrue();
+        assertThat(x.matches("example.com")).isFalse();
+        assertThat(x.matches("192.168.0.1")).isTrue();
+        assertThat(x.matches("my-internal-host")).isTrue();
+        assertThat(x.matches("host")).isTrue();
+        assertThat(x.matches("other")).isFalse();
+
+        assertThat(HostMatcher.builder().wildcard("*").build().matches("anything")).isTrue();
+    }
+
+    @Test
+    public void testEmpty() {
+        assertThat(HostMatcher.NONE.isEmpty()).isTrue();
+        assertThat(HostMatcher.NONE.matches("localhost")).isFalse();
+        assertThat(HostMatcher.builder().any().build().matches("localhost")).isTrue();
+    }
+
+    @Test
+    public void testParseIpLiteral() {
+        assertThat(HostMatcher.parseIpLiteral("1.2.3.4")).containsExactly(1, 2, 3, 4);
+        assertThat(HostMatcher.parseIpLiteral("[::1]")).hasSize(16);
+        assertThat(HostMatcher.parseIpLiteral("1.2.3")).isNull();
+        assertThat(HostMatcher.parseIpLiteral("localhost")).isNull();
+        assertThat(HostMatcher.parseIpLiteral("::zz")).isNull();
+
+        assertThat(HostMatcher.parseIpLiteral("0.0.0.0")).containsExactly(0, 0, 0, 0);
+        assertThat(HostMatcher.parseIpLiteral("255.255.255.255")).containsExactly(-1, -1, -1, -1);
+        assertThat(HostMatcher.parseIpLiteral("999.1.1.1")).isNull();
+        assertThat(HostMatcher.parseIpLiteral("256.1.1.1")).isNull();
+        assertThat(HostMatcher.parseIpLiteral("1..2.3")).isNull();
+        assertThat(HostMatcher.parseIpLiteral("1.2.3.4.")).isNull();
+        assertThat(HostMatcher.parseIpLiteral(".1.2.3")).isNull();
+        assertThat(HostMatcher.parseIpLiteral("1.2.3.4.5")).isNull();
+        assertThat(HostMatcher.parseIpLiteral("0001.2.3.4")).isNull();
+        assertThat(HostMatcher.parseIpLiteral("1.2.3.-4")).isNull();
+        assertThat(HostMatcher.parseIpLiteral("")).isNull();
+
+        assertThat(HostMatcher.parseIpLiteral("::")).containsExactly(new byte[16]);
+        assertThat(HostMatcher.parseIpLiteral("::1")).containsExactly(0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1);
+        assertThat(HostMatcher.parseIpLiteral("fd00::")).containsExactly(0xfd - 256, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0);
+        assertThat(HostMatcher.parseIpLiteral("1:2:3:4:5:6:7:8")).containsExactly(0, 1, 0, 2, 0, 3, 0, 4, 0, 5, 0, 6, 0, 7, 0, 8);
+        assertThat(HostMatcher.parseIpLiteral("1::7:8")).containsExactly(0, 1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 7, 0, 8);
+        assertThat(HostMatcher.parseIpLiteral("::ffff:1.2.3.4")).containsExactly(0, 0, 0, 0, 0, 0, 0, 0, 0, 0, -1, -1, 1, 2, 3, 4);
+        assertThat(HostMatcher.parseIpLiteral("fe80::1%eth0")).hasSize(16);
+        assertThat(HostMatcher.parseIpLiteral("1:2:3:4:5:6:7")).isNull();
+        assertThat(HostMatcher.parseIpLiteral("1:2:3:4:5:6:7:8:9")).isNull();
+        assertThat(HostMatcher.parseIpLiteral("1:2:3:4:5:6:7::8")).isNull();
+        assertThat(HostMatcher.parseIpLiteral("1::2::3")).isNull();
+        assertThat(HostMatcher.parseIpLiteral("1:::2")).isNull();
+        assertThat(HostMatcher.parseIpLiteral(":1::")).isNull();
+        assertThat(HostMatcher.parseIpLiteral("1:2:")).isNull();
+        assertThat(HostMatcher.parseIpLiteral("12345::")).isNull();
+        assertThat(HostMatcher.parseIpLiteral("::1.2.3")).isNull();
+        assertThat(HostMatcher.parseIpLiteral("::999.1.1.1")).isNull();
+        assertThat(HostMatcher.parseIpLiteral("[::1")).isNull();
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2026 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package internal.net.proxy;
+
+import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import static org.assertj.core.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ *
+ * @author Philippe Charles
+ */
+public class JfrEventTypeTest {
+
+    @Test
+    public void testRecording(@TempDir Path dir) throws Exception {
+        JfrEventType x = JfrEventType.of("nbbrd.net.proxy.Test", "Test",
+                JfrEventType.Field.of("host", String.class),
+                JfrEventType.Field.timespan("wait")
+        );
+
+        assertThat(x.isEnabled()).isFalse();
+        assertThat(x.begin()).isSameAs(JfrEventType.Event.NONE);
+
+        // jdk.jfr is not read by the module under test, hence the reflection
+        Path file = dir.resolve("test.jfr");
+        Object recording = Class.forName("jdk.jfr.Recording").getConstructor().newInstance();
+        try {
+            invoke(recording, "enable", "nbbrd.net.proxy.Test");
+            invoke(recording, "start");
+            assertThat(x.isEnabled()).isTrue();
+            JfrEventType.Event event = x.begin();
+            assertThat(event.isEnabled()).isTrue();
+            event.set(0, "www.nbb.be").set(1, 42L).commit();
+            invoke(recording, "stop");
+            invoke(recording, "dump", file);
+        } finally {
+            invoke(recording, "close");
+        }
+
+        List<?> events = (List<?>) Class.forName("jdk.jfr.consumer.RecordingFile").getMethod("readAllEvents", Path.class).invoke(null, file);
+        assertThat(events).hasSize(1);
+        assertThat(invoke(events.get(0), "getString", "host")).isEqualTo("www.nbb.be");
+        assertThat(invoke(events.get(0), "getDuration", "wait")).isEqualTo(Duration.ofNanos(42));
+    }
+
+    private static Object invoke(Object target, String name, Object... args) throws Exception {
+        for (Method method : target.getClass().getMethods()) {
+            if (method.getName().equals(name) && accepts(method.getParameterTypes(), args)) {
+                return method.invoke(target, args);
+            }
+        }
+        throw new NoSuchMethodException(name);
+    }
+
+    private static boolean accepts(Class<?>[] types, Object[] args) {
+        if (types.length != args.length) {
+            return false;
+        }
+        for (int i = 0; i < types.length; i++) {
+            if (!types[i].isInstance(args[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
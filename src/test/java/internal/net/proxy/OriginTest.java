@@ -0,0 +1,59 @@
+/*
+ * Copyright 2026 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package internal.net.proxy;
+
+import java.net.URI;
+import static org.assertj.core.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Philippe Charles
+ */
+public class OriginTest {
+
+    @Test
+    public void testOf() {
+        Origin x = Origin.of(URI.create("HTTPS://WWW.NBB.BE/a?b"));
+        assertThat(x.getScheme()).isEqualTo("https");
+        assertThat(x.getHost()).isEqualTo("www.nbb.be");
+        assertThat(x.getPort()).isEqualTo(443);
+        assertThat(x).hasToString("https://www.nbb.be:443");
+
+        assertThat(Origin.of(URI.create("custom://host")).getPort()).isEqualTo(-1);
+        assertThat(Origin.of(URI.create("Custom://host")).getScheme()).isEqualTo("custom");
+        assertThat(Origin.of(URI.create("mailto:someone@nbb.be")).getHost()).isNull();
+    }
+
+    @Test
+    public void testEquals() {
+        assertThat(Origin.of(URI.create("http://www.nbb.be")))
+                .isEqualTo(Origin.of(URI.create("http://www.nbb.be/x")))
+                .isEqualTo(Origin.of(URI.create("HTTP://WWW.nbb.be:80")))
+                .hasSameHashCodeAs(Origin.of(URI.create("HTTP://WWW.nbb.be:80")))
+                .isNotEqualTo(Origin.of(URI.create("https://www.nbb.be")))
+                .isNotEqualTo(Origin.of(URI.create("http://www.nbb.be:8080")))
+                .isNotEqualTo(Origin.of(URI.create("http://nbb.be")));
+
+        assertThat(Origin.of(URI.create("custom://host")))
+                .isEqualTo(Origin.of(URI.create("CUSTOM://host")))
+                .isNotEqualTo(Origin.of(URI.create("other://host")));
+
+        assertThat(Origin.of(URI.create("mailto:a@nbb.be")))
+                .isEqualTo(Origin.of(URI.create("mailto:b@nbb.be")));
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2026 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package internal.net.proxy;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import static org.assertj.core.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Philippe Charles
+ */
+public class PeriodicSnapshotTest {
+
+    @Test
+    public void testSyncRefresh() {
+        AtomicLong clock = new AtomicLong();
+        AtomicInteger loads = new AtomicInteger();
+        PeriodicSnapshot<Integer> x = new PeriodicSnapshot<>(loads::incrementAndGet, 10, clock::get);
+
+        assertThat(x.get()).isEqualTo(1);
+        clock.addAndGet(9);
+        assertThat(x.get()).isEqualTo(1);
+        clock.addAndGet(1);
+        assertThat(x.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void testBackgroundRefresh() {
+        AtomicLong clock = new AtomicLong();
+        AtomicInteger loads = new AtomicInteger();
+        Queue<Runnable> refreshes = new ArrayDeque<>();
+        PeriodicSnapshot<Integer> x = new PeriodicSnapshot<>(loads::incrementAndGet, 10, clock::get, refreshes::add);
+
+        assertThat(x.get()).isEqualTo(1);
+        assertThat(refreshes).isEmpty();
+
+        clock.addAndGet(10);
+        assertThat(x.get()).isEqualTo(1);
+        assertThat(x.get()).isEqualTo(1);
+        assertThat(refreshes).as("single flight").hasSize(1);
+
+        refreshes.poll().run();
+        assertThat(x.get()).isEqualTo(2);
+        assertThat(refreshes).isEmpty();
+    }
+
+    @Test
+    public void testFailedLoad() {
+        AtomicLong clock = new AtomicLong();
+        AtomicReference<String> value = new AtomicReference<>();
+        PeriodicSnapshot<String> x = new PeriodicSnapshot<>(value::get, 10, clock::get, Runnable::run);
+
+        assertThat(x.get()).isNull();
+
+        value.set("a");
+        assertThat(x.get()).as("failure is retried after the interval").isNull();
+        clock.addAndGet(10);
+        x.get();
+        assertThat(x.get()).isEqualTo("a");
+
+        value.set(null);
+        clock.addAndGet(10);
+        x.get();
+        assertThat(x.get()).as("failure keeps the previous value").isEqualTo("a");
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2026 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package internal.net.proxy;
+
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import static org.assertj.core.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Philippe Charles
+ */
+public class SelectionCacheTest {
+
+    @Test
+    @SuppressWarnings("null")
+    public void test() {
+        AtomicLong clock = new AtomicLong();
+        AtomicInteger counter = new AtomicInteger();
+        Function<URI, List<Proxy>> loader = o -> {
+            counter.incrementAndGet();
+            return new ArrayList<>(Collections.singletonList(proxy));
+        };
+
+        SelectionCache cache = new SelectionCache(100, 2, clock::get);
+
+        assertThatNullPointerException().isThrownBy(() -> cache.get(null, loader));
+        assertThatNullPointerException().isThrownBy(() -> cache.get(URI.create("http://a"), null));
+
+        List<Proxy> a = cache.get(URI.create("http://a/x"), loader);
+        assertThat(a).containsExactly(proxy);
+        assertThatThrownBy(() -> a.add(proxy)).isInstanceOf(UnsupportedOperationException.class);
+        assertThat(cache.get(URI.create("http://a/y?z"), loader)).isSameAs(a);
+        assertThat(counter).hasValue(1);
+
+        clock.set(99);
+        assertThat(cache.get(URI.create("http://a"), loader)).isSameAs(a);
+        assertThat(counter).hasValue(1);
+
+        clock.set(100);
+        assertThat(cache.get(URI.create("http://a"), loader)).isNotSameAs(a);
+        assertThat(counter).hasValue(2);
+
+        cache.get(URI.create("http://b"), loader);
+        assertThat(cache.size()).isEqualTo(2);
+
+        cache.get(URI.create("http://c"), loader);
+        assertThat(cache.size()).isEqualTo(1);
+        assertThat(counter).hasValue(4);
+    }
+
+    private final Proxy proxy = new Proxy(Proxy.Type.HTTP, new InetSocketAddress("main", 1234));
+}
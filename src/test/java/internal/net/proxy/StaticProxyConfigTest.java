@@ -0,0 +1,77 @@
+/*
+ * Copyright 2026 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package internal.net.proxy;
+
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.URI;
+import static org.assertj.core.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Philippe Charles
+ */
+public class StaticProxyConfigTest {
+
+    @Test
+    public void testSelect() {
+        StaticProxyConfig x = StaticProxyConfig.compile(new StaticProxyProperties("proxy", "x", "secure", "8443", null));
+
+        assertThat(x.select(URI.create("http://www.nbb.be"))).containsExactly(http("proxy", 80));
+        assertThat(x.select(URI.create("HTTPS://www.nbb.be"))).containsExactly(http("secure", 8443));
+        assertThat(x.select(URI.create("ftp://www.nbb.be"))).isNull();
+        assertThat(x.select(URI.create("mailto:someone@nbb.be"))).isNull();
+
+        assertThat(x.select(URI.create("http://localhost"))).containsExactly(Proxy.NO_PROXY);
+        assertThat(x.select(URI.create("http://127.0.0.1:8080"))).containsExactly(Proxy.NO_PROXY);
+        assertThat(x.select(URI.create("http://[::1]"))).containsExactly(Proxy.NO_PROXY);
+
+        assertThat(StaticProxyConfig.compile(new StaticProxyProperties(null, null, null, null, "localhost")).select(URI.create("http://www.nbb.be"))).isNull();
+        assertThat(StaticProxyConfig.compile(new StaticProxyProperties("", null, null, null, null)).select(URI.create("http://www.nbb.be"))).isNull();
+    }
+
+    @Test
+    public void testParseNonProxyHosts() {
+        HostMatcher x = StaticProxyConfig.parseNonProxyHosts(" localhost | *.nbb.be |10.*||*internal");
+
+        assertThat(x.matches("localhost")).isTrue();
+        assertThat(x.matches("www.nbb.be")).isTrue();
+        assertThat(x.matches("nbb.be")).isFalse();
+        assertThat(x.matches("10.1.2.3")).isTrue();
+        assertThat(x.matches("my.internal")).isTrue();
+        assertThat(x.matches("www.example.com")).isFalse();
+
+        assertThat(StaticProxyConfig.parseNonProxyHosts("").isEmpty()).isTrue();
+    }
+
+    @Test
+    public void testUpdate() {
+        StaticProxyProperties properties = new StaticProxyProperties("proxy", null, null, null, null);
+        StaticProxyConfig x = StaticProxyConfig.compile(properties);
+
+        assertThat(x.update(new StaticProxyProperties("proxy", null, null, null, null))).isSameAs(x);
+        assertThat(x.update(new StaticProxyProperties("other", null, null, null, null)))
+                .isNotSameAs(x)
+                .extracting(StaticProxyConfig::getProperties)
+                .isEqualTo(new StaticProxyProperties("other", null, null, null, null));
+    }
+
+    private static Proxy http(String host, int port) {
+        return new Proxy(Proxy.Type.HTTP, InetSocketAddress.createUnresolved(host, port));
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2026 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package internal.net.proxy.x;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import static org.assertj.core.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Philippe Charles
+ */
+public class BatcherTest {
+
+    @Test
+    public void testSingle() {
+        List<List<String>> batches = new CopyOnWriteArrayList<>();
+        Batcher<String, String> x = new Batcher<>(recording(batches), 0, 10, 0);
+
+        assertThat(x.get("a")).isEqualTo("A");
+        assertThat(x.get("b")).isEqualTo("B");
+        assertThat(batches).containsExactly(Arrays.asList("a"), Arrays.asList("b"));
+    }
+
+    @Test
+    public void testLoneKey() {
+        List<List<String>> batches = new CopyOnWriteArrayList<>();
+        Batcher<String, String> x = new Batcher<>(recording(batches), TimeUnit.SECONDS.toNanos(30), 10, 0);
+
+        assertThat(x.get("a")).isEqualTo("A");
+        assertThat(batches).containsExactly(Arrays.asList("a"));
+    }
+
+    @Test
+    public void testCoalescing() throws InterruptedException {
+        List<List<String>> batches = new CopyOnWriteArrayList<>();
+        CountDownLatch release = new CountDownLatch(1);
+        Function<List<String>, Map<String, String>> loader = recording(batches);
+        Batcher<String, String> x = new Batcher<>(keys -> {
+            if (keys.contains("x")) {
+                awaitUninterruptibly(release);
+            }
+            return loader.apply(keys);
+        }, TimeUnit.SECONDS.toNanos(30), 2, 0);
+
+        Thread running = new Thread(() -> x.get("x"));
+        running.start();
+        while (running.getState() != Thread.State.WAITING) {
+            Thread.yield();
+        }
+
+        AtomicReference<String> other = new AtomicReference<>();
+        Thread leader = new Thread(() -> other.set(x.get("a")));
+        leader.start();
+        while (leader.getState() != Thread.State.TIMED_WAITING) {
+            Thread.yield();
+        }
+
+        assertThat(x.get("b")).isEqualTo("B");
+        leader.join(TimeUnit.SECONDS.toMillis(10));
+        assertThat(leader.isAlive()).isFalse();
+        assertThat(other).hasValue("A");
+
+        release.countDown();
+        running.join(TimeUnit.SECONDS.toMillis(10));
+        assertThat(batches).containsExactly(Arrays.asList("a", "b"), Arrays.asList("x"));
+    }
+
+    @Test
+    public void testMaxWait() throws InterruptedException {
+        List<List<String>> batches = new CopyOnWriteArrayList<>();
+        CountDownLatch release = new CountDownLatch(1);
+        Function<List<String>, Map<String, String>> loader = recording(batches);
+        Batcher<String, String> x = new Batcher<>(keys -> {
+            if (!keys.equals(Arrays.asList("a"))) {
+                awaitUninterruptibly(release);
+            }
+            return loader.apply(keys);
+        }, TimeUnit.SECONDS.toNanos(1), 2, TimeUnit.MILLISECONDS.toNanos(100));
+
+        Thread running = new Thread(() -> x.get("x"));
+        running.start();
+        while (running.getState() != Thread.State.WAITING) {
+            Thread.yield();
+        }
+
+        AtomicReference<String> other = new AtomicReference<>();
+        Thread leader = new Thread(() -> other.set(x.get("a")));
+        leader.start();
+        while (leader.getState() != Thread.State.TIMED_WAITING) {
+            Thread.yield();
+        }
+
+        // the caller that fills the batch of "a" and "b" gets stuck with it
+        Thread stuck = new Thread(() -> x.get("b"));
+        stuck.start();
+
+        leader.join(TimeUnit.SECONDS.toMillis(10));
+        assertThat(leader.isAlive()).isFalse();
+        assertThat(other).hasValue("A");
+        assertThat(batches).containsExactly(Arrays.asList("a"));
+
+        release.countDown();
+        running.join(TimeUnit.SECONDS.toMillis(10));
+        stuck.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    @Test
+    public void testFailure() {
+        Batcher<String, String> x = new Batcher<>(keys -> {
+            throw new IllegalStateException("boom");
+        }, 0, 10, 0);
+
+        assertThatIllegalStateException()
+                .isThrownBy(() -> x.get("a"))
+                .withMessage("boom");
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Function<List<String>, Map<String, String>> recording(List<List<String>> batches) {
+        return keys -> {
+            batches.add(keys);
+            Map<String, String> result = new HashMap<>();
+            keys.forEach(key -> result.put(key, key.toUpperCase(Locale.ROOT)));
+            return result;
+        };
+    }
+}
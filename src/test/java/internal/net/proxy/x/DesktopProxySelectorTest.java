@@ -0,0 +1,146 @@
+/*
+ * Copyright 2026 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package internal.net.proxy.x;
+
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.ServiceLoader;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+import nbbrd.net.proxy.SystemProxySelector;
+import static org.assertj.core.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ *
+ * @author Philippe Charles
+ */
+public class DesktopProxySelectorTest {
+
+    @Test
+    public void testRegistration() {
+        assertThat(ServiceLoader.load(SystemProxySelector.Spi.class))
+                .anyMatch(DesktopProxySelector.class::isInstance);
+    }
+
+    @Test
+    public void testKde(@TempDir Path dir) throws Exception {
+        write(dir.resolve("kioslaverc"),
+                "[Proxy Settings]",
+                "ProxyType=1",
+                "httpProxy=http://proxy 8080",
+                "httpsProxy[$e]=https://secure:8443/",
+                "socksProxy=socks://socks 1081",
+                "NoProxyFor=localhost,.example.com,10.0.0.0/8",
+                "ReversedException=false");
+
+        DesktopProxySelector x = of(dir);
+        assertThat(x.getProxyOrNull(URI.create("http://www.nbb.be"))).isEqualTo(http("proxy", 8080));
+        assertThat(x.getProxyOrNull(URI.create("https://www.nbb.be"))).isEqualTo(http("secure", 8443));
+        assertThat(x.getProxyOrNull(URI.create("ftp://www.nbb.be")))
+                .isEqualTo(new Proxy(Proxy.Type.SOCKS, InetSocketAddress.createUnresolved("socks", 1081)));
+        assertThat(x.getProxyOrNull(URI.create("http://localhost"))).isEqualTo(Proxy.NO_PROXY);
+        assertThat(x.getProxyOrNull(URI.create("http://a.example.com"))).isEqualTo(Proxy.NO_PROXY);
+        assertThat(x.getProxyOrNull(URI.create("http://10.1.2.3"))).isEqualTo(Proxy.NO_PROXY);
+    }
+
+    @Test
+    public void testGnome(@TempDir Path dir) throws Exception {
+        Path keyfiles = Files.createDirectories(dir.resolve("dconf").resolve("proxy.d"));
+        write(keyfiles.resolve("proxy.ini"),
+                "[/]",
+                "mode='manual'",
+                "ignore-hosts=['localhost', '127.0.0.0/8', '::1', '*.intra']",
+                "",
+                "[http]",
+                "host='proxy'",
+                "port=3128");
+        write(keyfiles.resolve("socks.ini"),
+                "[system/proxy/socks]",
+                "host='socks'",
+                "port=uint32 1080");
+
+        DesktopProxySelector x = of(dir);
+        assertThat(x.getProxyOrNull(URI.create("http://www.nbb.be"))).isEqualTo(http("proxy", 3128));
+        assertThat(x.getProxyOrNull(URI.create("https://www.nbb.be")))
+                .isEqualTo(new Proxy(Proxy.Type.SOCKS, InetSocketAddress.createUnresolved("socks", 1080)));
+        assertThat(x.getProxyOrNull(URI.create("http://127.0.0.2"))).isEqualTo(Proxy.NO_PROXY);
+        assertThat(x.getProxyOrNull(URI.create("http://[::1]"))).isEqualTo(Proxy.NO_PROXY);
+        assertThat(x.getProxyOrNull(URI.create("http://host.intra"))).isEqualTo(Proxy.NO_PROXY);
+    }
+
+    @Test
+    public void testNoConfig(@TempDir Path dir) throws Exception {
+        assertThat(of(dir).getProxyOrNull(URI.create("http://www.nbb.be"))).isNull();
+        assertThat(of(dir.resolve("missing")).getProxyOrNull(URI.create("http://www.nbb.be"))).isNull();
+
+        write(dir.resolve("kioslaverc"), "[Proxy Settings]", "ProxyType=2", "Proxy Config Script=http://wpad/wpad.dat");
+        assertThat(of(dir).getProxyOrNull(URI.create("http://www.nbb.be"))).isNull();
+    }
+
+    @Test
+    public void testReload(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("kioslaverc");
+        write(file, "[Proxy Settings]", "ProxyType=1", "httpProxy=proxy:1");
+
+        AtomicLong clock = new AtomicLong();
+        DesktopProxySelector x = new DesktopProxySelector(dir, LINUX, clock::get);
+        DesktopProxyRules first = x.getRules();
+        assertThat(x.getRules()).isSameAs(first);
+        assertThat(x.getProxyOrNull(URI.create("http://www.nbb.be"))).isEqualTo(http("proxy", 1));
+
+        write(file, "[Proxy Settings]", "ProxyType=1", "httpProxy=proxy:2");
+        assertThat(x.getRules()).isSameAs(first);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (x.getRules() == first && System.nanoTime() - deadline < 0) {
+            clock.addAndGet(DesktopProxySelector.CHECK_INTERVAL_NANOS);
+            Thread.sleep(10);
+        }
+        assertThat(x.getProxyOrNull(URI.create("http://www.nbb.be"))).isEqualTo(http("proxy", 2));
+    }
+
+    @Test
+    public void testNotUnix(@TempDir Path dir) throws Exception {
+        write(dir.resolve("kioslaverc"), "[Proxy Settings]", "ProxyType=1", "httpProxy=proxy:1");
+
+        assertThat(new DesktopProxySelector(dir, o -> "Windows 10", System::nanoTime).getProxyOrNull(URI.create("http://www.nbb.be"))).isNull();
+        assertThat(new DesktopProxySelector(dir, o -> "Mac OS X", System::nanoTime).getProxyOrNull(URI.create("http://www.nbb.be"))).isNull();
+        assertThat(new DesktopProxySelector(dir, o -> "FreeBSD", System::nanoTime).getProxyOrNull(URI.create("http://www.nbb.be"))).isEqualTo(http("proxy", 1));
+    }
+
+    private static final UnaryOperator<String> LINUX = o -> "Linux";
+
+    private static DesktopProxySelector of(Path dir) {
+        return new DesktopProxySelector(dir, LINUX, System::nanoTime);
+    }
+
+    private static void write(Path file, String... lines) throws Exception {
+        Files.write(file, Arrays.asList(lines), StandardCharsets.UTF_8);
+    }
+
+    private static Proxy http(String host, int port) {
+        return new Proxy(Proxy.Type.HTTP, InetSocketAddress.createUnresolved(host, port));
+    }
+}
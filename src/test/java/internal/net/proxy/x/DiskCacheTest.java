@@ -0,0 +1,141 @@
+/*
+ * Copyright 2026 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package internal.net.proxy.x;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import static org.assertj.core.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ *
+ * @author Philippe Charles
+ */
+public class DiskCacheTest {
+
+    @Test
+    public void testGetUserCacheDir() {
+        Map<String, String> sys = new HashMap<>();
+        Map<String, String> env = new HashMap<>();
+        sys.put("user.home", "/home/me");
+
+        assertThat(DiskCache.getUserCacheDir(sys::get, env::get)).isEqualTo(Paths.get("/home/me", ".cache", "nbbrd-net-proxy"));
+
+        env.put("XDG_CACHE_HOME", "/tmp/xdg");
+        assertThat(DiskCache.getUserCacheDir(sys::get, env::get)).isEqualTo(Paths.get("/tmp/xdg", "nbbrd-net-proxy"));
+
+        sys.put("os.name", "Windows 10");
+        env.put("LOCALAPPDATA", "/appdata");
+        assertThat(DiskCache.getUserCacheDir(sys::get, env::get)).isEqualTo(Paths.get("/appdata", "nbbrd", "net-proxy"));
+
+        sys.put(DiskCache.CACHE_DIR_PROPERTY, "/custom");
+        assertThat(DiskCache.getUserCacheDir(sys::get, env::get)).isEqualTo(Paths.get("/custom"));
+    }
+
+    @Test
+    public void testLoadAndStore(@TempDir Path dir) throws IOException {
+        AtomicLong clock = new AtomicLong(1000);
+        Path file = dir.resolve("sub").resolve("x.cache");
+        DiskCache x = new DiskCache(file, "f1", 100, 1024 * 1024, 100, clock::get);
+
+        assertThat(x.load()).isEmpty();
+
+        x.store(Collections.singletonMap("http://a:80", "DIRECT"));
+        x.store(Collections.singletonMap("http://b:80", "PROXY p:1"));
+        x.store(Collections.singletonMap("http://a:80", "PROXY p:2"));
+        assertThat(x.load()).containsExactly(entry("http://b:80", "PROXY p:1"), entry("http://a:80", "PROXY p:2"));
+
+        DiskCache other = new DiskCache(file, "f2", 100, 1024 * 1024, 100, clock::get);
+        assertThat(other.load()).isEmpty();
+        other.store(Collections.singletonMap("http://c:80", "DIRECT"));
+        assertThat(x.load()).containsOnlyKeys("http://a:80", "http://b:80");
+
+        Files.write(file, "garbage\nf1\tx\thttp://d:80\tDIRECT\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        assertThat(x.load()).containsOnlyKeys("http://a:80", "http://b:80");
+
+        clock.addAndGet(101);
+        assertThat(x.load()).isEmpty();
+    }
+
+    @Test
+    public void testCompaction(@TempDir Path dir) throws IOException {
+        AtomicLong clock = new AtomicLong(1000);
+        Path file = dir.resolve("x.cache");
+        DiskCache x = new DiskCache(file, "f", 100, 200, 3, clock::get);
+
+        for (int i = 0; i < 10; i++) {
+            clock.incrementAndGet();
+            x.store(Collections.singletonMap("http://host" + i + ":80", "DIRECT"));
+        }
+        assertThat(Files.size(file)).isLessThanOrEqualTo(200);
+        assertThat(x.load()).containsKey("http://host9:80").doesNotContainKey("http://host0:80");
+
+        // compaction keeps the original timestamps
+        clock.set(1010 + 100);
+        assertThat(x.load()).containsOnlyKeys("http://host9:80");
+    }
+
+    @Test
+    public void testCompactionMargin(@TempDir Path dir) throws IOException {
+        AtomicLong clock = new AtomicLong(1000);
+        Path file = dir.resolve("x.cache");
+        DiskCache x = new DiskCache(file, "f", 100, 100, 100, clock::get);
+
+        for (int i = 0; i < 4; i++) {
+            x.store(Collections.singletonMap("http://host" + i + ":80", "DIRECT"));
+        }
+        assertThat(Files.readAllLines(file)).hasSize(4);
+
+        // live entries exceed the maximum size but the file hasn't grown enough since the last compaction
+        x.store(Collections.singletonMap("http://host0:80", "DIRECT"));
+        assertThat(Files.readAllLines(file)).hasSize(5);
+
+        x.store(Collections.singletonMap("http://host0:80", "DIRECT"));
+        assertThat(Files.readAllLines(file)).hasSize(4);
+    }
+
+    @Test
+    public void testConcurrentWriters(@TempDir Path dir) {
+        Path file = dir.resolve("x.cache");
+        List<CompletableFuture<?>> writers = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            String key = "http://host" + i + ":80";
+            DiskCache x = new DiskCache(file, "f", 60_000, 1024 * 1024, 100, System::currentTimeMillis);
+            writers.add(CompletableFuture.runAsync(() -> {
+                for (int j = 0; j < 20; j++) {
+                    x.store(Collections.singletonMap(key, "PROXY p:" + j));
+                }
+            }));
+        }
+        CompletableFuture.allOf(writers.toArray(new CompletableFuture[0])).join();
+
+        Map<String, String> result = new DiskCache(file, "f", 60_000, 1024 * 1024, 100, System::currentTimeMillis).load();
+        assertThat(result).hasSize(8).allSatisfy((key, value) -> assertThat(value).isEqualTo("PROXY p:19"));
+    }
+}
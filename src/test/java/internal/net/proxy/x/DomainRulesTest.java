@@ -0,0 +1,62 @@
+/*
+ * Copyright 2026 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package internal.net.proxy.x;
+
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import static org.assertj.core.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Philippe Charles
+ */
+public class DomainRulesTest {
+
+    @Test
+    public void testGetProxyOrNull() {
+        DomainRules x = DomainRules.of(PacScript.parse(String.join("\n",
+                "function FindProxyForURL(url, host) {",
+                "  if (dnsDomainIs(host, '.secure.corp')) return 'PROXY secure:3128';",
+                "  if (isPlainHostName(host) || dnsDomainIs(host, '.corp')) return 'DIRECT';",
+                "  if (shExpMatch(host, '*.cdn.example.com')) return 'PROXY cdn:8080; DIRECT';",
+                "  if (dnsDomainIs(host, '.weird.com')) return 'UNKNOWN';",
+                "  return 'PROXY proxy:8080';",
+                "}")).getHostRules());
+
+        Proxy secure = new Proxy(Proxy.Type.HTTP, InetSocketAddress.createUnresolved("secure", 3128));
+        Proxy cdn = new Proxy(Proxy.Type.HTTP, InetSocketAddress.createUnresolved("cdn", 8080));
+
+        assertThat(x.isEmpty()).isFalse();
+        assertThat(x.getProxyOrNull("intranet")).isEqualTo(Proxy.NO_PROXY);
+        assertThat(x.getProxyOrNull("a.corp")).isEqualTo(Proxy.NO_PROXY);
+        assertThat(x.getProxyOrNull("a.b.corp")).isEqualTo(Proxy.NO_PROXY);
+        assertThat(x.getProxyOrNull("a.secure.corp")).isEqualTo(secure);
+        assertThat(x.getProxyOrNull("secure.corp")).isEqualTo(Proxy.NO_PROXY);
+        assertThat(x.getProxyOrNull("x123.cdn.example.com")).isEqualTo(cdn);
+
+        assertThat(x.getProxyOrNull("corp")).isEqualTo(Proxy.NO_PROXY);
+        assertThat(x.getProxyOrNull("cdn.example.com")).isNull();
+        assertThat(x.getProxyOrNull("www.example.com")).isNull();
+        assertThat(x.getProxyOrNull("xcorp.com")).isNull();
+        assertThat(x.getProxyOrNull("a.weird.com")).isNull();
+        assertThat(x.getProxyOrNull("A.corp")).isNull();
+
+        assertThat(DomainRules.EMPTY.isEmpty()).isTrue();
+        assertThat(DomainRules.EMPTY.getProxyOrNull("intranet")).isNull();
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2026 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package internal.net.proxy.x;
+
+import static org.assertj.core.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Philippe Charles
+ */
+public class FrequencySketchTest {
+
+    @Test
+    public void test() {
+        FrequencySketch<String> x = new FrequencySketch<>(16);
+
+        assertThat(x.frequency("a")).isZero();
+
+        x.increment("a");
+        x.increment("a");
+        x.increment("b");
+        assertThat(x.frequency("a")).isEqualTo(2);
+        assertThat(x.frequency("b")).isEqualTo(1);
+
+        for (int i = 0; i < 100; i++) {
+            x.increment("a");
+        }
+        assertThat(x.frequency("a")).as("saturated four-bit counter").isEqualTo(15);
+    }
+
+    @Test
+    public void testAging() {
+        FrequencySketch<Integer> x = new FrequencySketch<>(16);
+
+        for (int i = 0; i < 15; i++) {
+            x.increment(-1);
+        }
+        assertThat(x.frequency(-1)).isEqualTo(15);
+
+        for (int i = 0; i < 1000; i++) {
+            x.increment(i);
+        }
+        assertThat(x.frequency(-1)).isLessThan(15);
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2026 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package internal.net.proxy.x;
+
+import internal.net.proxy.FailsafeSystemProxySpi;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.ProxySelector;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ServiceLoader;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import nbbrd.net.proxy.SystemProxySelector;
+import static org.assertj.core.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ *
+ * @author Philippe Charles
+ */
+public class PacProxySelectorTest {
+
+    @Test
+    public void testRegistration() {
+        assertThat(ServiceLoader.load(SystemProxySelector.Spi.class))
+                .anyMatch(PacProxySelector.class::isInstance);
+    }
+
+    @Test
+    public void testGetProxyOrNull(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("proxy.pac");
+        Files.write(file, PAC.getBytes(StandardCharsets.UTF_8));
+
+        AtomicInteger loads = new AtomicInteger();
+        AtomicLong clock = new AtomicLong();
+        PacProxySelector x = new PacProxySelector(() -> {
+            loads.incrementAndGet();
+            try {
+                return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+            } catch (Exception ex) {
+                throw new RuntimeException(ex);
+            }
+        }, PacScript.Dns.system(), clock::get);
+
+        assertThat(x.getProxyOrNull(URI.create("http://localhost/"))).isEqualTo(Proxy.NO_PROXY);
+        assertThat(x.getProxyOrNull(URI.create("https://www.nbb.be/")))
+                .isEqualTo(new Proxy(Proxy.Type.HTTP, InetSocketAddress.createUnresolved("proxy", 8080)));
+        assertThat(x.getProxyOrNull(URI.create("file:///tmp"))).isNull();
+        assertThat(loads).hasValue(1);
+
+        assertThat(new PacProxySelector(() -> null, PacScript.Dns.system(), clock::get).getProxyOrNull(URI.create("http://localhost/"))).isNull();
+        assertThat(new PacProxySelector(() -> "invalid", PacScript.Dns.system(), clock::get).getProxyOrNull(URI.create("http://localhost/"))).isNull();
+    }
+
+    @Test
+    public void testLoadAsDefaultSelector() throws Exception {
+        try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            Thread serving = new Thread(() -> servePac(server));
+            serving.start();
+
+            String url = "http://127.0.0.1:" + server.getLocalPort() + "/proxy.pac";
+            SystemProxySelector selector = SystemProxySelector
+                    .builder()
+                    .provider(FailsafeSystemProxySpi.wrap(new PacProxySelector(() -> {
+                        try {
+                            return PacProxySelector.load(url);
+                        } catch (IOException ex) {
+                            throw new UncheckedIOException(ex);
+                        }
+                    }, PacScript.Dns.system(), System::nanoTime)))
+                    .systemProperties(o -> null)
+                    .fallback(ProxySelector.getDefault())
+                    .build();
+
+            ProxySelector saved = ProxySelector.getDefault();
+            ProxySelector.setDefault(selector);
+            try {
+                assertThat(selector.select(URI.create("https://www.nbb.be/")))
+                        .containsExactly(new Proxy(Proxy.Type.HTTP, InetSocketAddress.createUnresolved("proxy", 8080)));
+            } finally {
+                ProxySelector.setDefault(saved);
+            }
+            serving.join(TimeUnit.SECONDS.toMillis(10));
+        }
+    }
+
+    @Test
+    public void testLoadTimeout() throws Exception {
+        try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            // the connection is accepted by the backlog but never answered
+            String url = "http://127.0.0.1:" + server.getLocalPort() + "/proxy.pac";
+            assertThatExceptionOfType(SocketTimeoutException.class)
+                    .isThrownBy(() -> PacProxySelector.load(url, 100));
+        }
+    }
+
+    @Test
+    public void testParseResult() {
+        assertThat(PacProxySelector.parseResult(null)).isNull();
+        assertThat(PacProxySelector.parseResult("")).isNull();
+        assertThat(PacProxySelector.parseResult(" DIRECT ")).isEqualTo(Proxy.NO_PROXY);
+        assertThat(PacProxySelector.parseResult("PROXY a:1; DIRECT"))
+                .isEqualTo(new Proxy(Proxy.Type.HTTP, InetSocketAddress.createUnresolved("a", 1)));
+        assertThat(PacProxySelector.parseResult("socks5 b"))
+                .isEqualTo(new Proxy(Proxy.Type.SOCKS, InetSocketAddress.createUnresolved("b", 1080)));
+        assertThat(PacProxySelector.parseResult("PROXY a:x")).isNull();
+        assertThat(PacProxySelector.parseResult("UNKNOWN a:1")).isNull();
+    }
+
+    private static void servePac(ServerSocket server) {
+        try (Socket socket = server.accept()) {
+            BufferedReader request = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            String line;
+            while ((line = request.readLine()) != null && !line.isEmpty()) {
+                // skips the request headers
+            }
+            byte[] body = PAC.getBytes(StandardCharsets.UTF_8);
+            OutputStream response = socket.getOutputStream();
+            response.write(("HTTP/1.0 200 OK\r\nContent-Type: application/x-ns-proxy-autoconfig\r\nContent-Length: " + body.length + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            response.write(body);
+            response.flush();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static final String PAC = "function FindProxyForURL(url, host) {\n"
+            + "  if (isPlainHostName(host)) return 'DIRECT';\n"
+            + "  return 'PROXY proxy:8080';\n"
+            + "}\n";
+}
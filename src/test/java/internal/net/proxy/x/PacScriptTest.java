@@ -0,0 +1,171 @@
+/*
+ * Copyright 2026 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package internal.net.proxy.x;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import static org.assertj.core.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Philippe Charles
+ */
+public class PacScriptTest {
+
+    @Test
+    public void testParse() {
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> PacScript.parse("function other(url, host) { return 'DIRECT'; }"))
+                .withMessageContaining("FindProxyForURL");
+
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> PacScript.parse("function FindProxyForURL(url, host) { return 'DIRECT' + ; }"))
+                .withMessageContaining("position");
+
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> PacScript.parse("function FindProxyForURL(url, host) { return foo(host); }"))
+                .withMessageContaining("Unknown function 'foo'");
+
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> PacScript.parse("function FindProxyForURL(url, host) { if (timeRange(8, 18)) return 'DIRECT'; }"))
+                .withMessageContaining("Unsupported function 'timeRange'");
+
+        assertThat(PacScript.parse("function FindProxyForURL(url, host) { return host; }").isUrlDependent()).isFalse();
+        assertThat(PacScript.parse("function FindProxyForURL(u, h) { return shExpMatch(u, 'http:*') ? 'DIRECT' : h; }").isUrlDependent()).isTrue();
+    }
+
+    @Test
+    public void testFindProxyForURL() {
+        PacScript x = PacScript.parse(String.join("\n",
+                "// corporate proxy",
+                "var proxy = \"PROXY proxy.example.com:8080\";",
+                "function isInternal(host) {",
+                "  return dnsDomainIs(host, '.intra.example.com') || localHostOrDomainIs(host, 'www.example.com');",
+                "}",
+                "function FindProxyForURL(url, host) {",
+                "  host = host.toLowerCase();",
+                "  if (isPlainHostName(host) || isInternal(host)) {",
+                "    return 'DIRECT';",
+                "  } else if (isInNet(host, '10.0.0.0', '255.0.0.0')) {",
+                "    return 'DIRECT';",
+                "  }",
+                "  /* secure traffic */",
+                "  if (url.substring(0, 6) == 'https:' && dnsDomainLevels(host) > 2) return 'SOCKS socks:1080';",
+                "  return shExpMatch(host, '*.example.*') ? proxy + '; DIRECT' : 'PROXY other:3128';",
+                "}"));
+
+        Map<String, String> hosts = new HashMap<>();
+        hosts.put("db.example.com", "10.1.2.3");
+        hosts.put("web.example.org", "192.168.1.1");
+        PacScript.Dns dns = new PacScript.Dns() {
+            @Override
+            public String resolve(String host) {
+                return hosts.get(host);
+            }
+
+            @Override
+            public String myIpAddress() {
+                return "127.0.0.1";
+            }
+        };
+
+        assertThat(x.findProxyForURL("http://intranet/", "intranet", dns)).isEqualTo("DIRECT");
+        assertThat(x.findProxyForURL("http://a.intra.example.com/", "A.Intra.Example.com", dns)).isEqualTo("DIRECT");
+        assertThat(x.findProxyForURL("http://www/", "www", dns)).isEqualTo("DIRECT");
+        assertThat(x.findProxyForURL("http://db.example.com/", "db.example.com", dns)).isEqualTo("DIRECT");
+        assertThat(x.findProxyForURL("http://10.2.3.4/", "10.2.3.4", dns)).isEqualTo("DIRECT");
+        assertThat(x.findProxyForURL("https://a.b.example.org/", "a.b.example.org", dns)).isEqualTo("SOCKS socks:1080");
+        assertThat(x.findProxyForURL("http://web.example.org/", "web.example.org", dns)).isEqualTo("PROXY proxy.example.com:8080; DIRECT");
+        assertThat(x.findProxyForURL("http://nbb.be/", "nbb.be", dns)).isEqualTo("PROXY other:3128");
+    }
+
+    @Test
+    public void testHostRules() {
+        PacScript x = PacScript.parse(String.join("\n",
+                "function FindProxyForURL(url, host) {",
+                "  if (isPlainHostName(host) || dnsDomainIs(host, '.Intra.Corp')) return 'DIRECT';",
+                "  if (shExpMatch(host, '*.cdn.example.com')) { return 'PROXY cdn:3128'; }",
+                "  if (dnsDomainIs(host, 'example.com')) return 'DIRECT';",
+                "  if (shExpMatch(host, '*.other.com')) return 'DIRECT';",
+                "  return 'PROXY proxy:8080';",
+                "}"));
+        assertThat(x.getHostRules()).containsExactly(
+                new PacScript.HostRule(true, Arrays.asList("intra.corp"), "DIRECT"),
+                new PacScript.HostRule(false, Arrays.asList("cdn.example.com"), "PROXY cdn:3128"));
+
+        assertThat(PacScript.parse("function FindProxyForURL(url, host) { if (dnsDomainIs(url, '.corp')) return 'DIRECT'; }").getHostRules()).isEmpty();
+        assertThat(PacScript.parse("function FindProxyForURL(url, host) { if (dnsDomainIs(host, '.corp')) return 'DIRECT'; else return 'PROXY p:1'; }").getHostRules()).isEmpty();
+        assertThat(PacScript.parse("function FindProxyForURL(url, host) { if (dnsDomainIs(host, '.corp') && isResolvable(host)) return 'DIRECT'; }").getHostRules()).isEmpty();
+        assertThat(PacScript.parse("function FindProxyForURL(url, host) { if (dnsDomainIs(host, '.corp')) return host; }").getHostRules()).isEmpty();
+        assertThat(PacScript.parse("function dnsDomainIs(h, d) { return false; } function FindProxyForURL(url, host) { if (dnsDomainIs(host, '.corp')) return 'DIRECT'; }").getHostRules()).isEmpty();
+        assertThat(PacScript.parse("function FindProxyForURL(url, host) { return 'DIRECT'; }").getHostRules()).isEqualTo(Collections.emptyList());
+    }
+
+    @Test
+    public void testExpressions() {
+        assertThat(eval("1 + 2")).isEqualTo("3");
+        assertThat(eval("'a' + 1")).isEqualTo("a1");
+        assertThat(eval("5 - 2 - 1")).isEqualTo("2");
+        assertThat(eval("1 == '1'")).isEqualTo("true");
+        assertThat(eval("1 === '1'")).isEqualTo("false");
+        assertThat(eval("null || 'b'")).isEqualTo("b");
+        assertThat(eval("'' && 'b'")).isEqualTo("");
+        assertThat(eval("!0 ? 'yes' : 'no'")).isEqualTo("yes");
+        assertThat(eval("'abc'.length")).isEqualTo("3");
+        assertThat(eval("'abc'.indexOf('c')")).isEqualTo("2");
+        assertThat(eval("'AbC'.toLowerCase().charAt(1)")).isEqualTo("b");
+        assertThat(eval("convert_addr('1.0.0.1')")).isEqualTo("16777217");
+        assertThat(eval("\"a\\\"b\"")).isEqualTo("a\"b");
+        assertThat(eval("null")).isNull();
+    }
+
+    @Test
+    public void testGlob() {
+        assertThat(PacScript.Glob.compile("*.example.com").matches("www.example.com")).isTrue();
+        assertThat(PacScript.Glob.compile("*.example.com").matches("example.com")).isFalse();
+        assertThat(PacScript.Glob.compile("http://*/a?c").matches("http://host/abc")).isTrue();
+        assertThat(PacScript.Glob.compile("*a*b*").matches("xxaxxbxx")).isTrue();
+        assertThat(PacScript.Glob.compile("*a*b").matches("xxaxxbxx")).isFalse();
+        assertThat(PacScript.Glob.compile("").matches("")).isTrue();
+        assertThat(PacScript.Glob.compile("*").matches("")).isTrue();
+        assertThat(PacScript.Glob.compile("a**b").matches("ab")).isTrue();
+        assertThat(PacScript.Glob.compile("a*a").matches("a")).isFalse();
+        assertThat(PacScript.Glob.compile("*aa*aa").matches("aaa")).isFalse();
+        assertThat(PacScript.Glob.compile("?*?").matches("ab")).isTrue();
+        assertThat(PacScript.Glob.compile("?").matches("")).isFalse();
+        assertThat(PacScript.Glob.compile("www.example.com").matches("www.example.com")).isTrue();
+    }
+
+    @Test
+    public void testParseIpv4() {
+        assertThat(PacScript.parseIpv4("0.0.0.0")).isEqualTo(0);
+        assertThat(PacScript.parseIpv4("255.255.255.255")).isEqualTo(0xFFFFFFFFL);
+        assertThat(PacScript.parseIpv4("10.0.0")).isEqualTo(-1);
+        assertThat(PacScript.parseIpv4("10.0.0.256")).isEqualTo(-1);
+        assertThat(PacScript.parseIpv4("10..0.1")).isEqualTo(-1);
+        assertThat(PacScript.parseIpv4("host")).isEqualTo(-1);
+    }
+
+    private static String eval(String expression) {
+        return PacScript
+                .parse("function FindProxyForURL(url, host) { return " + expression + "; }")
+                .findProxyForURL("http://host", "host", PacScript.Dns.system());
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2026 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package internal.net.proxy.x;
+
+import com.github.tuupertunut.powershelllibjava.PowerShellExecutionException;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import nbbrd.net.proxy.MetricsListener;
+import static org.assertj.core.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Philippe Charles
+ */
+public class SharedPowerShellTest {
+
+    @Test
+    public void testReuse() throws Exception {
+        List<FakeSession> sessions = new CopyOnWriteArrayList<>();
+        SharedPowerShell x = new SharedPowerShell(2, () -> newSession(sessions), () -> 0);
+
+        assertThat(x.executeCommands("a")).isEqualTo("a");
+        assertThat(x.executeCommands("b")).isEqualTo("b");
+        assertThat(sessions).hasSize(1);
+        assertThat(sessions.get(0).commands).containsExactly("a", "b");
+    }
+
+    @Test
+    public void testParallel() throws Exception {
+        List<FakeSession> sessions = new CopyOnWriteArrayList<>();
+        CountDownLatch bothRunning = new CountDownLatch(2);
+        SharedPowerShell x = new SharedPowerShell(2, () -> {
+            FakeSession result = newSession(sessions);
+            result.onExecute = () -> {
+                bothRunning.countDown();
+                bothRunning.await(10, TimeUnit.SECONDS);
+            };
+            return result;
+        }, () -> 0);
+
+        AtomicReference<Exception> error = new AtomicReference<>();
+        Thread other = new Thread(() -> {
+            try {
+                x.executeCommands("a");
+            } catch (Exception ex) {
+                error.set(ex);
+            }
+        });
+        other.start();
+        x.executeCommands("b");
+        other.join();
+
+        assertThat(error).hasValue(null);
+        assertThat(bothRunning.getCount()).isZero();
+        assertThat(sessions).hasSize(2);
+    }
+
+    @Test
+    public void testReplaceOnFailure() throws Exception {
+        List<FakeSession> sessions = new CopyOnWriteArrayList<>();
+        SharedPowerShell x = new SharedPowerShell(1, () -> newSession(sessions), () -> 0);
+
+        x.executeCommands("a");
+        sessions.get(0).onExecute = () -> {
+            throw new PowerShellExecutionException("script error");
+        };
+        assertThatExceptionOfType(PowerShellExecutionException.class).isThrownBy(() -> x.executeCommands("b"));
+        assertThat(sessions).hasSize(1);
+        assertThat(sessions.get(0).closed).isFalse();
+
+        sessions.get(0).onExecute = () -> {
+            throw new IOException("broken pipe");
+        };
+        assertThatIOException().isThrownBy(() -> x.executeCommands("c"));
+        assertThat(sessions.get(0).closed).isTrue();
+
+        assertThat(x.executeCommands("d")).isEqualTo("d");
+        assertThat(sessions).hasSize(2);
+    }
+
+    @Test
+    public void testHealthCheck() throws Exception {
+        List<FakeSession> sessions = new CopyOnWriteArrayList<>();
+        AtomicLong clock = new AtomicLong();
+        SharedPowerShell x = new SharedPowerShell(1, () -> newSession(sessions), clock::get);
+
+        x.executeCommands("a");
+        clock.addAndGet(TimeUnit.MINUTES.toNanos(2));
+        x.executeCommands("b");
+        assertThat(sessions).hasSize(1);
+        assertThat(sessions.get(0).commands).containsExactly("a", "$true", "b");
+
+        sessions.get(0).onExecute = () -> {
+            throw new IOException("dead process");
+        };
+        clock.addAndGet(TimeUnit.MINUTES.toNanos(2));
+        assertThat(x.executeCommands("c")).isEqualTo("c");
+        assertThat(sessions).hasSize(2);
+        assertThat(sessions.get(0).closed).isTrue();
+    }
+
+    @Test
+    public void testWarmUp() throws Exception {
+        List<FakeSession> sessions = new CopyOnWriteArrayList<>();
+        SharedPowerShell x = new SharedPowerShell(2, () -> newSession(sessions), () -> 0);
+
+        x.warmUp();
+        assertThat(sessions).hasSize(2);
+        assertThat(sessions).allMatch(session -> session.commands.isEmpty());
+
+        x.warmUp();
+        assertThat(sessions).hasSize(2);
+
+        assertThat(x.executeCommands("a")).isEqualTo("a");
+        assertThat(sessions).hasSize(2);
+    }
+
+    @Test
+    public void testWarmUpReleasesSlots() throws Exception {
+        List<FakeSession> sessions = new CopyOnWriteArrayList<>();
+        AtomicReference<SharedPowerShell> shared = new AtomicReference<>();
+        List<String> duringWarmUp = new CopyOnWriteArrayList<>();
+        AtomicBoolean failed = new AtomicBoolean();
+        SharedPowerShell x = new SharedPowerShell(3, () -> {
+            if (sessions.size() == 1) {
+                // the first slot must already be available
+                try {
+                    duringWarmUp.add(shared.get().executeCommands("a"));
+                } catch (PowerShellExecutionException ex) {
+                    throw new IOException(ex);
+                }
+            }
+            if (sessions.size() == 2 && !failed.getAndSet(true)) {
+                throw new IOException("cannot spawn");
+            }
+            return newSession(sessions);
+        }, () -> 0);
+        shared.set(x);
+
+        assertThatIOException().isThrownBy(x::warmUp);
+        assertThat(duringWarmUp).containsExactly("a");
+        assertThat(sessions).hasSize(2);
+
+        x.warmUp();
+        assertThat(sessions).hasSize(3);
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+        List<FakeSession> sessions = new CopyOnWriteArrayList<>();
+        List<String> events = new CopyOnWriteArrayList<>();
+        AtomicLong clock = new AtomicLong();
+        SharedPowerShell x = new SharedPowerShell(1, () -> {
+            FakeSession result = newSession(sessions);
+            result.onExecute = () -> clock.addAndGet(10);
+            return result;
+        }, clock::get);
+
+        x.executeCommands("a");
+        assertThat(events).isEmpty();
+
+        x.getMetrics().add(new MetricsListener() {
+            @Override
+            public void onLockWait(String resource, long durationInNanos) {
+                events.add("wait:" + durationInNanos);
+            }
+
+            @Override
+            public void onExecution(String resource, boolean fallback, long durationInNanos) {
+                events.add("exec:" + fallback + ":" + durationInNanos);
+            }
+
+            @Override
+            public void onSpawn(String resource) {
+                events.add("spawn");
+            }
+        });
+
+        x.executeCommands("b");
+        assertThat(events).containsExactly("wait:0", "exec:false:10");
+
+        events.clear();
+        sessions.get(0).onExecute = () -> {
+            throw new IOException("broken pipe");
+        };
+        assertThatIOException().isThrownBy(() -> x.executeCommands("c"));
+        x.executeCommands("d");
+        assertThat(events).containsExactly("wait:0", "exec:false:0", "wait:0", "spawn", "exec:false:10");
+    }
+
+    private static FakeSession newSession(List<FakeSession> sessions) {
+        FakeSession result = new FakeSession();
+        sessions.add(result);
+        return result;
+    }
+
+    private static final class FakeSession implements SharedPowerShell.Session {
+
+        final List<String> commands = new CopyOnWriteArrayList<>();
+        volatile Action onExecute = () -> {
+        };
+        volatile boolean closed = false;
+
+        @Override
+        public String executeCommands(String cmd) throws IOException, PowerShellExecutionException {
+            commands.add(cmd);
+            try {
+                onExecute.run();
+            } catch (InterruptedException ex) {
+                throw new IOException(ex);
+            }
+            return cmd;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Action {
+
+        void run() throws IOException, PowerShellExecutionException, InterruptedException;
+    }
+}
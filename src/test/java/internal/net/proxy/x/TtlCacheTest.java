@@ -17,12 +17,24 @@
 package internal.net.proxy.x;
 
 import _test.LogCollector;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
+import nbbrd.net.proxy.CacheStats;
 import static org.assertj.core.api.Assertions.*;
 import org.junit.jupiter.api.Test;
 
@@ -47,7 +59,7 @@ public class TtlCacheTest {
                 .maxTtlInMillis(1000)
                 .ttlFactor(1)
                 .storage(storage)
-                .clock(clock::get)
+                .clock(() -> TimeUnit.MILLISECONDS.toNanos(clock.get()))
                 .onEvent((k, e) -> event.set(e))
                 .build();
 
@@ -92,6 +104,366 @@ public class TtlCacheTest {
         assertThat(clock).hasValue(2030);
     }
 
+    @Test
+    public void testMaxSize() {
+        ConcurrentMap<String, TtlCache.Entry<String>> storage = new ConcurrentHashMap<>();
+        AtomicLong clock = new AtomicLong(0);
+        List<String> evictions = new ArrayList<>();
+
+        TtlCache<String, String> cache = TtlCache
+                .<String, String>builder()
+                .minTtlInMillis(10)
+                .maxTtlInMillis(1000)
+                .ttlFactor(100)
+                .maxSize(2)
+                .storage(storage)
+                .clock(() -> TimeUnit.MILLISECONDS.toNanos(clock.get()))
+                .onEvent((k, e) -> {
+                    if (e == TtlCache.Event.EVICT) {
+                        evictions.add(k);
+                    }
+                })
+                .build();
+
+        Function<String, String> loader = o -> {
+            clock.addAndGet(10);
+            return o;
+        };
+
+        cache.get("a", loader);
+        cache.get("b", loader);
+        assertThat(storage).containsOnlyKeys("a", "b");
+
+        // not requested more often than the oldest entry: rejected, oldest goes to the back
+        cache.get("c", loader);
+        assertThat(storage).containsOnlyKeys("a", "b");
+        assertThat(evictions).containsExactly("c");
+
+        // requested more often than the oldest entry: admitted
+        cache.get("c", loader);
+        assertThat(storage).containsOnlyKeys("a", "c");
+        assertThat(evictions).containsExactly("c", "b");
+
+        // expired entries are reclaimed on write
+        clock.addAndGet(1000);
+        cache.get("d", loader);
+        assertThat(storage).containsOnlyKeys("d");
+        assertThat(evictions).containsExactly("c", "b");
+    }
+
+    @Test
+    public void testSingleFlight() throws Exception {
+        AtomicInteger counter = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<TtlCache.Event> events = new CopyOnWriteArrayList<>();
+
+        TtlCache<String, Integer> cache = TtlCache
+                .<String, Integer>builder()
+                .minTtlInMillis(10)
+                .maxTtlInMillis(1000)
+                .ttlFactor(1)
+                .maxLoadWaitInMillis(10_000)
+                .storage(new ConcurrentHashMap<>())
+                .clock(() -> 0)
+                .onEvent((k, e) -> events.add(e))
+                .build();
+
+        Function<String, Integer> blockingLoader = o -> {
+            loading.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                throw new IllegalStateException(ex);
+            }
+            return counter.incrementAndGet();
+        };
+
+        AtomicReference<Integer> leaderResult = new AtomicReference<>();
+        AtomicReference<Integer> followerResult = new AtomicReference<>();
+        Thread leader = new Thread(() -> leaderResult.set(cache.get("a", blockingLoader)));
+        Thread follower = new Thread(() -> followerResult.set(cache.get("a", blockingLoader)));
+
+        leader.start();
+        loading.await();
+        follower.start();
+        while (follower.getState() != Thread.State.TIMED_WAITING) {
+            Thread.yield();
+        }
+        release.countDown();
+        leader.join();
+        follower.join();
+
+        assertThat(leaderResult).hasValue(1);
+        assertThat(followerResult).hasValue(1);
+        assertThat(counter).hasValue(1);
+        assertThat(events).containsExactlyInAnyOrder(TtlCache.Event.MISS_FAST, TtlCache.Event.SHARED);
+    }
+
+    @Test
+    public void testRefreshAhead() {
+        ConcurrentMap<String, TtlCache.Entry<Integer>> storage = new ConcurrentHashMap<>();
+        AtomicLong clock = new AtomicLong(0);
+        AtomicInteger counter = new AtomicInteger();
+        AtomicReference<TtlCache.Event> event = new AtomicReference<>();
+        Queue<Runnable> tasks = new LinkedList<>();
+
+        TtlCache<String, Integer> cache = TtlCache
+                .<String, Integer>builder()
+                .minTtlInMillis(10)
+                .maxTtlInMillis(100)
+                .ttlFactor(10)
+                .maxStaleInMillis(50)
+                .refreshExecutor(tasks::add)
+                .storage(storage)
+                .clock(() -> TimeUnit.MILLISECONDS.toNanos(clock.get()))
+                .onEvent((k, e) -> event.set(e))
+                .build();
+
+        Function<String, Integer> loader = o -> {
+            clock.addAndGet(10);
+            return counter.incrementAndGet();
+        };
+
+        assertThat(cache.get("a", loader)).isEqualTo(1);
+        assertThat(event).hasValue(TtlCache.Event.MISS_SLOW);
+        assertThat(clock).hasValue(10);
+
+        clock.set(110);
+        assertThat(cache.get("a", loader)).isEqualTo(1);
+        assertThat(event).hasValue(TtlCache.Event.STALE);
+        assertThat(tasks).hasSize(1);
+
+        assertThat(cache.get("a", loader)).isEqualTo(1);
+        assertThat(tasks).as("refresh already in flight").hasSize(1);
+
+        tasks.poll().run();
+        assertThat(event).hasValue(TtlCache.Event.EXP_SLOW);
+        assertThat(cache.get("a", loader)).isEqualTo(2);
+        assertThat(event).hasValue(TtlCache.Event.HIT);
+
+        clock.addAndGet(1000);
+        assertThat(cache.get("a", loader)).isEqualTo(3);
+        assertThat(event).hasValue(TtlCache.Event.EXP_SLOW);
+        assertThat(tasks).isEmpty();
+    }
+
+    @Test
+    public void testNullValue() {
+        ConcurrentMap<String, TtlCache.Entry<Integer>> storage = new ConcurrentHashMap<>();
+        AtomicLong clock = new AtomicLong(0);
+        AtomicInteger calls = new AtomicInteger();
+
+        TtlCache<String, Integer> cache = TtlCache
+                .<String, Integer>builder()
+                .minTtlInMillis(10)
+                .maxTtlInMillis(1000)
+                .ttlFactor(1)
+                .storage(storage)
+                .clock(() -> TimeUnit.MILLISECONDS.toNanos(clock.get()))
+                .onEvent((k, e) -> {
+                })
+                .build();
+
+        Function<String, Integer> slowNull = o -> {
+            calls.incrementAndGet();
+            clock.addAndGet(100);
+            return null;
+        };
+
+        assertThat(cache.get("a", slowNull)).isNull();
+        assertThat(cache.get("a", slowNull)).isNull();
+        assertThat(cache.getAll(Arrays.asList("a"), keys -> Collections.singletonMap("a", slowNull.apply("a")))).containsOnly(entry("a", null));
+        assertThat(calls).hasValue(3);
+        assertThat(storage).isEmpty();
+    }
+
+    @Test
+    public void testPutProvisional() {
+        ConcurrentMap<String, TtlCache.Entry<Integer>> storage = new ConcurrentHashMap<>();
+        AtomicLong clock = new AtomicLong(0);
+        AtomicReference<TtlCache.Event> event = new AtomicReference<>();
+        Queue<Runnable> tasks = new LinkedList<>();
+
+        TtlCache<String, Integer> cache = TtlCache
+                .<String, Integer>builder()
+                .minTtlInMillis(10)
+                .maxTtlInMillis(100)
+                .ttlFactor(10)
+                .maxStaleInMillis(50)
+                .refreshExecutor(tasks::add)
+                .storage(storage)
+                .clock(() -> TimeUnit.MILLISECONDS.toNanos(clock.get()))
+                .onEvent((k, e) -> event.set(e))
+                .build();
+
+        Function<String, Integer> loader = o -> {
+            clock.addAndGet(10);
+            return 2;
+        };
+
+        cache.putProvisional("a", 1);
+        cache.putProvisional("b", 1);
+        assertThat(cache.get("a", loader)).isEqualTo(1);
+        assertThat(event).hasValue(TtlCache.Event.STALE);
+        assertThat(tasks).hasSize(1);
+
+        tasks.poll().run();
+        assertThat(cache.get("a", loader)).isEqualTo(2);
+        assertThat(event).hasValue(TtlCache.Event.HIT);
+
+        cache.putProvisional("a", 3);
+        assertThat(cache.get("a", loader)).isEqualTo(2);
+
+        clock.addAndGet(50);
+        assertThat(cache.get("b", loader)).isEqualTo(2);
+        assertThat(event).hasValue(TtlCache.Event.EXP_SLOW);
+
+        TtlCache<String, Integer> noRefresh = cache.toBuilder().refreshExecutor(null).storage(new ConcurrentHashMap<>()).build();
+        noRefresh.putProvisional("a", 1);
+        assertThat(noRefresh.get("a", loader)).isEqualTo(2);
+    }
+
+    @Test
+    public void testStats() {
+        AtomicLong clock = new AtomicLong(0);
+        AtomicLong duration = new AtomicLong(10);
+
+        TtlCache<String, String> cache = TtlCache
+                .<String, String>builder()
+                .minTtlInMillis(10)
+                .maxTtlInMillis(1000)
+                .ttlFactor(1)
+                .storage(new ConcurrentHashMap<>())
+                .clock(() -> TimeUnit.MILLISECONDS.toNanos(clock.get()))
+                .onEvent((k, e) -> {
+                })
+                .build();
+
+        Function<String, String> loader = o -> {
+            clock.addAndGet(duration.get());
+            return o;
+        };
+
+        assertThat(cache.stats())
+                .returns(0L, CacheStats::getRequestCount)
+                .returns(1.0, CacheStats::getHitRatio)
+                .extracting(CacheStats::getLoadTimeHistogram, LIST)
+                .hasSize(18)
+                .containsOnly(0L);
+
+        cache.get("a", loader);
+        cache.get("a", loader);
+        cache.get("a", loader);
+        duration.set(3);
+        cache.get("b", loader);
+        clock.addAndGet(1000);
+        duration.set(10);
+        cache.get("a", loader);
+
+        CacheStats stats = cache.stats();
+        assertThat(stats.getHitCount()).isEqualTo(2);
+        assertThat(stats.getMissCount()).isEqualTo(3);
+        assertThat(stats.getExpirationCount()).isEqualTo(1);
+        assertThat(stats.getLoadCount()).isEqualTo(3);
+        assertThat(stats.getTotalLoadTimeInNanos()).isEqualTo(23_000_000L);
+        assertThat(stats.getLoadTimeHistogram().get(2)).isEqualTo(1);
+        assertThat(stats.getLoadTimeHistogram().get(4)).isEqualTo(2);
+        assertThat(stats.getSize()).isEqualTo(1);
+        assertThat(stats.getHitRatio()).isEqualTo(0.4);
+    }
+
+    @Test
+    public void testCleanUp() {
+        ConcurrentMap<String, TtlCache.Entry<String>> storage = new ConcurrentHashMap<>();
+        AtomicLong clock = new AtomicLong(-TimeUnit.SECONDS.toNanos(30));
+
+        TtlCache<String, String> cache = TtlCache
+                .<String, String>builder()
+                .minTtlInMillis(10)
+                .maxTtlInMillis(1000 * 60)
+                .ttlFactor(1000)
+                .storage(storage)
+                .clock(clock::get)
+                .onEvent((k, e) -> {
+                })
+                .build();
+
+        Function<String, String> loader = o -> {
+            clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(Integer.parseInt(o)));
+            return o;
+        };
+
+        // ttl of 1s, 10s and 60s crossing the zero of the clock
+        cache.get("1", loader);
+        cache.get("10", loader);
+        cache.get("60", loader);
+        assertThat(storage).containsOnlyKeys("1", "10", "60");
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        cache.cleanUp();
+        assertThat(storage).containsOnlyKeys("10", "60");
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        cache.cleanUp();
+        assertThat(storage).containsOnlyKeys("60");
+
+        clock.addAndGet(TimeUnit.MINUTES.toNanos(1));
+        cache.cleanUp();
+        assertThat(storage).isEmpty();
+    }
+
+    @Test
+    public void testGetAll() {
+        ConcurrentMap<String, TtlCache.Entry<String>> storage = new ConcurrentHashMap<>();
+        AtomicLong clock = new AtomicLong();
+        List<List<String>> batches = new CopyOnWriteArrayList<>();
+        List<TtlCache.Event> events = new CopyOnWriteArrayList<>();
+
+        TtlCache<String, String> cache = TtlCache
+                .<String, String>builder()
+                .minTtlInMillis(10)
+                .maxTtlInMillis(1000)
+                .ttlFactor(10)
+                .storage(storage)
+                .clock(() -> TimeUnit.MILLISECONDS.toNanos(clock.get()))
+                .onEvent((k, e) -> events.add(e))
+                .build();
+
+        Function<List<String>, Map<String, String>> batchLoader = keys -> {
+            batches.add(keys);
+            clock.addAndGet(10);
+            Map<String, String> result = new HashMap<>();
+            keys.forEach(key -> result.put(key, key + batches.size()));
+            return result;
+        };
+
+        assertThat(cache.getAll(Arrays.asList("a", "b", "a"), batchLoader))
+                .containsOnly(entry("a", "a1"), entry("b", "b1"));
+        assertThat(batches).containsExactly(Arrays.asList("a", "b"));
+        assertThat(events).containsExactly(TtlCache.Event.MISS_SLOW, TtlCache.Event.MISS_SLOW);
+        assertThat(storage).containsOnlyKeys("a", "b");
+
+        events.clear();
+        assertThat(cache.getAll(Arrays.asList("b", "c"), batchLoader))
+                .containsOnly(entry("b", "b1"), entry("c", "c2"));
+        assertThat(batches).containsExactly(Arrays.asList("a", "b"), Arrays.asList("c"));
+        assertThat(events).containsExactly(TtlCache.Event.HIT, TtlCache.Event.MISS_SLOW);
+
+        events.clear();
+        assertThat(cache.getAll(Arrays.asList("a", "b", "c"), batchLoader))
+                .containsOnly(entry("a", "a1"), entry("b", "b1"), entry("c", "c2"));
+        assertThat(batches).hasSize(2);
+        assertThat(events).containsOnly(TtlCache.Event.HIT);
+
+        clock.addAndGet(1000);
+        events.clear();
+        assertThat(cache.getAll(Arrays.asList("a", "b"), batchLoader))
+                .containsOnly(entry("a", "a3"), entry("b", "b3"));
+        assertThat(events).containsExactly(TtlCache.Event.EXP_SLOW, TtlCache.Event.EXP_SLOW);
+        assertThat(cache.stats().getLoadCount()).isEqualTo(3);
+    }
+
     @Test
     public void testLog() {
         try (LogCollector logs = LogCollector.of(TtlCache.class)) {
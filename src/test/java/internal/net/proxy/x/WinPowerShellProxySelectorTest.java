@@ -16,10 +16,34 @@
  */
 package internal.net.proxy.x;
 
+import internal.net.proxy.Metrics;
+import internal.net.proxy.Origin;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
 import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
 import nbbrd.net.proxy.SystemProxySelector;
+import org.checkerframework.checker.nullness.qual.Nullable;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 /**
  *
@@ -32,4 +56,248 @@ public class WinPowerShellProxySelectorTest {
         assertThat(ServiceLoader.load(SystemProxySelector.Spi.class))
                 .anyMatch(WinPowerShellProxySelector.class::isInstance);
     }
+
+    @Test
+    public void testGetScript() {
+        assertThat(WinPowerShellProxySelector.GetSystemWebProxyCommand.getScript(Arrays.asList(URI.create("http://a"), URI.create("http://b/x'y"))))
+                .isEqualTo("$p = [System.Net.WebRequest]::GetSystemWebproxy(); foreach ($u in @('http://a', 'http://b/x''y')) { $r = $p.GetProxy($u); '### ' + $u; 'Host : ' + $r.Host; 'Port : ' + $r.Port; 'IsDefaultPort : ' + $r.IsDefaultPort }");
+    }
+
+    @Test
+    public void testParseBlocks() {
+        assertThat(WinPowerShellProxySelector.parseBlocks(OUTPUT))
+                .containsOnlyKeys("http://a", "https://b:8443", "http://b")
+                .hasEntrySatisfying("http://a", o -> assertThat(o).containsOnly(entry("Host", "a"), entry("Port", "80"), entry("IsDefaultPort", "True")))
+                .hasEntrySatisfying("https://b:8443", o -> assertThat(o).containsOnly(entry("Host", "proxy"), entry("Port", "3128"), entry("IsDefaultPort", "False")));
+
+        assertThat(WinPowerShellProxySelector.parseBlocks("")).isEmpty();
+    }
+
+    @Test
+    public void testGetProxyOrNull() {
+        List<List<URI>> batches = new CopyOnWriteArrayList<>();
+        WinPowerShellProxySelector x = newSelector(batches, null, null);
+
+        assertThat(x.getProxyOrNull(URI.create("http://a"))).isEqualTo(Proxy.NO_PROXY);
+        assertThat(x.getProxyOrNull(URI.create("https://b:8443")))
+                .isEqualTo(new Proxy(Proxy.Type.HTTP, new InetSocketAddress("proxy", 3128)));
+        assertThat(batches).hasSize(2);
+
+        assertThat(x.getProxyOrNull(URI.create("HTTP://A:80/x"))).isEqualTo(Proxy.NO_PROXY);
+        assertThat(batches).hasSize(2);
+
+        assertThat(x.getProxyOrNull(URI.create("http://b"))).isEqualTo(Proxy.NO_PROXY);
+        assertThat(batches).hasSize(3);
+
+        WinPowerShellProxySelector notWindows = newSelector(o -> null, () -> {
+        });
+        assertThat(notWindows.getProxyOrNull(URI.create("http://a"))).isNull();
+    }
+
+    @Test
+    public void testGetProxies() {
+        List<List<URI>> batches = new CopyOnWriteArrayList<>();
+        WinPowerShellProxySelector x = newSelector(batches, null, null);
+
+        assertThat(x.getProxies(Arrays.asList(URI.create("http://a"), URI.create("https://b:8443"), URI.create("http://a/x"))))
+                .containsOnly(
+                        entry(URI.create("http://a"), Proxy.NO_PROXY),
+                        entry(URI.create("https://b:8443"), new Proxy(Proxy.Type.HTTP, new InetSocketAddress("proxy", 3128))),
+                        entry(URI.create("http://a/x"), Proxy.NO_PROXY));
+        assertThat(batches).hasSize(1);
+        assertThat(batches.get(0)).containsExactlyInAnyOrder(URI.create("http://a"), URI.create("https://b:8443"));
+
+        WinPowerShellProxySelector notWindows = newSelector(o -> null, () -> {
+        });
+        assertThat(notWindows.getProxies(Arrays.asList(URI.create("http://a")))).isEmpty();
+    }
+
+    @Test
+    public void testMissingBlock() {
+        List<List<URI>> batches = new CopyOnWriteArrayList<>();
+        AtomicReference<String> output = new AtomicReference<>("");
+        WinPowerShellProxySelector x = newSelector(newCache(), recording(batches, output::get), null, null);
+
+        assertThat(x.getProxyOrNull(URI.create("http://a"))).isNull();
+        assertThat(x.getProxies(Arrays.asList(URI.create("http://a"), URI.create("https://b:8443"))))
+                .isEmpty();
+        assertThat(batches).hasSize(2);
+
+        output.set(OUTPUT);
+        assertThat(x.getProxyOrNull(URI.create("http://a"))).isEqualTo(Proxy.NO_PROXY);
+        assertThat(batches).hasSize(3);
+    }
+
+    @Test
+    public void testFetchConfig() {
+        List<List<URI>> batches = new CopyOnWriteArrayList<>();
+        AtomicReference<String> config = new AtomicReference<>(String.join(System.lineSeparator(),
+                "ProxyEnable : 1",
+                "ProxyServer : http=proxy:3128;https=secure:8443",
+                "ProxyOverride : *.nbb.be;<local>",
+                "AutoConfigURL : ",
+                "AutoDetect : False"));
+        WinPowerShellProxySelector x = newSelector(batches, () -> WinProxyConfig.parse(WinPowerShellProxySelector.parseMap(config.get())), null);
+
+        assertThat(x.getProxyOrNull(URI.create("http://www.example.com")))
+                .isEqualTo(new Proxy(Proxy.Type.HTTP, InetSocketAddress.createUnresolved("proxy", 3128)));
+        assertThat(x.getProxies(Arrays.asList(URI.create("https://www.example.com"), URI.create("http://www.nbb.be"), URI.create("http://intranet"))))
+                .containsOnly(
+                        entry(URI.create("https://www.example.com"), new Proxy(Proxy.Type.HTTP, InetSocketAddress.createUnresolved("secure", 8443))),
+                        entry(URI.create("http://www.nbb.be"), Proxy.NO_PROXY),
+                        entry(URI.create("http://intranet"), Proxy.NO_PROXY));
+        assertThat(batches).isEmpty();
+
+        config.set("ProxyEnable : 0" + System.lineSeparator() + "AutoConfigURL : http://wpad/wpad.dat");
+        WinPowerShellProxySelector pac = newSelector(batches, () -> WinProxyConfig.parse(WinPowerShellProxySelector.parseMap(config.get())), null);
+        assertThat(pac.getProxyOrNull(URI.create("https://b:8443")))
+                .isEqualTo(new Proxy(Proxy.Type.HTTP, new InetSocketAddress("proxy", 3128)));
+        assertThat(batches).hasSize(1);
+    }
+
+    @Test
+    public void testDomainRules() {
+        List<List<URI>> batches = new CopyOnWriteArrayList<>();
+        DomainRules rules = DomainRules.of(PacScript.parse(String.join(System.lineSeparator(),
+                "function FindProxyForURL(url, host) {",
+                "  if (dnsDomainIs(host, '.nbb.be')) return 'DIRECT';",
+                "  return 'PROXY proxy:3128';",
+                "}")).getHostRules());
+        WinPowerShellProxySelector x = newSelector(batches,
+                () -> WinProxyConfig.parse(WinPowerShellProxySelector.parseMap("ProxyEnable : 0" + System.lineSeparator() + "AutoConfigURL : http://wpad/wpad.dat")).withRules(rules),
+                null);
+
+        assertThat(x.getProxyOrNull(URI.create("http://www.nbb.be"))).isEqualTo(Proxy.NO_PROXY);
+        assertThat(x.getProxies(Arrays.asList(URI.create("https://a.nbb.be"), URI.create("http://a"))))
+                .containsOnly(
+                        entry(URI.create("https://a.nbb.be"), Proxy.NO_PROXY),
+                        entry(URI.create("http://a"), Proxy.NO_PROXY));
+        assertThat(batches).containsExactly(Arrays.asList(URI.create("http://a")));
+    }
+
+    @Test
+    public void testDiskCache(@TempDir Path dir) {
+        List<List<URI>> batches = new CopyOnWriteArrayList<>();
+        Queue<Runnable> refreshes = new ConcurrentLinkedQueue<>();
+        Supplier<WinPowerShellProxySelector> factory = () -> newSelector(
+                newCache().toBuilder().maxStaleInMillis(60_000).refreshExecutor(refreshes::add).build(),
+                recording(batches, () -> OUTPUT),
+                null,
+                () -> new DiskCache(dir.resolve("x.cache"), "f", 60_000, 1024 * 1024, 100, System::currentTimeMillis));
+
+        Proxy proxy = new Proxy(Proxy.Type.HTTP, new InetSocketAddress("proxy", 3128));
+        WinPowerShellProxySelector first = factory.get();
+        assertThat(first.getProxyOrNull(URI.create("https://b:8443"))).isEqualTo(proxy);
+        assertThat(first.getProxies(Arrays.asList(URI.create("http://a")))).containsOnly(entry(URI.create("http://a"), Proxy.NO_PROXY));
+        assertThat(batches).hasSize(2);
+
+        WinPowerShellProxySelector second = factory.get();
+        assertThat(second.getProxyOrNull(URI.create("https://b:8443/x")))
+                .isEqualTo(new Proxy(Proxy.Type.HTTP, InetSocketAddress.createUnresolved("proxy", 3128)));
+        assertThat(second.getProxies(Arrays.asList(URI.create("http://a/x")))).containsOnly(entry(URI.create("http://a/x"), Proxy.NO_PROXY));
+        assertThat(batches).hasSize(2);
+
+        assertThat(refreshes).hasSize(2);
+        refreshes.forEach(Runnable::run);
+        assertThat(batches).hasSize(4);
+        assertThat(second.getProxyOrNull(URI.create("https://b:8443/x"))).isEqualTo(proxy);
+    }
+
+    @Test
+    public void testDiskCacheLoadedInBackground() {
+        Queue<Runnable> background = new ConcurrentLinkedQueue<>();
+        AtomicInteger created = new AtomicInteger();
+        WinPowerShellProxySelector x = new WinPowerShellProxySelector(newCache(), recording(new ArrayList<>(), () -> OUTPUT), null, () -> {
+            created.incrementAndGet();
+            return null;
+        }, background::add, WINDOWS, () -> {
+        }, new Metrics());
+
+        x.getProxyOrNull(URI.create("http://a"));
+        x.getProxyOrNull(URI.create("http://b"));
+        assertThat(created).hasValue(0);
+        assertThat(background).isNotEmpty();
+
+        background.forEach(Runnable::run);
+        assertThat(created).hasValue(1);
+    }
+
+    @Test
+    public void testGetFingerprint() {
+        Map<String, String> settings = new HashMap<>();
+        settings.put("ProxyEnable", "1");
+        settings.put("ProxyServer", "proxy:3128");
+        String fingerprint = WinPowerShellProxySelector.getFingerprint(WINDOWS, o -> null, settings);
+
+        assertThat(WinPowerShellProxySelector.getFingerprint(WINDOWS, o -> null, settings)).isEqualTo(fingerprint);
+
+        settings.put("ProxyServer", "other:3128");
+        assertThat(WinPowerShellProxySelector.getFingerprint(WINDOWS, o -> null, settings)).isNotEqualTo(fingerprint);
+
+        settings.put("ProxyServer", "proxy:3128");
+        settings.put("AutoConfigURL", "http://wpad/wpad.dat");
+        assertThat(WinPowerShellProxySelector.getFingerprint(WINDOWS, o -> null, settings)).isNotEqualTo(fingerprint);
+    }
+
+    @Test
+    public void testWarmUp() {
+        AtomicInteger warmUps = new AtomicInteger();
+
+        newSelector(WINDOWS, warmUps::incrementAndGet).warmUp();
+        assertThat(warmUps).hasValue(1);
+
+        newSelector(o -> null, warmUps::incrementAndGet).warmUp();
+        assertThat(warmUps).hasValue(1);
+    }
+
+    private static final UnaryOperator<String> WINDOWS = o -> "os.name".equals(o) ? "Windows 10" : null;
+
+    private static WinPowerShellProxySelector newSelector(List<List<URI>> batches, @Nullable Supplier<WinProxyConfig> config, @Nullable Supplier<DiskCache> diskCache) {
+        // each PowerShell call takes one second on a fake clock so that its results are cached
+        AtomicLong clock = new AtomicLong();
+        Function<List<URI>, Map<String, Map<String, String>>> command = recording(batches, () -> OUTPUT);
+        return newSelector(newCache().toBuilder().clock(clock::get).build(), uris -> {
+            clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+            return command.apply(uris);
+        }, config, diskCache);
+    }
+
+    private static WinPowerShellProxySelector newSelector(TtlCache<Origin, Proxy> cache, Function<List<URI>, Map<String, Map<String, String>>> command, @Nullable Supplier<WinProxyConfig> config, @Nullable Supplier<DiskCache> diskCache) {
+        return new WinPowerShellProxySelector(cache, command, config, diskCache, Runnable::run, WINDOWS, () -> {
+        }, new Metrics());
+    }
+
+    private static WinPowerShellProxySelector newSelector(UnaryOperator<String> sys, Runnable warmUp) {
+        return new WinPowerShellProxySelector(newCache(), uris -> {
+            throw new AssertionError();
+        }, null, null, Runnable::run, sys, warmUp, new Metrics());
+    }
+
+    private static TtlCache<Origin, Proxy> newCache() {
+        // events are not logged here: TtlCacheTest collects the logs of TtlCache
+        return TtlCache.<Origin, Proxy>of().toBuilder().onEvent((k, e) -> {
+        }).build();
+    }
+
+    private static Function<List<URI>, Map<String, Map<String, String>>> recording(List<List<URI>> batches, Supplier<String> output) {
+        return uris -> {
+            batches.add(uris);
+            return WinPowerShellProxySelector.parseBlocks(output.get());
+        };
+    }
+
+    private static final String OUTPUT = String.join(System.lineSeparator(),
+            "### http://a",
+            "Host : a",
+            "Port : 80",
+            "IsDefaultPort : True",
+            "### https://b:8443",
+            "Host : proxy",
+            "Port : 3128",
+            "IsDefaultPort : False",
+            "### http://b",
+            "Host : b",
+            "Port : 80",
+            "IsDefaultPort : True",
+            "");
 }
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2026 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package internal.net.proxy.x;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicReference;
+import static org.assertj.core.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Philippe Charles
+ */
+public class WinProxyConfigFetcherTest {
+
+    @Test
+    public void testGet() {
+        AtomicReference<String> settings = new AtomicReference<>("");
+        List<String> downloads = new ArrayList<>();
+        DomainRules rules = DomainRules.of(Collections.emptyList());
+        Queue<Runnable> learnings = new ArrayDeque<>();
+        WinProxyConfigFetcher x = new WinProxyConfigFetcher(settings::get, url -> {
+            downloads.add(url);
+            return rules;
+        }, learnings::add);
+
+        assertThat(x.get()).as("failed fetch").isNull();
+
+        settings.set(String.join("\n", "ProxyEnable : 0", "AutoConfigURL : http://wpad/a.pac", "AutoDetect : False"));
+        assertThat(x.get().getRules()).isSameAs(DomainRules.EMPTY);
+        assertThat(x.get().getRules()).isSameAs(DomainRules.EMPTY);
+        assertThat(learnings).as("learned off the caller thread and once").hasSize(1);
+        assertThat(downloads).isEmpty();
+
+        learnings.poll().run();
+        assertThat(x.get().getRules()).isSameAs(rules);
+        assertThat(x.get().getRules()).isSameAs(rules);
+        assertThat(downloads).containsExactly("http://wpad/a.pac");
+
+        settings.set(String.join("\n", "ProxyEnable : 0", "AutoConfigURL : http://wpad/b.pac", "AutoDetect : False"));
+        assertThat(x.get().getRules()).isSameAs(DomainRules.EMPTY);
+        learnings.poll().run();
+        assertThat(x.get().getRules()).isSameAs(rules);
+        assertThat(downloads).containsExactly("http://wpad/a.pac", "http://wpad/b.pac");
+
+        settings.set(String.join("\n", "ProxyEnable : 0", "AutoConfigURL : http://wpad/b.pac", "AutoDetect : True"));
+        assertThat(x.get().getRules()).isSameAs(DomainRules.EMPTY);
+        assertThat(learnings).isEmpty();
+    }
+}
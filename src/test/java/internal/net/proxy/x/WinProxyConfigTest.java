@@ -0,0 +1,82 @@
+/*
+ * Copyright 2026 National Bank of Belgium
+ *
+ * Licensed under the EUPL, Version 1.1 or - as soon they will be approved
+ * by the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * http://ec.europa.eu/idabc/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ */
+package internal.net.proxy.x;
+
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.URI;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import static org.assertj.core.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Philippe Charles
+ */
+public class WinProxyConfigTest {
+
+    @Test
+    public void testParse() {
+        assertThat(WinProxyConfig.parse(Collections.emptyMap())).isSameAs(WinProxyConfig.UNKNOWN);
+        assertThat(WinProxyConfig.UNKNOWN.isDynamic()).isTrue();
+
+        Map<String, String> settings = new HashMap<>();
+        settings.put("ProxyEnable", "1");
+        settings.put("ProxyServer", "proxy:8080");
+        settings.put("ProxyOverride", "localhost;*.nbb.be;10.*;<local>;");
+        settings.put("AutoConfigURL", "");
+        settings.put("AutoDetect", "False");
+
+        WinProxyConfig x = WinProxyConfig.parse(settings);
+        assertThat(x.isDynamic()).isFalse();
+        assertThat(x.getProxy(URI.create("http://www.example.com"))).isEqualTo(http("proxy", 8080));
+        assertThat(x.getProxy(URI.create("ftp://www.example.com"))).isEqualTo(http("proxy", 8080));
+        assertThat(x.getProxy(URI.create("http://localhost"))).isEqualTo(Proxy.NO_PROXY);
+        assertThat(x.getProxy(URI.create("http://www.nbb.be"))).isEqualTo(Proxy.NO_PROXY);
+        assertThat(x.getProxy(URI.create("http://10.1.2.3"))).isEqualTo(Proxy.NO_PROXY);
+        assertThat(x.getProxy(URI.create("http://intranet"))).isEqualTo(Proxy.NO_PROXY);
+
+        settings.put("ProxyEnable", "0");
+        assertThat(WinProxyConfig.parse(settings).getProxy(URI.create("http://www.example.com"))).isEqualTo(Proxy.NO_PROXY);
+
+        settings.put("AutoConfigURL", "http://wpad/wpad.dat");
+        assertThat(WinProxyConfig.parse(settings).isDynamic()).isTrue();
+
+        settings.put("AutoConfigURL", "");
+        settings.put("AutoDetect", "True");
+        assertThat(WinProxyConfig.parse(settings).isDynamic()).isTrue();
+    }
+
+    @Test
+    public void testParseProxyServer() {
+        assertThat(WinProxyConfig.parseProxyServer(null)).isEmpty();
+        assertThat(WinProxyConfig.parseProxyServer("proxy:8080"))
+                .containsOnly(entry(WinProxyConfig.ALL_SCHEMES, http("proxy", 8080)));
+        assertThat(WinProxyConfig.parseProxyServer("http=a:1;https=https://b:2;socks=c:3"))
+                .containsOnly(
+                        entry("http", http("a", 1)),
+                        entry("https", http("b", 2)),
+                        entry("socks", new Proxy(Proxy.Type.SOCKS, InetSocketAddress.createUnresolved("c", 3))));
+        assertThat(WinProxyConfig.parseProxyServer("http=a:x")).isEmpty();
+    }
+
+    private static Proxy http(String host, int port) {
+        return new Proxy(Proxy.Type.HTTP, InetSocketAddress.createUnresolved(host, port));
+    }
+}
@@ -17,11 +17,23 @@
 package nbbrd.net.proxy;
 
 import _test.ProxyMap;
+import internal.net.proxy.FailsafeSystemProxySpi;
+import internal.net.proxy.SystemProxySpiLoader;
 import java.net.InetSocketAddress;
 import java.net.Proxy;
 import java.net.ProxySelector;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.UnaryOperator;
 import static org.assertj.core.api.Assertions.*;
 import org.junit.jupiter.api.Test;
@@ -69,13 +81,381 @@ public class SystemProxySelectorTest {
         assertThat(SystemProxySelector
                 .builder()
                 .provider(o -> mainProxy)
-                .systemProperties(o -> "http.proxyHost")
+                .systemProperties(o -> "http.nonProxyHosts".equals(o) ? "localhost" : null)
                 .fallback(fallbackSelector)
                 .build()
                 .select(uri)
         ).containsExactly(fallbackProxy);
     }
 
+    @Test
+    public void testProviderPrecedence() {
+        assertThat(SystemProxySpiLoader.load())
+                .extracting(FailsafeSystemProxySpi::getName)
+                .containsExactly("PacProxySelector", "WinPowerShellProxySelector", "EnvProxySelector", "DesktopProxySelector");
+    }
+
+    @Test
+    public void testCache() throws URISyntaxException {
+        AtomicInteger calls = new AtomicInteger();
+        AtomicLong clock = new AtomicLong();
+
+        SystemProxySelector x = SystemProxySelector
+                .builder()
+                .provider(o -> {
+                    calls.incrementAndGet();
+                    return mainProxy;
+                })
+                .systemProperties(o -> null)
+                .fallback(ProxyMap.builder().build())
+                .cacheTtl(Duration.ofNanos(10))
+                .nanoClock(clock::get)
+                .build();
+
+        List<Proxy> first = x.select(new URI("https://www.nbb.be/a"));
+        assertThat(first).containsExactly(mainProxy);
+        assertThat(calls).hasValue(1);
+
+        assertThat(x.select(new URI("https://www.nbb.be/b"))).isSameAs(first);
+        assertThat(calls).hasValue(1);
+
+        assertThat(x.select(new URI("http://www.nbb.be/a"))).containsExactly(mainProxy);
+        assertThat(calls).hasValue(2);
+
+        assertThat(x.select(new URI("https://www.nbb.be:8443/a"))).containsExactly(mainProxy);
+        assertThat(calls).hasValue(3);
+
+        clock.addAndGet(10);
+        assertThat(x.select(new URI("https://www.nbb.be/a"))).isNotSameAs(first).containsExactly(mainProxy);
+        assertThat(calls).hasValue(4);
+
+        assertThat(x.toBuilder().cacheTtl(Duration.ZERO).build().select(new URI("https://www.nbb.be/a"))).containsExactly(mainProxy);
+        assertThat(calls).hasValue(5);
+    }
+
+    @Test
+    public void testPropertiesSnapshot() throws URISyntaxException {
+        URI uri = new URI("https://www.nbb.be");
+        Map<String, String> properties = new HashMap<>();
+        AtomicLong clock = new AtomicLong();
+
+        SystemProxySelector x = SystemProxySelector
+                .builder()
+                .provider(o -> mainProxy)
+                .systemProperties(properties::get)
+                .fallback(ProxyMap.builder().proxy(uri, fallbackProxy).build())
+                .propertiesCheckInterval(Duration.ofNanos(10))
+                .nanoClock(clock::get)
+                .build();
+
+        assertThat(x.select(uri)).containsExactly(mainProxy);
+
+        properties.put("http.nonProxyHosts", "localhost");
+        assertThat(x.select(uri)).containsExactly(mainProxy);
+
+        clock.addAndGet(10);
+        assertThat(x.select(uri)).containsExactly(fallbackProxy);
+
+        properties.clear();
+        assertThat(x.select(uri)).containsExactly(fallbackProxy);
+
+        x.refresh();
+        assertThat(x.select(uri)).containsExactly(mainProxy);
+    }
+
+    @Test
+    public void testStaticProxyConfig() throws URISyntaxException {
+        URI http = new URI("http://www.nbb.be");
+        URI https = new URI("https://www.nbb.be");
+        URI local = new URI("http://localhost:8080");
+        URI ftp = new URI("ftp://www.nbb.be");
+        Map<String, String> properties = new HashMap<>();
+        properties.put("http.proxyHost", "proxy");
+        properties.put("http.proxyPort", "3128");
+
+        SystemProxySelector x = SystemProxySelector
+                .builder()
+                .provider(o -> mainProxy)
+                .systemProperties(properties::get)
+                .fallback(ProxyMap.builder().proxy(https, fallbackProxy).proxy(ftp, fallbackProxy).build())
+                .build();
+
+        Proxy proxy = new Proxy(Proxy.Type.HTTP, InetSocketAddress.createUnresolved("proxy", 3128));
+        assertThat(x.select(http)).containsExactly(proxy);
+        assertThat(x.select(local)).containsExactly(Proxy.NO_PROXY);
+        assertThat(x.select(https)).containsExactly(fallbackProxy);
+        assertThat(x.select(ftp)).containsExactly(fallbackProxy);
+        assertThat(x.selectAll(Arrays.asList(http, local)))
+                .containsExactly(
+                        entry(http, Collections.singletonList(proxy)),
+                        entry(local, Collections.singletonList(Proxy.NO_PROXY)));
+
+        properties.put("https.proxyHost", "secure");
+        properties.put("http.nonProxyHosts", "*.nbb.be");
+        x.refresh();
+        assertThat(x.select(https)).containsExactly(Proxy.NO_PROXY);
+        assertThat(x.select(local)).containsExactly(proxy);
+        assertThat(x.select(new URI("https://www.example.com")))
+                .containsExactly(new Proxy(Proxy.Type.HTTP, InetSocketAddress.createUnresolved("secure", 443)));
+    }
+
+    @Test
+    public void testSelectAsync() throws Exception {
+        URI uri = new URI("https://www.nbb.be");
+        AtomicInteger calls = new AtomicInteger();
+        List<Runnable> tasks = new ArrayList<>();
+
+        SystemProxySelector x = SystemProxySelector
+                .builder()
+                .provider(o -> null)
+                .provider(o -> {
+                    calls.incrementAndGet();
+                    return mainProxy;
+                })
+                .systemProperties(o -> null)
+                .fallback(ProxyMap.builder().proxy(uri, fallbackProxy).build())
+                .executor(tasks::add)
+                .build();
+
+        assertThatIllegalArgumentException().isThrownBy(() -> x.selectAsync(null));
+
+        CompletableFuture<List<Proxy>> result = x.selectAsync(uri);
+        assertThat(result).isNotDone();
+        tasks.remove(0).run();
+        assertThat(result).isNotDone();
+        tasks.remove(0).run();
+        assertThat(result.get()).containsExactly(mainProxy);
+        assertThat(tasks).isEmpty();
+
+        SystemProxySelector cached = x.toBuilder().executor(Runnable::run).cacheTtl(Duration.ofMinutes(1)).build();
+        assertThat(cached.selectAsync(uri).get()).containsExactly(mainProxy);
+        assertThat(cached.selectAsync(uri).get()).containsExactly(mainProxy);
+        assertThat(calls).hasValue(2);
+
+        assertThat(x.toBuilder().clearProviders().executor(Runnable::run).build().selectAsync(uri).get())
+                .containsExactly(fallbackProxy);
+
+        assertThat(x.toBuilder().systemProperties(o -> "http.nonProxyHosts".equals(o) ? "localhost" : null).build().selectAsync(uri))
+                .isCompletedWithValue(Collections.singletonList(fallbackProxy));
+        assertThat(tasks).isEmpty();
+    }
+
+    @Test
+    public void testSelectAll() throws URISyntaxException {
+        URI a = new URI("https://www.nbb.be/a");
+        URI b = new URI("https://www.nbb.be/b");
+        URI c = new URI("http://other");
+        List<List<URI>> batches = new ArrayList<>();
+        AtomicLong clock = new AtomicLong();
+
+        SystemProxySelector.Spi provider = new SystemProxySelector.Spi() {
+            @Override
+            public Proxy getProxyOrNull(URI uri) {
+                throw new AssertionError();
+            }
+
+            @Override
+            public Map<URI, Proxy> getProxies(List<URI> uris) {
+                batches.add(new ArrayList<>(uris));
+                return Collections.singletonMap(a, mainProxy);
+            }
+        };
+
+        SystemProxySelector x = SystemProxySelector
+                .builder()
+                .provider(provider)
+                .systemProperties(o -> null)
+                .fallback(ProxyMap.builder().proxy(c, fallbackProxy).build())
+                .nanoClock(clock::get)
+                .build();
+
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> x.selectAll(Arrays.asList(a, null)));
+
+        assertThat(x.selectAll(Arrays.asList(a, b, c)))
+                .containsExactly(
+                        entry(a, Collections.singletonList(mainProxy)),
+                        entry(b, Collections.singletonList(mainProxy)),
+                        entry(c, Collections.singletonList(fallbackProxy)));
+        assertThat(batches).containsExactly(Arrays.asList(a, c));
+
+        batches.clear();
+        SystemProxySelector cached = x.toBuilder().cacheTtl(Duration.ofNanos(10)).build();
+        cached.selectAll(Arrays.asList(a, c));
+        assertThat(cached.selectAll(Arrays.asList(b, c)))
+                .containsExactly(
+                        entry(b, Collections.singletonList(mainProxy)),
+                        entry(c, Collections.singletonList(fallbackProxy)));
+        assertThat(batches).containsExactly(Arrays.asList(a, c));
+
+        batches.clear();
+        assertThat(x.toBuilder().systemProperties(o -> "http.nonProxyHosts".equals(o) ? "localhost" : null).build().selectAll(Arrays.asList(a, c)))
+                .containsExactly(
+                        entry(a, Collections.emptyList()),
+                        entry(c, Collections.singletonList(fallbackProxy)));
+        assertThat(batches).isEmpty();
+    }
+
+    @Test
+    public void testPreload() throws Exception {
+        List<List<URI>> batches = new ArrayList<>();
+        SystemProxySelector.Spi provider = new SystemProxySelector.Spi() {
+            @Override
+            public Proxy getProxyOrNull(URI uri) {
+                throw new AssertionError();
+            }
+
+            @Override
+            public Map<URI, Proxy> getProxies(List<URI> uris) {
+                batches.add(new ArrayList<>(uris));
+                Map<URI, Proxy> result = new HashMap<>();
+                uris.forEach(uri -> result.put(uri, mainProxy));
+                return result;
+            }
+        };
+
+        List<URI> uris = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            uris.add(new URI("https://host" + i + "/a"));
+            uris.add(new URI("https://host" + i + "/b"));
+        }
+
+        SystemProxySelector x = SystemProxySelector
+                .builder()
+                .provider(provider)
+                .systemProperties(o -> null)
+                .fallback(ProxyMap.builder().build())
+                .cacheTtl(Duration.ofMinutes(1))
+                .executor(Runnable::run)
+                .build();
+
+        assertThatIllegalArgumentException().isThrownBy(() -> x.preload(Arrays.asList(uris.get(0), null)));
+
+        assertThat(x.preload(uris)).isDone();
+        assertThat(batches).hasSize(2);
+        assertThat(batches.get(0)).hasSize(64);
+        assertThat(batches.get(1)).hasSize(36);
+
+        assertThat(x.select(new URI("https://host99/c"))).containsExactly(mainProxy);
+        assertThat(batches).hasSize(2);
+    }
+
+    @Test
+    public void testWarmUp() {
+        AtomicInteger warmUps = new AtomicInteger();
+        SystemProxySelector.Spi provider = new SystemProxySelector.Spi() {
+            @Override
+            public Proxy getProxyOrNull(URI uri) {
+                return null;
+            }
+
+            @Override
+            public void warmUp() {
+                warmUps.incrementAndGet();
+            }
+        };
+
+        assertThat(SystemProxySelector
+                .builder()
+                .provider(provider)
+                .provider(provider)
+                .provider(o -> null)
+                .systemProperties(o -> null)
+                .fallback(ProxyMap.builder().build())
+                .executor(Runnable::run)
+                .build()
+                .warmUp()
+        ).isDone();
+        assertThat(warmUps).hasValue(2);
+    }
+
+    @Test
+    public void testCacheStats() {
+        CacheStats stats = CacheStats.builder().hitCount(1).build();
+
+        assertThat(SystemProxySelector
+                .builder()
+                .provider(o -> mainProxy)
+                .provider(new SystemProxySelector.Spi() {
+                    @Override
+                    public Proxy getProxyOrNull(URI uri) {
+                        return null;
+                    }
+
+                    @Override
+                    public Map<String, CacheStats> getCacheStats() {
+                        return Collections.singletonMap("x", stats);
+                    }
+                })
+                .systemProperties(o -> null)
+                .fallback(ProxyMap.builder().build())
+                .build()
+                .getCacheStats()
+        ).containsExactly(entry("x", stats));
+    }
+
+    @Test
+    public void testMetricsListener() throws URISyntaxException {
+        List<String> events = new ArrayList<>();
+        List<MetricsListener> registered = new ArrayList<>();
+        AtomicLong clock = new AtomicLong();
+
+        MetricsListener listener = new MetricsListener() {
+            @Override
+            public void onProviderCall(String provider, long durationInNanos) {
+                events.add("call:" + durationInNanos);
+            }
+
+            @Override
+            public void onFallback() {
+                events.add("fallback");
+            }
+
+            @Override
+            public void onCacheEvent(String cache, MetricsListener.CacheEvent event) {
+                events.add(cache + ":" + event);
+            }
+        };
+
+        SystemProxySelector x = SystemProxySelector
+                .builder()
+                .provider(new SystemProxySelector.Spi() {
+                    @Override
+                    public Proxy getProxyOrNull(URI uri) {
+                        clock.addAndGet(5);
+                        return uri.getHost().equals("www.nbb.be") ? mainProxy : null;
+                    }
+
+                    @Override
+                    public void addListener(MetricsListener listener) {
+                        registered.add(listener);
+                    }
+                })
+                .systemProperties(o -> null)
+                .fallback(ProxyMap.builder().build())
+                .cacheTtl(Duration.ofNanos(100))
+                .nanoClock(clock::get)
+                .metricsListener(listener)
+                .build();
+
+        assertThat(x.select(new URI("https://www.nbb.be/a"))).containsExactly(mainProxy);
+        assertThat(x.select(new URI("https://www.nbb.be/b"))).containsExactly(mainProxy);
+        assertThat(x.select(new URI("https://other"))).isEmpty();
+        assertThat(events).containsExactly(
+                "SystemProxySelector:MISS", "call:5",
+                "SystemProxySelector:HIT",
+                "SystemProxySelector:MISS", "call:5", "fallback"
+        );
+        assertThat(registered).containsExactly(listener);
+
+        events.clear();
+        registered.clear();
+        SystemProxySelector unobserved = x.toBuilder().metricsListener(MetricsListener.NONE).build();
+        assertThat(unobserved.select(new URI("https://www.nbb.be/a"))).containsExactly(mainProxy);
+        assertThat(events).isEmpty();
+        assertThat(registered).isEmpty();
+    }
+
     private final Proxy mainProxy = new Proxy(Proxy.Type.HTTP, new InetSocketAddress("main", 1234));
     private final Proxy fallbackProxy = new Proxy(Proxy.Type.HTTP, new InetSocketAddress("fallback", 1234));
 }